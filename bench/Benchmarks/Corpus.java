@@ -0,0 +1,114 @@
+package Benchmarks;
+
+import java.util.Random;
+
+/**
+ * Gera códigos MiniPascal sintéticos para os benchmarks, sempre com a mesma
+ * semente para que as medições sejam comparáveis entre execuções.
+ */
+public enum Corpus {
+
+    /**
+     * Programa dominado por palavras reservadas e estruturas de controle.
+     */
+    KEYWORDS {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            sb.append("if a then begin while b do begin end end else begin end;\n");
+        }
+    },
+    /**
+     * Atribuições entre identificadores longos e variados.
+     */
+    IDENTIFIERS {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            sb.append("contador_").append(random.nextInt(1000))
+                    .append(" := acumulador_total").append(random.nextInt(100))
+                    .append(" + valorParcial").append(random.nextInt(10)).append(";\n");
+        }
+    },
+    /**
+     * Expressões com muitos literais inteiros e reais.
+     */
+    NUMBERS {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            sb.append("x := ").append(random.nextInt(1_000_000))
+                    .append(" * ").append(random.nextInt(1000)).append('.').append(random.nextInt(100000))
+                    .append(" - ").append(random.nextInt(10)).append(";\n");
+        }
+    },
+    /**
+     * Código coberto de comentários de linha e de bloco.
+     */
+    COMMENTS {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            sb.append("// comentario de linha numero ").append(random.nextInt(1000)).append('\n')
+                    .append("{ comentario entre chaves\n  com duas linhas }\n")
+                    .append("/* comentario de bloco */ x := 1;\n");
+        }
+    },
+    /**
+     * Atribuições de literais de texto.
+     */
+    STRINGS {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            sb.append("mensagem := 'texto de exemplo ").append(random.nextInt(1000))
+                    .append("'; nome := \"outro texto\";\n");
+        }
+    },
+    /**
+     * Entrada com erros frequentes: caracteres inesperados, strings abertas e ponto e vírgula ausente.
+     */
+    ERRORS {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            switch (random.nextInt(4)) {
+                case 0:
+                    sb.append("x := @y # 3 $;\n");
+                    break;
+                case 1:
+                    sb.append("s := 'string sem fim\n");
+                    break;
+                case 2:
+                    sb.append("a := b\n");
+                    break;
+                default:
+                    sb.append("!!! ??? ~~~ ^^^\n");
+                    break;
+            }
+        }
+    },
+    /**
+     * Lixo como o de um arquivo binário colado no editor: quase todo caractere é um erro.
+     */
+    GARBAGE {
+        @Override
+        void linha(StringBuilder sb, Random random) {
+            for (int i = 0; i < 80; i++) {
+                int c = random.nextInt(256);
+                sb.append(c == '{' || c == '\'' || c == '"' ? '#' : (char) c);
+            }
+            sb.append('\n');
+        }
+    };
+
+    abstract void linha(StringBuilder sb, Random random);
+
+    /**
+     * Gera um programa com aproximadamente {@code tamanho} caracteres.
+     */
+    public String gerar(int tamanho) {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(tamanho + 128);
+        sb.append("program benchmark;\nvar x, y : integer;\nbegin\n");
+        while (sb.length() < tamanho) {
+            linha(sb, random);
+        }
+        sb.append("end.\n");
+        return sb.toString();
+    }
+}
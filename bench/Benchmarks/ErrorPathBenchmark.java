@@ -0,0 +1,102 @@
+package Benchmarks;
+
+import Analizer.Lexer;
+import Analizer.Token;
+import Analizer.TokenBuffer;
+import Analizer.TokenType;
+import Controller.LexicalException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compara o tratamento de erros sem exceções do {@link Lexer} (tokens ERROR)
+ * com o de quem pede uma {@link LexicalException} por erro, em entradas
+ * cheias de erros.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    @Param({"ERRORS", "GARBAGE"})
+    public Corpus corpus;
+
+    @Param({"1048576"})
+    public int tamanho;
+
+    private String codigo;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codigo = corpus.gerar(tamanho);
+    }
+
+    /**
+     * Erros entregues como tokens ERROR, sem criar exceções.
+     */
+    @Benchmark
+    public TokenBuffer tokensDeErro() {
+        return new Lexer(codigo).analisarCompacto();
+    }
+
+    /**
+     * Mesmo laço de {@link Lexer#nextToken()}, sem exceções, para comparar com {@link #excecoes(Blackhole)}.
+     */
+    @Benchmark
+    public int nextToken(Blackhole blackhole) {
+        Lexer lexer = new Lexer(codigo);
+        int erros = 0;
+        while (lexer.hasMoreTokens()) {
+            Token token = lexer.nextToken();
+            if (token.getType() == TokenType.ERROR) {
+                erros++;
+            }
+            blackhole.consume(token);
+        }
+        return erros;
+    }
+
+    /**
+     * Uma {@link LexicalException}, com stack trace, para cada erro.
+     */
+    @Benchmark
+    public int excecoes(Blackhole blackhole) {
+        Lexer lexer = new Lexer(codigo);
+        int erros = 0;
+        while (lexer.hasMoreTokens()) {
+            try {
+                blackhole.consume(lexer.nextTokenStrict());
+            } catch (LexicalException e) {
+                erros++;
+                blackhole.consume(e);
+            }
+        }
+        return erros;
+    }
+
+    /**
+     * Para no primeiro erro, como um chamador que só quer saber se o código é válido.
+     */
+    @Benchmark
+    public int pararNoPrimeiroErro() {
+        Lexer lexer = new Lexer(codigo);
+        lexer.setPararAposErros(1);
+        lexer.analisarCompacto();
+        return lexer.getTotalErros();
+    }
+}
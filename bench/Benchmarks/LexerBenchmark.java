@@ -0,0 +1,115 @@
+package Benchmarks;
+
+import Analizer.Lexer;
+import Analizer.LexerFactory;
+import Analizer.Token;
+import Analizer.TokenBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks dos caminhos principais do {@link Lexer}.
+ *
+ * Além de operações por segundo, cada benchmark publica os contadores
+ * {@code bytes} e {@code tokens}, que o JMH reporta como taxa por segundo
+ * (bytes/s e tokens/s). Os bytes são os do código em UTF-8, como num
+ * arquivo, e não os chars da String. Rode com {@code -prof gc} para a taxa
+ * de alocação.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+
+    @Param({"KEYWORDS", "IDENTIFIERS", "NUMBERS", "COMMENTS", "STRINGS", "ERRORS", "GARBAGE"})
+    public Corpus corpus;
+
+    @Param({"1048576"})
+    public int tamanho;
+
+    @Param({"SWITCH", "DFA", "GENERATED"})
+    public LexerFactory.Engine engine;
+
+    private String codigo;
+    private int bytesCodigo;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codigo = corpus.gerar(tamanho);
+        bytesCodigo = codigo.getBytes(StandardCharsets.UTF_8).length;
+        verificarMotores();
+    }
+
+    /**
+     * Garante que o motor medido produz os mesmos tokens que o {@link Lexer} original.
+     */
+    private void verificarMotores() {
+        List<Token> esperado = new Lexer(codigo).analisar();
+        List<Token> obtido = LexerFactory.create(codigo, engine).analisar();
+        if (esperado.size() != obtido.size()) {
+            throw new IllegalStateException(engine + " produziu " + obtido.size() + " tokens, esperado " + esperado.size());
+        }
+        for (int i = 0; i < esperado.size(); i++) {
+            if (!esperado.get(i).toString().equals(obtido.get(i).toString())) {
+                throw new IllegalStateException(engine + " divergiu no token " + i + ": " + obtido.get(i) + " != " + esperado.get(i));
+            }
+        }
+    }
+
+    /**
+     * Contadores por thread reportados pelo JMH como taxa por segundo.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Vazao {
+        public long bytes;
+        public long tokens;
+    }
+
+    @Benchmark
+    public List<Token> analisar(Vazao vazao) {
+        List<Token> tokens = LexerFactory.create(codigo, engine).analisar();
+        vazao.bytes += bytesCodigo;
+        vazao.tokens += tokens.size();
+        return tokens;
+    }
+
+    @Benchmark
+    public TokenBuffer analisarCompacto(Vazao vazao) {
+        TokenBuffer tokens = LexerFactory.create(codigo, engine).analisarCompacto();
+        vazao.bytes += bytesCodigo;
+        vazao.tokens += tokens.size();
+        return tokens;
+    }
+
+    @Benchmark
+    public void nextToken(Vazao vazao, Blackhole blackhole) {
+        Lexer lexer = LexerFactory.create(codigo, engine);
+        long total = 0;
+        while (lexer.hasMoreTokens()) {
+            Token token = lexer.nextToken();
+            blackhole.consume(token);
+            total++;
+        }
+        vazao.bytes += bytesCodigo;
+        vazao.tokens += total;
+    }
+}
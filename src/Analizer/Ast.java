@@ -0,0 +1,237 @@
+package Analizer;
+
+import java.util.Arrays;
+
+/**
+ * Árvore sintática produzida pelo {@link Parser}, guardada em vetores
+ * paralelos: cada nó é um índice int, com tipo, trecho [início, fim) no
+ * código, um valor que depende do tipo (ver {@link NodeKind}), o primeiro
+ * filho e o próximo irmão. Não há um objeto por nó nem referência aos
+ * tokens, então a memória acompanha o número de nós, não o de tokens.
+ *
+ * Índices de filho e de irmão valem -1 quando não existem.
+ */
+public final class Ast {
+
+    private static final NodeKind[] TIPOS = NodeKind.values();
+    private static final int CAPACIDADE_INICIAL = 64;
+
+    private final SourceBuffer fonte;
+    private final SymbolTable simbolos;
+    private final LineIndex linhas;
+    private final DiagnosticList diagnosticos;
+    private byte[] tipos = new byte[CAPACIDADE_INICIAL];
+    private int[] inicios = new int[CAPACIDADE_INICIAL];
+    private int[] fins = new int[CAPACIDADE_INICIAL];
+    private int[] valores = new int[CAPACIDADE_INICIAL];
+    private int[] primeirosFilhos = new int[CAPACIDADE_INICIAL];
+    private int[] proximosIrmaos = new int[CAPACIDADE_INICIAL];
+    private int[] ultimosFilhos = new int[CAPACIDADE_INICIAL];  // Só para acrescentar filhos em O(1)
+    private int tamanho;
+    private int raiz = -1;
+    private long[] numeros = new long[16];          // Por literal: o inteiro, ou os bits do double se for real
+    private boolean[] numerosReais = new boolean[16];
+    private int totalNumeros;
+
+    Ast(SourceBuffer fonte, SymbolTable simbolos, LineIndex linhas) {
+        this.fonte = fonte;
+        this.simbolos = simbolos;
+        this.linhas = linhas;
+        this.diagnosticos = new DiagnosticList(linhas);
+    }
+
+    /**
+     * Cria um nó sem filhos e devolve seu índice.
+     */
+    int novo(NodeKind tipo, int inicio, int fim, int valor) {
+        if (tamanho == tipos.length) {
+            int capacidade = tamanho * 2;
+            tipos = Arrays.copyOf(tipos, capacidade);
+            inicios = Arrays.copyOf(inicios, capacidade);
+            fins = Arrays.copyOf(fins, capacidade);
+            valores = Arrays.copyOf(valores, capacidade);
+            primeirosFilhos = Arrays.copyOf(primeirosFilhos, capacidade);
+            proximosIrmaos = Arrays.copyOf(proximosIrmaos, capacidade);
+            ultimosFilhos = Arrays.copyOf(ultimosFilhos, capacidade);
+        }
+        tipos[tamanho] = (byte) tipo.ordinal();
+        inicios[tamanho] = inicio;
+        fins[tamanho] = fim;
+        valores[tamanho] = valor;
+        primeirosFilhos[tamanho] = -1;
+        proximosIrmaos[tamanho] = -1;
+        ultimosFilhos[tamanho] = -1;
+        return tamanho++;
+    }
+
+    /**
+     * Acrescenta {@code filho} depois dos filhos que {@code pai} já tem e
+     * estende o trecho do pai até o fim do filho.
+     */
+    void adicionarFilho(int pai, int filho) {
+        if (ultimosFilhos[pai] < 0) {
+            primeirosFilhos[pai] = filho;
+        } else {
+            proximosIrmaos[ultimosFilhos[pai]] = filho;
+        }
+        ultimosFilhos[pai] = filho;
+        fins[pai] = Math.max(fins[pai], fins[filho]);
+    }
+
+    /**
+     * Guarda o valor de um literal numérico e devolve sua posição, que é o
+     * valor do nó NUMBER.
+     */
+    int adicionarNumero(long valor, boolean real) {
+        if (totalNumeros == numeros.length) {
+            numeros = Arrays.copyOf(numeros, totalNumeros * 2);
+            numerosReais = Arrays.copyOf(numerosReais, totalNumeros * 2);
+        }
+        numeros[totalNumeros] = valor;
+        numerosReais[totalNumeros] = real;
+        return totalNumeros++;
+    }
+
+    void setValor(int no, int valor) {
+        valores[no] = valor;
+    }
+
+    void setFim(int no, int fim) {
+        fins[no] = fim;
+    }
+
+    void setRaiz(int raiz) {
+        this.raiz = raiz;
+    }
+
+    /**
+     * Nó PROGRAM, ou -1 se o código estiver vazio.
+     */
+    public int getRaiz() {
+        return raiz;
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public NodeKind getKind(int no) {
+        return TIPOS[tipos[verificar(no)]];
+    }
+
+    public int getInicio(int no) {
+        return inicios[verificar(no)];
+    }
+
+    public int getFim(int no) {
+        return fins[verificar(no)];
+    }
+
+    public int getLinha(int no) {
+        return linhas.getLinha(getInicio(no));
+    }
+
+    public int getColuna(int no) {
+        return linhas.getColuna(getInicio(no));
+    }
+
+    public int getValor(int no) {
+        return valores[verificar(no)];
+    }
+
+    public int getPrimeiroFilho(int no) {
+        return primeirosFilhos[verificar(no)];
+    }
+
+    public int getProximoIrmao(int no) {
+        return proximosIrmaos[verificar(no)];
+    }
+
+    public int getQuantidadeFilhos(int no) {
+        int quantidade = 0;
+        for (int filho = getPrimeiroFilho(no); filho >= 0; filho = proximosIrmaos[filho]) {
+            quantidade++;
+        }
+        return quantidade;
+    }
+
+    /**
+     * Nome do símbolo de um nó PROGRAM, VARIABLE, ASSIGN, CALL ou IDENTIFIER.
+     */
+    public String getNome(int no) {
+        return simbolos.nome(getValor(no));
+    }
+
+    /**
+     * Operador de um nó BINARY ou UNARY, ou tipo declarado de um nó DECLARATION.
+     */
+    public TokenType getOperador(int no) {
+        return TokenType.values()[getValor(no)];
+    }
+
+    /**
+     * Indica se o nó NUMBER é um literal real, e não inteiro.
+     */
+    public boolean isReal(int no) {
+        return numerosReais[numero(no)];
+    }
+
+    /**
+     * Valor do nó NUMBER, convertido pelo Lexer; um literal real é truncado.
+     */
+    public long getInteiro(int no) {
+        int n = numero(no);
+        return numerosReais[n] ? (long) Double.longBitsToDouble(numeros[n]) : numeros[n];
+    }
+
+    /**
+     * Valor do nó NUMBER como double.
+     */
+    public double getReal(int no) {
+        int n = numero(no);
+        return numerosReais[n] ? Double.longBitsToDouble(numeros[n]) : numeros[n];
+    }
+
+    private int numero(int no) {
+        if (getKind(no) != NodeKind.NUMBER) {
+            throw new IllegalArgumentException("Nó " + no + " não é um número: " + getKind(no));
+        }
+        return valores[no];
+    }
+
+    /**
+     * Trecho do código coberto pelo nó; precisa do código inteiro na memória.
+     */
+    public String getTexto(int no) {
+        return fonte.substring(getInicio(no), getFim(no));
+    }
+
+    public SymbolTable getSymbolTable() {
+        return simbolos;
+    }
+
+    /**
+     * Erros léxicos e sintáticos, na ordem em que foram encontrados.
+     */
+    public DiagnosticList getDiagnostics() {
+        return diagnosticos;
+    }
+
+    public LineIndex getLineIndex() {
+        return linhas;
+    }
+
+    /**
+     * Memória ocupada pelos vetores da árvore, sem contar o código fonte.
+     */
+    public long tamanhoEmBytes() {
+        return (long) tipos.length * (1 + 6 * 4) + (long) numeros.length * (8 + 1) + diagnosticos.tamanhoEmBytes();
+    }
+
+    private int verificar(int no) {
+        if (no < 0 || no >= tamanho) {
+            throw new IndexOutOfBoundsException("Nó " + no + " fora do intervalo 0.." + tamanho);
+        }
+        return no;
+    }
+}
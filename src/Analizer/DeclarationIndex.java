@@ -0,0 +1,207 @@
+package Analizer;
+
+import java.util.Arrays;
+
+/**
+ * Índice das variáveis de um programa, montado a partir da {@link Ast}: para
+ * cada símbolo da {@link SymbolTable}, a declaração, o tipo declarado e os
+ * usos.
+ *
+ * Os ids de símbolo são densos (0, 1, 2, ...), então tudo fica em vetores
+ * indexados pelo id, sem mapas nem objetos por variável. Os usos de todos os
+ * símbolos ficam num único vetor, agrupados por símbolo, e o índice de cada
+ * grupo diz onde ele começa; assim o k-ésimo uso de um símbolo, a quantidade
+ * de usos e as perguntas "declarada?" e "usada?" custam O(1).
+ *
+ * Usos são os nós IDENTIFIER (leitura) e ASSIGN (escrita) da árvore; nomes
+ * chamados em nós CALL, como {@code writeln}, são procedimentos e não contam.
+ */
+public final class DeclarationIndex {
+
+    private final Ast ast;
+    private final int[] declaracoes;     // Por símbolo: nó VARIABLE da primeira declaração, ou -1
+    private final int[] tiposDeclarados; // Por símbolo: ordinal do TokenType do tipo, ou -1
+    private final int[] inicioUsos;      // Por símbolo: onde começam seus usos em usos; tem um a mais no fim
+    private final int[] usos;            // Nós de uso, agrupados por símbolo e em ordem no código
+    private final int[] naoDeclaradas;
+    private final int[] naoUsadas;
+    private final int[] repetidas;       // Nós VARIABLE que declaram de novo um símbolo
+
+    private DeclarationIndex(Ast ast) {
+        this.ast = ast;
+        int simbolos = ast.getSymbolTable().size();
+        declaracoes = new int[simbolos];
+        tiposDeclarados = new int[simbolos];
+        Arrays.fill(declaracoes, -1);
+        Arrays.fill(tiposDeclarados, -1);
+        inicioUsos = new int[simbolos + 1];
+
+        // Primeira passada: declarações e quantidade de usos por símbolo
+        int[] repetidas = new int[0];
+        int totalRepetidas = 0;
+        for (int no = 0; no < ast.size(); no++) {
+            switch (ast.getKind(no)) {
+                case DECLARATION:
+                    for (int variavel = ast.getPrimeiroFilho(no); variavel >= 0;
+                         variavel = ast.getProximoIrmao(variavel)) {
+                        int simbolo = ast.getValor(variavel);
+                        if (declaracoes[simbolo] < 0) {
+                            declaracoes[simbolo] = variavel;
+                            tiposDeclarados[simbolo] = ast.getValor(no);
+                        } else {
+                            if (totalRepetidas == repetidas.length) {
+                                repetidas = Arrays.copyOf(repetidas, Math.max(8, totalRepetidas * 2));
+                            }
+                            repetidas[totalRepetidas++] = variavel;
+                        }
+                    }
+                    break;
+                case IDENTIFIER:
+                case ASSIGN:
+                    if (ast.getValor(no) >= 0) {
+                        inicioUsos[ast.getValor(no) + 1]++;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        this.repetidas = Arrays.copyOf(repetidas, totalRepetidas);
+        for (int s = 0; s < simbolos; s++) {
+            inicioUsos[s + 1] += inicioUsos[s];
+        }
+
+        // Segunda passada: cada uso no lugar reservado para o seu símbolo
+        usos = new int[inicioUsos[simbolos]];
+        int[] proximo = Arrays.copyOf(inicioUsos, simbolos);
+        for (int no = 0; no < ast.size(); no++) {
+            NodeKind tipo = ast.getKind(no);
+            if ((tipo == NodeKind.IDENTIFIER || tipo == NodeKind.ASSIGN) && ast.getValor(no) >= 0) {
+                usos[proximo[ast.getValor(no)]++] = no;
+            }
+        }
+
+        int totalNaoDeclaradas = 0;
+        int totalNaoUsadas = 0;
+        for (int s = 0; s < simbolos; s++) {
+            if (declaracoes[s] < 0 && getQuantidadeUsos(s) > 0) {
+                totalNaoDeclaradas++;
+            } else if (declaracoes[s] >= 0 && getQuantidadeUsos(s) == 0) {
+                totalNaoUsadas++;
+            }
+        }
+        naoDeclaradas = new int[totalNaoDeclaradas];
+        naoUsadas = new int[totalNaoUsadas];
+        totalNaoDeclaradas = 0;
+        totalNaoUsadas = 0;
+        for (int s = 0; s < simbolos; s++) {
+            if (declaracoes[s] < 0 && getQuantidadeUsos(s) > 0) {
+                naoDeclaradas[totalNaoDeclaradas++] = s;
+            } else if (declaracoes[s] >= 0 && getQuantidadeUsos(s) == 0) {
+                naoUsadas[totalNaoUsadas++] = s;
+            }
+        }
+    }
+
+    /**
+     * Indexa as declarações e os usos da árvore em duas passadas pelos nós.
+     */
+    public static DeclarationIndex of(Ast ast) {
+        return new DeclarationIndex(ast);
+    }
+
+    public Ast getAst() {
+        return ast;
+    }
+
+    /**
+     * Id do símbolo com esse nome, ou -1 se o nome não aparece no programa.
+     */
+    public int getSimbolo(String nome) {
+        return ast.getSymbolTable().lookup(nome);
+    }
+
+    public boolean isDeclarada(int simbolo) {
+        return declaracoes[simbolo] >= 0;
+    }
+
+    /**
+     * Nó VARIABLE da primeira declaração do símbolo, ou -1.
+     */
+    public int getDeclaracao(int simbolo) {
+        return declaracoes[simbolo];
+    }
+
+    /**
+     * Tipo declarado ({@code INTEGER} ou {@code REAL}), ou {@code null} se o
+     * símbolo não foi declarado ou a declaração tinha erro no tipo.
+     */
+    public TokenType getTipo(int simbolo) {
+        int tipo = tiposDeclarados[simbolo];
+        return tipo >= 0 ? TokenType.values()[tipo] : null;
+    }
+
+    public int getQuantidadeUsos(int simbolo) {
+        return inicioUsos[simbolo + 1] - inicioUsos[simbolo];
+    }
+
+    /**
+     * Nó do {@code k}-ésimo uso do símbolo, em ordem no código.
+     */
+    public int getUso(int simbolo, int k) {
+        if (k < 0 || k >= getQuantidadeUsos(simbolo)) {
+            throw new IndexOutOfBoundsException("Uso " + k + " fora do intervalo 0.." + getQuantidadeUsos(simbolo));
+        }
+        return usos[inicioUsos[simbolo] + k];
+    }
+
+    /**
+     * Todos os usos do símbolo (nós IDENTIFIER e ASSIGN), em ordem no código.
+     */
+    public int[] getReferencias(int simbolo) {
+        return Arrays.copyOfRange(usos, inicioUsos[simbolo], inicioUsos[simbolo + 1]);
+    }
+
+    /**
+     * Símbolo usado sem ter sido declarado.
+     */
+    public boolean isNaoDeclarada(int simbolo) {
+        return declaracoes[simbolo] < 0 && getQuantidadeUsos(simbolo) > 0;
+    }
+
+    /**
+     * Símbolo declarado e nunca usado.
+     */
+    public boolean isNaoUsada(int simbolo) {
+        return declaracoes[simbolo] >= 0 && getQuantidadeUsos(simbolo) == 0;
+    }
+
+    /**
+     * Símbolos usados sem declaração, em ordem de id.
+     */
+    public int[] getNaoDeclaradas() {
+        return naoDeclaradas.clone();
+    }
+
+    /**
+     * Símbolos declarados e nunca usados, em ordem de id.
+     */
+    public int[] getNaoUsadas() {
+        return naoUsadas.clone();
+    }
+
+    /**
+     * Nós VARIABLE que repetem a declaração de um símbolo já declarado.
+     */
+    public int[] getDeclaracoesRepetidas() {
+        return repetidas.clone();
+    }
+
+    public int getTotalNaoDeclaradas() {
+        return naoDeclaradas.length;
+    }
+
+    public int getTotalNaoUsadas() {
+        return naoUsadas.length;
+    }
+}
@@ -0,0 +1,207 @@
+package Analizer;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Motor de análise baseado em tabelas: cada caractere é convertido em uma
+ * classe e o próximo estado sai de uma tabela de transições pré-calculada.
+ *
+ * As palavras reservadas fazem parte do autômato (uma trie dentro da tabela),
+ * então nenhuma String é criada só para classificar um identificador. Os
+ * caracteres ASCII usam o próprio código como classe; os demais caem em três
+ * classes (letra, dígito e outro) decididas por {@link Character}. Comentários
+ * e literais de texto continuam com as rotinas do {@link Lexer}.
+ *
+ * Produz exatamente os mesmos tokens que o {@link Lexer}.
+ */
+public class DfaLexer extends Lexer {
+
+    private static final int OUTRA_LETRA = 128;
+    private static final int OUTRO_DIGITO = 129;
+    private static final int OUTRO = 130;
+    private static final int NUM_CLASSES = 131;
+
+    private static final byte SEM_ACAO = 0;
+    private static final byte ACAO_COMENTARIO_LINHA = 1;
+    private static final byte ACAO_COMENTARIO_BLOCO = 2;
+    private static final byte ACAO_STRING = 3;
+
+    private static final int MAX_ESTADOS = 128;
+    private static final int INICIO = 0;
+
+    private static final int[] TRANSICOES = new int[MAX_ESTADOS * NUM_CLASSES];
+    private static final TokenType[] ACEITA = new TokenType[MAX_ESTADOS];
+    private static final byte[] ACOES = new byte[MAX_ESTADOS];
+    private static int totalEstados = 1;
+
+    static {
+        Arrays.fill(TRANSICOES, -1);
+
+        int identificador = novoEstado(TokenType.IDENTIFIER, SEM_ACAO);
+        continuarIdentificador(INICIO, identificador, true);
+        continuarIdentificador(identificador, identificador, false);
+
+        int numero = novoEstado(TokenType.NUMBER, SEM_ACAO);
+        int numeroPonto = novoEstado(null, SEM_ACAO);
+        digitos(INICIO, numero);
+        digitos(numero, numero);
+        digitos(numeroPonto, numero);
+        transicao(numero, '.', numeroPonto);
+
+        simbolo('+', TokenType.PLUS);
+        simbolo('-', TokenType.MINUS);
+        simbolo('*', TokenType.MULTIPLY);
+        simbolo('=', TokenType.EQUAL);
+        simbolo('(', TokenType.LPAREN);
+        simbolo(')', TokenType.RPAREN);
+        simbolo(';', TokenType.SEMICOLON);
+        simbolo(',', TokenType.COMMA);
+        simbolo('.', TokenType.PERIOD);
+        transicao(simbolo(':', TokenType.COLON), '=', novoEstado(TokenType.ASSIGN, SEM_ACAO));
+        transicao(simbolo('<', TokenType.LESS_THAN), '=', novoEstado(TokenType.LESS_THAN_OR_EQUAL, SEM_ACAO));
+        transicao(simbolo('>', TokenType.GREATER_THAN), '=', novoEstado(TokenType.GREATER_THAN_OR_EQUAL, SEM_ACAO));
+
+        int barra = simbolo('/', TokenType.DIVIDE);
+        transicao(barra, '/', novoEstado(null, ACAO_COMENTARIO_LINHA));
+        transicao(barra, '*', novoEstado(null, ACAO_COMENTARIO_BLOCO));
+        transicao(INICIO, '{', novoEstado(null, ACAO_COMENTARIO_BLOCO));
+        int string = novoEstado(null, ACAO_STRING);
+        transicao(INICIO, '\'', string);
+        transicao(INICIO, '"', string);
+
+        for (Map.Entry<String, TokenType> keyword : KEYWORDS.entrySet()) {
+            int estado = INICIO;
+            String palavra = keyword.getKey();
+            for (int i = 0; i < palavra.length(); i++) {
+                int proximo = TRANSICOES[estado * NUM_CLASSES + palavra.charAt(i)];
+                if (proximo == identificador) {
+                    proximo = novoEstado(TokenType.IDENTIFIER, SEM_ACAO);
+                    continuarIdentificador(proximo, identificador, false);
+                    transicao(estado, palavra.charAt(i), proximo);
+                }
+                estado = proximo;
+            }
+            ACEITA[estado] = keyword.getValue();
+        }
+    }
+
+    public DfaLexer(String codigo) {
+        super(codigo);
+    }
+
+    public DfaLexer(SourceBuffer fonte) {
+        super(fonte);
+    }
+
+    private static int novoEstado(TokenType aceita, byte acao) {
+        int estado = totalEstados++;
+        ACEITA[estado] = aceita;
+        ACOES[estado] = acao;
+        return estado;
+    }
+
+    private static void transicao(int de, int classe, int para) {
+        TRANSICOES[de * NUM_CLASSES + classe] = para;
+    }
+
+    private static int simbolo(char c, TokenType type) {
+        int estado = novoEstado(type, SEM_ACAO);
+        transicao(INICIO, c, estado);
+        return estado;
+    }
+
+    private static void digitos(int de, int para) {
+        for (char c = 0; c < 128; c++) {
+            if (Character.isDigit(c)) {
+                transicao(de, c, para);
+            }
+        }
+        transicao(de, OUTRO_DIGITO, para);
+    }
+
+    /**
+     * Identificadores começam com letra e continuam com letras, dígitos ou '_'.
+     */
+    private static void continuarIdentificador(int de, int para, boolean inicio) {
+        for (char c = 0; c < 128; c++) {
+            if (inicio ? Character.isLetter(c) : Character.isLetterOrDigit(c) || c == '_') {
+                transicao(de, c, para);
+            }
+        }
+        transicao(de, OUTRA_LETRA, para);
+        if (!inicio) {
+            transicao(de, OUTRO_DIGITO, para);
+        }
+    }
+
+    private static int classe(char c) {
+        if (c < 128) {
+            return c;
+        }
+        if (Character.isLetter(c)) {
+            return OUTRA_LETRA;
+        }
+        return Character.isDigit(c) ? OUTRO_DIGITO : OUTRO;
+    }
+
+    @Override
+    TokenType scan(TokenSink sink) {
+        while (true) {
+            int antes = posicao;
+            skipWhitespace();
+            espacos += posicao - antes;
+            if (passouDoLimite()) {
+                return TokenType.WHITESPACE;
+            }
+            fonte.mark(posicao);
+            inicioLexema = posicao;
+            if (!fonte.has(posicao)) {
+                fimLexema = posicao;
+                return TokenType.EOF;
+            }
+
+            int estado = INICIO;
+            int pos = posicao;
+            TokenType aceito = null;
+            int fimAceito = posicao;
+            while (fonte.has(pos)) {
+                int proximo = TRANSICOES[estado * NUM_CLASSES + classe(fonte.charAt(pos))];
+                if (proximo < 0) {
+                    break;
+                }
+                estado = proximo;
+                pos++;
+                if (ACOES[estado] != SEM_ACAO) {
+                    break;
+                }
+                if (ACEITA[estado] != null) {
+                    aceito = ACEITA[estado];
+                    fimAceito = pos;
+                }
+            }
+
+            switch (ACOES[estado]) {
+                case ACAO_COMENTARIO_LINHA:
+                    skipLineComment();
+                    continue;
+                case ACAO_COMENTARIO_BLOCO:
+                    skipBlockComment(sink);
+                    continue;
+                case ACAO_STRING:
+                    return extractStringLiteral();
+                default:
+                    break;
+            }
+            if (aceito == null) {
+                mensagemErro = "Caractere inesperado: " + fonte.charAt(posicao) + " na linha " + linhaAtual;
+                codigoErro = DiagnosticCode.UNEXPECTED_CHARACTER;
+                fimLexema = posicao + 1;
+                return TokenType.ERROR;
+            }
+            posicao = fimAceito;
+            fimLexema = fimAceito;
+            return aceito;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package Analizer;
+
+/**
+ * Tipos de diagnóstico que o {@link Lexer} e o {@link Parser} podem produzir,
+ * cada um com sua gravidade. Só os de gravidade ERROR viram tokens ERROR e
+ * contam como erros; avisos e informações não interrompem a análise.
+ */
+public enum DiagnosticCode {
+    /** Caractere que não inicia nenhum token; o trecho é o próprio caractere. */
+    UNEXPECTED_CHARACTER(Severity.ERROR),
+    /** Literal de texto sem as aspas finais; o trecho vai das aspas iniciais ao fim da linha. */
+    UNCLOSED_STRING(Severity.ERROR),
+    /** Comentário de bloco sem fechamento; o trecho vai da abertura ao fim do código. */
+    UNCLOSED_COMMENT(Severity.ERROR),
+    /** Token em outra linha depois de um token que não é ';'; o trecho é o token anterior. */
+    MISSING_SEMICOLON(Severity.ERROR),
+    /** O limite de erros reportados foi atingido. */
+    ERROR_LIMIT_REACHED(Severity.INFO),
+    /** A análise foi encerrada antes do fim do código por excesso de erros. */
+    ANALYSIS_STOPPED(Severity.INFO),
+    /** Token que a gramática não aceita naquele ponto; o trecho é o token encontrado. */
+    UNEXPECTED_TOKEN(Severity.ERROR),
+    /** Comandos ou expressões aninhados além do que o Parser aceita; o trecho é o token em que ele desistiu. */
+    NESTING_TOO_DEEP(Severity.ERROR),
+    /** Número com mais de um ponto decimal, como {@code 1.2.3}; o trecho é o número. O valor fica NaN. */
+    MALFORMED_NUMBER(Severity.ERROR),
+    /** Inteiro maior que {@link Long#MAX_VALUE}; o trecho é o número. O valor fica em {@code Long.MAX_VALUE}. */
+    INTEGER_OVERFLOW(Severity.ERROR),
+    /** Real grande demais para um {@code double}; o trecho é o número. O valor fica infinito. */
+    REAL_OUT_OF_RANGE(Severity.ERROR),
+    /** Real com mais dígitos significativos do que um {@code double} guarda; o trecho é o número. */
+    PRECISION_LOSS(Severity.WARNING),
+    /** No Parser, falta o ';' entre dois comandos ou depois de uma declaração; o trecho é o último token antes da falta. */
+    SEMICOLON_EXPECTED(Severity.ERROR);
+
+    private final Severity severity;
+
+    DiagnosticCode(Severity severity) {
+        this.severity = severity;
+    }
+
+    public Severity getSeverity() {
+        return severity;
+    }
+}
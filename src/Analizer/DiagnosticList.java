@@ -0,0 +1,224 @@
+package Analizer;
+
+import java.util.Arrays;
+
+/**
+ * Diagnósticos de um {@link TokenBuffer} ou de uma {@link Ast}, em vetores
+ * paralelos: código, mensagem, trecho [início, fim) empacotado em um long e o
+ * índice do token correspondente. Linha e coluna são calculadas a partir do
+ * trecho.
+ *
+ * Um erro tem o índice do seu token ERROR; um aviso não tem token próprio e
+ * leva o índice do token que veio logo depois dele, que pode ter vários.
+ */
+public final class DiagnosticList {
+
+    private static final DiagnosticCode[] CODIGOS = DiagnosticCode.values();
+
+    private final TokenBuffer tokens;
+    private final LineIndex linhas;  // Só sem tokens; com tokens o índice é o do buffer
+    private int[] indicesToken = new int[0];
+    private String[] mensagens = new String[0];
+    private byte[] codigos = new byte[0];
+    private long[] trechos = new long[0];
+    private int total;
+
+    DiagnosticList(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.linhas = null;
+    }
+
+    /**
+     * Lista sem tokens associados, como a do {@link Parser}; os índices de token são -1.
+     */
+    DiagnosticList(LineIndex linhas) {
+        this.tokens = null;
+        this.linhas = linhas;
+    }
+
+    /**
+     * Registra o diagnóstico do token de índice {@code indiceToken}. Os
+     * índices precisam chegar em ordem não decrescente, ou ser todos -1 numa
+     * lista sem tokens.
+     */
+    void adicionar(int indiceToken, DiagnosticCode codigo, String mensagem, int inicio, int fim) {
+        if (total == indicesToken.length) {
+            int capacidade = Math.max(8, total * 2);
+            indicesToken = Arrays.copyOf(indicesToken, capacidade);
+            mensagens = Arrays.copyOf(mensagens, capacidade);
+            codigos = Arrays.copyOf(codigos, capacidade);
+            trechos = Arrays.copyOf(trechos, capacidade);
+        }
+        indicesToken[total] = indiceToken;
+        mensagens[total] = mensagem;
+        codigos[total] = (byte) codigo.ordinal();
+        trechos[total] = ((long) inicio << 32) | (fim & 0xFFFFFFFFL);
+        total++;
+    }
+
+    /**
+     * Copia os diagnósticos dos tokens [de, ate) de outra lista, com os
+     * índices, linhas e posições deslocados como em
+     * {@link TokenBuffer#anexar(TokenBuffer, int, int, int, int)}. As mensagens
+     * que citam a linha são reescritas.
+     */
+    void anexar(DiagnosticList origem, int de, int ate, int destino, int deltaLinha, int deltaInicio) {
+        for (int d = origem.primeiroAPartir(de); d < origem.total && origem.indicesToken[d] < ate; d++) {
+            int indice = origem.indicesToken[d];
+            String mensagem = origem.deslocarLinha(origem.mensagens[d], indice, deltaLinha);
+            adicionar(destino + indice - de, CODIGOS[origem.codigos[d]], mensagem,
+                    origem.getInicio(d) + deltaInicio, origem.getFim(d) + deltaInicio);
+        }
+    }
+
+    /**
+     * Troca os diagnósticos dos tokens [de, ate) pelos de {@code novos}, cujos
+     * índices começam em {@code de}, e desloca os seguintes como em
+     * {@link TokenBuffer#substituir(int, int, TokenBuffer, int, int)}. Precisa
+     * ser chamado antes de os tokens do buffer mudarem de lugar, pois as
+     * mensagens são reescritas a partir da linha antiga de cada token.
+     */
+    void substituir(int de, int ate, DiagnosticList novos, int deltaLinha, int deltaInicio) {
+        int primeiro = primeiroAPartir(de);
+        int cauda = primeiroAPartir(ate);
+        int deltaIndice = novos.tokens.size() - (ate - de);
+        for (int d = cauda; d < total; d++) {
+            mensagens[d] = deslocarLinha(mensagens[d], indicesToken[d], deltaLinha);
+            indicesToken[d] += deltaIndice;
+            if (deltaInicio != 0) {
+                trechos[d] = ((long) (getInicio(d) + deltaInicio) << 32) | ((getFim(d) + deltaInicio) & 0xFFFFFFFFL);
+            }
+        }
+
+        int novoTotal = total - (cauda - primeiro) + novos.total;
+        if (novoTotal > indicesToken.length) {
+            int capacidade = Math.max(novoTotal, indicesToken.length * 2);
+            indicesToken = Arrays.copyOf(indicesToken, capacidade);
+            mensagens = Arrays.copyOf(mensagens, capacidade);
+            codigos = Arrays.copyOf(codigos, capacidade);
+            trechos = Arrays.copyOf(trechos, capacidade);
+        }
+        int destino = primeiro + novos.total;
+        System.arraycopy(indicesToken, cauda, indicesToken, destino, total - cauda);
+        System.arraycopy(mensagens, cauda, mensagens, destino, total - cauda);
+        System.arraycopy(codigos, cauda, codigos, destino, total - cauda);
+        System.arraycopy(trechos, cauda, trechos, destino, total - cauda);
+        for (int d = 0; d < novos.total; d++) {
+            indicesToken[primeiro + d] = novos.indicesToken[d] + de;
+        }
+        System.arraycopy(novos.mensagens, 0, mensagens, primeiro, novos.total);
+        System.arraycopy(novos.codigos, 0, codigos, primeiro, novos.total);
+        System.arraycopy(novos.trechos, 0, trechos, primeiro, novos.total);
+        for (int d = novoTotal; d < total; d++) {
+            mensagens[d] = null;
+        }
+        total = novoTotal;
+    }
+
+    // Mensagem que cita a linha do seu token, reescrita com a linha deslocada
+    private String deslocarLinha(String mensagem, int indiceToken, int deltaLinha) {
+        if (deltaLinha == 0) {
+            return mensagem;
+        }
+        int linha = tokens.getLinha(indiceToken);
+        String sufixo = " na linha " + linha;
+        if (!mensagem.endsWith(sufixo)) {
+            return mensagem;
+        }
+        return mensagem.substring(0, mensagem.length() - sufixo.length()) + " na linha " + (linha + deltaLinha);
+    }
+
+    public int size() {
+        return total;
+    }
+
+    public DiagnosticCode getCode(int d) {
+        return CODIGOS[codigos[verificar(d)]];
+    }
+
+    public Severity getSeverity(int d) {
+        return getCode(d).getSeverity();
+    }
+
+    public String getMensagem(int d) {
+        return mensagens[verificar(d)];
+    }
+
+    /**
+     * Posição do início do trecho a que o diagnóstico se refere.
+     */
+    public int getInicio(int d) {
+        return (int) (trechos[verificar(d)] >>> 32);
+    }
+
+    /**
+     * Posição logo depois do fim do trecho; igual ao início quando o trecho é vazio.
+     */
+    public int getFim(int d) {
+        return (int) trechos[verificar(d)];
+    }
+
+    /**
+     * Linha do início do trecho. A linha citada na mensagem e a do token
+     * ERROR seguem o Lexer original e podem ser outras (por exemplo, a
+     * última linha para um comentário não fechado).
+     */
+    public int getLinha(int d) {
+        return lineIndex().getLinha(getInicio(d));
+    }
+
+    public int getColuna(int d) {
+        return lineIndex().getColuna(getInicio(d));
+    }
+
+    private LineIndex lineIndex() {
+        return tokens != null ? tokens.getLineIndex() : linhas;
+    }
+
+    /**
+     * Índice do token ERROR que representa o erro na sequência de tokens; para
+     * um aviso, o do token que veio logo depois dele. É -1 se a lista não
+     * tiver tokens.
+     */
+    public int getTokenIndex(int d) {
+        return indicesToken[verificar(d)];
+    }
+
+    /**
+     * Erro do token de índice {@code indiceToken}, ou -1 se o token não for um erro.
+     */
+    int procurarToken(int indiceToken) {
+        for (int d = primeiroAPartir(indiceToken); d < total && indicesToken[d] == indiceToken; d++) {
+            if (CODIGOS[codigos[d]].getSeverity() == Severity.ERROR) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
+    long tamanhoEmBytes() {
+        return (long) indicesToken.length * (4 + 1 + 8 + 8);
+    }
+
+    // Primeiro diagnóstico com índice de token maior ou igual ao informado
+    private int primeiroAPartir(int indiceToken) {
+        int baixo = 0;
+        int alto = total;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (indicesToken[meio] < indiceToken) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        return baixo;
+    }
+
+    private int verificar(int d) {
+        if (d < 0 || d >= total) {
+            throw new IndexOutOfBoundsException("Diagnóstico " + d + " fora do intervalo 0.." + total);
+        }
+        return d;
+    }
+}
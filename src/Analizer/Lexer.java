@@ -1,21 +1,87 @@
 package Analizer;
 
 import Controller.LexicalException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 
-public class Lexer {
+public class Lexer implements Closeable {
 
-    private String codigo;
-    private int posicao;
-    private int linhaAtual;
-    private static final Map<String, TokenType> KEYWORDS;
+    // Estado compartilhado com os motores de análise do pacote (ver DfaLexer)
+    final SourceBuffer fonte;
+    int posicao;
+    int linhaAtual;
+    int inicioLexema;
+    int fimLexema;
+    String mensagemErro; // Mensagem e código do último scan que devolveu ERROR
+    DiagnosticCode codigoErro;
+    private LineIndex linhas = new LineIndex(1, 0, false); // Só a linha atual, salvo depois de indexarLinhas()
+    private LineIndex linhasFonte;  // Índice do código inteiro, montado no primeiro getLineIndex()
+    private final SymbolTable simbolos = new SymbolTable();
+    private int simboloAtual;
+    private long valorNumero;       // Valor do último NUMBER: o inteiro, ou os bits do double se numeroReal
+    private boolean numeroReal;
+    private boolean perdaDePrecisao; // O último NUMBER tem dígitos demais para um double, e o aviso está pendente
+    private TokenType ultimoTipo;
+    private int ultimaLinha;
+    private int ultimoInicio;
+    private int ultimoFim;
+    private boolean terminado;
+    private int limite = Integer.MAX_VALUE;
+    private final ArrayDeque<Token> pendentes = new ArrayDeque<>();
+    private Token tokenFinal;
+    private int totalErros;
+    private int limiteErros = Integer.MAX_VALUE;
+    private int pararAposErros = Integer.MAX_VALUE;
+    private boolean verificarPontoEVirgula = true;
+    private LexerMetrics metricas = LexerMetrics.NOOP;
+    private long[] tokensPorTipo;   // Contadores das métricas; nulos quando desativadas
+    private long[] diagnosticosPorCodigo;
+    private int posicaoMedida;      // Posição até onde os caracteres já foram entregues às métricas
+    private long alocadosNoInicio;
+    long espacos;                   // Caracteres de espaço e de comentário ainda não entregues
+    long comentarios;
+    private final TokenSink fila = new TokenSink() {
+        @Override
+        public void token(TokenType type, int inicio, int fim, int linha) {
+            String lexema = type == TokenType.IDENTIFIER ? simbolos.nome(simboloAtual) : lexemaFixo(type);
+            pendentes.add(new Token(type, lexema != null ? lexema : fonte.substring(inicio, fim), linha,
+                    inicio, fim));
+        }
+
+        @Override
+        public void diagnostico(DiagnosticCode codigo, String mensagem, int linha, int inicio, int fim) {
+            TokenType type = codigo.getSeverity() == Severity.ERROR ? TokenType.ERROR : TokenType.NOTICE;
+            pendentes.add(new Token(type, mensagem, linha, inicio, fim));
+        }
+    };
+    static final Map<String, TokenType> KEYWORDS;
+    private static final double[] POTENCIAS_DE_DEZ = new double[23]; // Exatas em double até 10^22
+    private static final int DIGITOS_DOUBLE = 17;
+    private static final long LIMITE_MANTISSA = Long.MAX_VALUE / 10;
 
     static {
+        POTENCIAS_DE_DEZ[0] = 1;
+        for (int i = 1; i < POTENCIAS_DE_DEZ.length; i++) {
+            POTENCIAS_DE_DEZ[i] = POTENCIAS_DE_DEZ[i - 1] * 10;
+        }
         KEYWORDS = new HashMap<>();
         KEYWORDS.put("program", TokenType.PROGRAM);
         KEYWORDS.put("var", TokenType.VAR);
@@ -31,188 +97,709 @@ public class Lexer {
     }
 
     public Lexer(String codigo) {
-        this.codigo = codigo;
+        this(SourceBuffer.of(codigo));
+    }
+
+    /**
+     * Cria um Lexer que lê o código fonte sob demanda, sem carregá-lo inteiro em uma String.
+     *
+     * @param reader Origem dos caracteres do código fonte.
+     */
+    public Lexer(Reader reader) {
+        this(SourceBuffer.of(reader));
+    }
+
+    public Lexer(SourceBuffer fonte) {
+        this.fonte = fonte;
         this.posicao = 0;
         this.linhaAtual = 1;
     }
 
+    /**
+     * Cria um Lexer que decodifica os bytes do canal sob demanda.
+     */
+    public static Lexer fromChannel(ReadableByteChannel canal, Charset charset) {
+        return new Lexer(SourceBuffer.of(canal, charset));
+    }
+
+    /**
+     * Cria um Lexer sobre o arquivo mapeado em memória, decodificado sob demanda.
+     *
+     * @throws IOException Se o arquivo não puder ser aberto.
+     */
+    public static Lexer fromPath(Path arquivo, Charset charset) throws IOException {
+        return new Lexer(SourceBuffer.map(arquivo, charset));
+    }
+
+    /**
+     * Analisa todo o código fonte e devolve a lista completa de tokens,
+     * terminada pelo token EOF. Os erros viram tokens ERROR; os avisos e as
+     * informações, como a de limite de erros atingido, viram tokens NOTICE,
+     * que não contam como erros.
+     *
+     * @return Lista de tokens reconhecidos.
+     */
     public List<Token> analisar() {
+        long inicio = iniciarMedicao();
         List<Token> tokens = new ArrayList<>();
-        Token ultimoToken = null;
-        while (hasNext()) {
-            try {
-                Token token = nextToken(tokens);
-                if (token.getType() != TokenType.WHITESPACE && token.getType() != TokenType.COMMENT) {
-                    if (ultimoToken != null && ultimoToken.getLinha() < linhaAtual && ultimoToken.getType() != TokenType.SEMICOLON) {
-                        tokens.add(new Token(TokenType.ERROR, "Faltando ponto e virgula", ultimoToken.getLinha()));
-                    }
-                    ultimoToken = token;
-                    tokens.add(token);
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (!terminado || !pendentes.isEmpty());
+        encerrarMedicao(inicio);
+        return tokens;
+    }
+
+    /**
+     * Analisa todo o código fonte guardando os tokens em um {@link TokenBuffer}
+     * compacto, sem criar um objeto {@link Token} por token.
+     *
+     * @return Buffer com os tokens reconhecidos, terminado pelo EOF.
+     * @throws IllegalStateException Se o código não estiver inteiro na memória
+     *                               (Lexer criado a partir de um Reader).
+     */
+    public TokenBuffer analisarCompacto() {
+        TokenBuffer buffer = new TokenBuffer(fonte, simbolos);
+        analisarTudo(buffer);
+        return buffer;
+    }
+
+    /**
+     * Continua a análise acrescentando cerca de {@code maximo} tokens ao buffer,
+     * para quem consome o resultado aos poucos. O buffer pode ser outro a cada
+     * chamada.
+     *
+     * @return {@code true} enquanto ainda houver código a analisar.
+     */
+    public boolean analisarLote(TokenBuffer destino, int maximo) {
+        long inicio = iniciarMedicao();
+        int alvo = destino.size() + maximo;
+        while (!terminado && destino.size() < alvo) {
+            avancar(destino);
+        }
+        encerrarMedicao(inicio);
+        return !terminado;
+    }
+
+    /**
+     * Limita a quantidade de erros reportados. Depois do limite a análise
+     * continua, mas os erros seguintes são trocados por um único aviso.
+     */
+    public void setLimiteErros(int maximo) {
+        this.limiteErros = maximo;
+    }
+
+    /**
+     * Encerra a análise, com o EOF final, assim que {@code maximo} erros forem encontrados.
+     */
+    public void setPararAposErros(int maximo) {
+        this.pararAposErros = maximo;
+    }
+
+    /**
+     * Liga ou desliga o aviso de ponto e vírgula ausente, que o Lexer dá
+     * comparando linhas: qualquer token em outra linha depois de um token que
+     * não seja ';'. O {@link Parser} o desliga e faz a verificação pela gramática.
+     */
+    public void setVerificarPontoEVirgula(boolean verificar) {
+        this.verificarPontoEVirgula = verificar;
+    }
+
+    /**
+     * Passa a entregar as medições da análise às métricas informadas: tokens
+     * por tipo, erros por código, caracteres percorridos, o tempo de
+     * {@link #analisar()}, {@link #analisarCompacto()} e
+     * {@link #analisarLote}, e os bytes alocados nelas. As contagens são
+     * entregues ao fim de cada uma dessas chamadas, ao fim do código e em
+     * {@link #close()}.
+     */
+    public void setMetricas(LexerMetrics metricas) {
+        this.metricas = metricas;
+        if (metricas.isEnabled()) {
+            tokensPorTipo = new long[TokenType.values().length];
+            diagnosticosPorCodigo = new long[DiagnosticCode.values().length];
+        } else {
+            tokensPorTipo = null;
+            diagnosticosPorCodigo = null;
+        }
+    }
+
+    /**
+     * Quantidade de erros encontrados até agora, inclusive os omitidos pelo limite.
+     */
+    public int getTotalErros() {
+        return totalErros;
+    }
+
+    /**
+     * Tabela com os identificadores já vistos por este Lexer, com ids estáveis.
+     */
+    public SymbolTable getSymbolTable() {
+        return simbolos;
+    }
+
+    /**
+     * Id na tabela de símbolos do último identificador reconhecido.
+     */
+    public int getSimboloAtual() {
+        return simboloAtual;
+    }
+
+    /**
+     * Devolve o próximo token do código fonte, analisando apenas o necessário
+     * para produzi-lo. Os tokens de erro e o EOF final aparecem na mesma ordem
+     * de {@link #analisar()}; depois do EOF final, o mesmo EOF é devolvido
+     * novamente.
+     *
+     * @return O próximo token.
+     */
+    public Token nextToken() {
+        while (pendentes.isEmpty()) {
+            if (terminado) {
+                return tokenFinal;
+            }
+            avancar(fila);
+            if (terminado) {
+                tokenFinal = pendentes.peekLast();
+            }
+        }
+        return pendentes.poll();
+    }
+
+    /**
+     * Como {@link #nextToken()}, mas lança {@link LexicalException} em vez de
+     * devolver um token ERROR, para quem prefere tratar erros léxicos como
+     * exceções. Depois da exceção a análise pode continuar normalmente.
+     *
+     * @return O próximo token que não é erro, incluindo os NOTICE, ou o EOF.
+     * @throws LexicalException Se o próximo token for um erro.
+     */
+    public Token nextTokenStrict() throws LexicalException {
+        Token token = nextToken();
+        if (token.getType() == TokenType.ERROR) {
+            throw new LexicalException(token.getLexema());
+        }
+        return token;
+    }
+
+    /**
+     * Indica se ainda há tokens a devolver, incluindo o EOF final.
+     *
+     * @return {@code true} enquanto o EOF final não tiver sido consumido.
+     */
+    public boolean hasMoreTokens() {
+        return !terminado || !pendentes.isEmpty();
+    }
+
+    /**
+     * Iterador de passagem única sobre os tokens restantes, terminando no EOF final.
+     *
+     * @return Iterador que consome o Lexer sob demanda.
+     */
+    public Iterator<Token> iterator() {
+        return new Iterator<Token>() {
+            @Override
+            public boolean hasNext() {
+                return hasMoreTokens();
+            }
+
+            @Override
+            public Token next() {
+                if (!hasMoreTokens()) {
+                    throw new NoSuchElementException();
                 }
-            } catch (LexicalException e) {
-                tokens.add(new Token(TokenType.ERROR, e.getMessage(), linhaAtual));
-                skipToNextToken();
+                return nextToken();
+            }
+        };
+    }
+
+    public Spliterator<Token> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE);
+    }
+
+    public Stream<Token> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Lexema dos tokens de texto fixo, ou {@code null} quando o lexema depende do código.
+     */
+    static String lexemaFixo(TokenType type) {
+        switch (type) {
+            case PLUS: return "+";
+            case MINUS: return "-";
+            case MULTIPLY: return "*";
+            case DIVIDE: return "/";
+            case EQUAL: return "=";
+            case LPAREN: return "(";
+            case RPAREN: return ")";
+            case SEMICOLON: return ";";
+            case COLON: return ":";
+            case ASSIGN: return ":=";
+            case COMMA: return ",";
+            case LESS_THAN: return "<";
+            case LESS_THAN_OR_EQUAL: return "<=";
+            case GREATER_THAN: return ">";
+            case GREATER_THAN_OR_EQUAL: return ">=";
+            case PERIOD: return ".";
+            case EOF: return "";
+            default: return null;
+        }
+    }
+
+    /**
+     * Reposiciona o Lexer para começar a análise em {@code posicao}, na linha informada.
+     */
+    void posicionar(int posicao, int linha) {
+        this.posicao = posicao;
+        this.posicaoMedida = posicao;
+        this.linhaAtual = linha;
+        this.linhas = new LineIndex(linha, posicao, linhas.isCompleto());
+    }
+
+    /**
+     * Analisa os tokens que começam antes de {@code limite} e para na primeira
+     * posição depois dele que não seja espaço. Um token ou comentário que
+     * comece antes do limite é lido até o fim, mesmo que passe dele. Se só
+     * houver espaços até o fim do código, segue como a análise normal.
+     */
+    void analisarAte(TokenSink sink, int limite) {
+        limitar(limite);
+        while (!terminado && posicao < limite) {
+            avancar(sink);
+        }
+    }
+
+    /**
+     * Retoma a análise como se o último token reconhecido tivesse sido o informado,
+     * para que a verificação de ponto e vírgula continue valendo.
+     */
+    void continuarApos(TokenType tipo, int linha, int inicio, int fim) {
+        this.ultimoTipo = tipo;
+        this.ultimaLinha = linha;
+        this.ultimoInicio = inicio;
+        this.ultimoFim = fim;
+    }
+
+    /**
+     * Faz {@link #scan} parar antes de qualquer token que comece em {@code limite} ou depois.
+     */
+    void limitar(int limite) {
+        this.limite = limite;
+    }
+
+    /**
+     * Indica se o próximo token começaria depois do limite do trecho; nesse
+     * caso {@link #scan} devolve WHITESPACE e nada é emitido.
+     */
+    boolean passouDoLimite() {
+        return posicao >= limite && hasNext();
+    }
+
+    /**
+     * Analisa até o fim do código, incluindo o EOF final.
+     */
+    void analisarTudo(TokenSink sink) {
+        long inicio = iniciarMedicao();
+        while (!terminado) {
+            avancar(sink);
+        }
+        encerrarMedicao(inicio);
+    }
+
+    private long iniciarMedicao() {
+        if (tokensPorTipo == null) {
+            return 0;
+        }
+        alocadosNoInicio = Alocacao.daThread();
+        return System.nanoTime();
+    }
+
+    private void encerrarMedicao(long inicio) {
+        if (tokensPorTipo == null) {
+            return;
+        }
+        metricas.fase(LexerMetrics.Phase.LEX, System.nanoTime() - inicio);
+        long alocados = Alocacao.daThread();
+        if (alocados >= 0 && alocadosNoInicio >= 0) {
+            metricas.alocacao(alocados - alocadosNoInicio);
+        }
+        publicarMetricas();
+    }
+
+    /**
+     * Entrega às métricas as contagens acumuladas desde a última entrega e as zera.
+     */
+    private void publicarMetricas() {
+        if (tokensPorTipo == null) {
+            return;
+        }
+        if (posicao != posicaoMedida) {
+            metricas.caracteres(posicao - posicaoMedida, espacos, comentarios);
+            posicaoMedida = posicao;
+            espacos = 0;
+            comentarios = 0;
+        }
+        for (int i = 0; i < tokensPorTipo.length; i++) {
+            if (tokensPorTipo[i] != 0) {
+                metricas.tokens(TokenType.values()[i], tokensPorTipo[i]);
+                tokensPorTipo[i] = 0;
+            }
+        }
+        for (int i = 0; i < diagnosticosPorCodigo.length; i++) {
+            if (diagnosticosPorCodigo[i] != 0) {
+                metricas.diagnosticos(DiagnosticCode.values()[i], diagnosticosPorCodigo[i]);
+                diagnosticosPorCodigo[i] = 0;
             }
         }
-        tokens.add(new Token(TokenType.EOF, "", linhaAtual));
-        return tokens;
     }
 
-    private boolean hasNext() {
-        return posicao < codigo.length();
+    /**
+     * Índice das linhas, para obter a coluna dos tokens de {@link #analisar()}.
+     * A análise guarda só o início da linha atual; com o código inteiro na
+     * memória, o índice completo é montado no primeiro uso. Lido de um Reader
+     * ou canal, só as posições da linha atual têm coluna.
+     */
+    public LineIndex getLineIndex() {
+        if (linhas.isCompleto() || !fonte.isCompleto()) {
+            return linhas;
+        }
+        if (linhasFonte == null) {
+            linhasFonte = LineIndex.of(fonte);
+        }
+        return linhasFonte;
     }
 
-    private Token nextToken(List<Token> tokens) throws LexicalException {
-        skipWhitespace();
+    /**
+     * Passa a guardar o início de todas as linhas lidas, para quem precisa
+     * das colunas durante a análise, como o {@link Parser}. Deve ser chamado
+     * antes do primeiro token.
+     */
+    void indexarLinhas() {
+        linhas = new LineIndex(linhaAtual, posicao, true);
+    }
+
+    TokenType ultimoTipo() {
+        return ultimoTipo;
+    }
+
+    int ultimaLinha() {
+        return ultimaLinha;
+    }
+
+    int ultimoInicio() {
+        return ultimoInicio;
+    }
+
+    int ultimoFim() {
+        return ultimoFim;
+    }
+
+    boolean terminado() {
+        return terminado;
+    }
+
+    /**
+     * Analisa um token do código fonte e entrega ao {@code sink} o que ele
+     * produzir: erros de comentário, o erro de ponto e vírgula ausente e o
+     * próprio token. Ao fim do código, entrega o EOF final.
+     *
+     * Erros léxicos não usam exceções: {@link #scan(TokenSink)} devolve ERROR
+     * com a mensagem em {@code mensagemErro}, e a análise pula até o próximo
+     * espaço.
+     */
+    void avancar(TokenSink sink) {
+        if (totalErros >= pararAposErros) {
+            sink.diagnostico(DiagnosticCode.ANALYSIS_STOPPED, "Análise interrompida após " + totalErros + " erros",
+                    linhaAtual, posicao, posicao);
+            contar(TokenType.EOF);
+            sink.token(TokenType.EOF, posicao, posicao, linhaAtual);
+            terminado = true;
+            publicarMetricas();
+            return;
+        }
         if (!hasNext()) {
-            return new Token(TokenType.EOF, "", linhaAtual);
+            contar(TokenType.EOF);
+            sink.token(TokenType.EOF, posicao, posicao, linhaAtual);
+            terminado = true;
+            publicarMetricas();
+            return;
+        }
+        TokenType type = scan(sink);
+        if (type == TokenType.ERROR) {
+            erro(sink, codigoErro, mensagemErro, linhaAtual, inicioLexema, fimLexema);
+            skipToNextToken();
+        } else if (type != TokenType.WHITESPACE && type != TokenType.COMMENT) {
+            perdaDePrecisao = false;
+            if (type == TokenType.NUMBER) {
+                converterNumero(sink); // Os erros do literal vêm antes, como os de comentário durante o scan
+            }
+            if (verificarPontoEVirgula && ultimoTipo != null && ultimaLinha < linhaAtual
+                    && ultimoTipo != TokenType.SEMICOLON) {
+                erro(sink, DiagnosticCode.MISSING_SEMICOLON, "Faltando ponto e virgula", ultimaLinha,
+                        ultimoInicio, ultimoFim);
+            }
+            if (perdaDePrecisao) {
+                // Só depois do ponto e vírgula: o aviso fica com o token, como nos trechos do ParallelLexer
+                erro(sink, DiagnosticCode.PRECISION_LOSS, "Real com mais de " + DIGITOS_DOUBLE
+                        + " dígitos significativos perde precisão na linha " + linhaAtual, linhaAtual,
+                        inicioLexema, fimLexema);
+            }
+            ultimoTipo = type;
+            ultimaLinha = linhaAtual;
+            ultimoInicio = inicioLexema;
+            ultimoFim = fimLexema;
+            if (type == TokenType.IDENTIFIER) {
+                simboloAtual = simbolos.intern(fonte, inicioLexema, fimLexema);
+            } else if (type == TokenType.NUMBER) {
+                contar(type);
+                sink.numero(inicioLexema, fimLexema, linhaAtual, valorNumero, numeroReal);
+                return;
+            }
+            contar(type);
+            sink.token(type, inicioLexema, fimLexema, linhaAtual);
         }
+    }
 
-        char current = codigo.charAt(posicao);
+    private void contar(TokenType type) {
+        if (tokensPorTipo != null) {
+            tokensPorTipo[type.ordinal()]++;
+        }
+    }
 
-        if (Character.isDigit(current)) {
-            return extractNumber();
-        } else if (Character.isLetter(current)) {
-            return extractIdentifierOrKeyword();
-        } else {
-            switch (current) {
-                case '+':
-                    posicao++;
-                    return new Token(TokenType.PLUS, "+", linhaAtual);
-                case '-':
-                    posicao++;
-                    return new Token(TokenType.MINUS, "-", linhaAtual);
-                case '*':
-                    posicao++;
-                    return new Token(TokenType.MULTIPLY, "*", linhaAtual);
-                case '/':
-                    if (posicao + 1 < codigo.length() && codigo.charAt(posicao + 1) == '/') {
-                        skipLineComment();
-                        return nextToken(tokens); // Recomeça a análise após o comentário de linha
-                    } else if (posicao + 1 < codigo.length() && codigo.charAt(posicao + 1) == '*') {
-                        skipBlockComment(tokens);
-                        return nextToken(tokens); // Recomeça a análise após o comentário de bloco
-                    } else {
+    /**
+     * Entrega um diagnóstico sobre o trecho [inicio, fim) ao {@code sink}.
+     * Só os de gravidade ERROR contam no total de erros e respeitam o limite
+     * de erros reportados; avisos sempre chegam ao {@code sink}.
+     */
+    void erro(TokenSink sink, DiagnosticCode codigo, String mensagem, int linha, int inicio, int fim) {
+        if (diagnosticosPorCodigo != null) {
+            diagnosticosPorCodigo[codigo.ordinal()]++;
+        }
+        if (codigo.getSeverity() != Severity.ERROR) {
+            sink.diagnostico(codigo, mensagem, linha, inicio, fim);
+            return;
+        }
+        totalErros++;
+        if (totalErros <= limiteErros) {
+            sink.diagnostico(codigo, mensagem, linha, inicio, fim);
+        } else if (totalErros == limiteErros + 1) {
+            sink.diagnostico(DiagnosticCode.ERROR_LIMIT_REACHED,
+                    "Limite de " + limiteErros + " erros atingido; os demais foram omitidos", linha, inicio, inicio);
+        }
+    }
+
+    /**
+     * Conta a quebra de linha em {@code posicao}.
+     */
+    void novaLinha() {
+        linhaAtual++;
+        linhas.adicionar(posicao + 1);
+    }
+
+    private boolean hasNext() {
+        return fonte.has(posicao);
+    }
+
+    /**
+     * Reconhece o próximo token e devolve seu tipo; o lexema fica em
+     * [{@code inicioLexema}, {@code fimLexema}). Em um erro devolve ERROR,
+     * com a mensagem em {@code mensagemErro}, o código em {@code codigoErro}
+     * e o trecho do erro no lugar do lexema.
+     */
+    TokenType scan(TokenSink sink) {
+        while (true) {
+            int antes = posicao;
+            skipWhitespace();
+            espacos += posicao - antes;
+            if (passouDoLimite()) {
+                return TokenType.WHITESPACE;
+            }
+            fonte.mark(posicao);
+            inicioLexema = posicao;
+            if (!hasNext()) {
+                fimLexema = posicao;
+                return TokenType.EOF;
+            }
+
+            char current = fonte.charAt(posicao);
+
+            if (Character.isDigit(current)) {
+                return extractNumber();
+            } else if (Character.isLetter(current)) {
+                return extractIdentifierOrKeyword();
+            } else {
+                TokenType type;
+                switch (current) {
+                    case '+':
                         posicao++;
-                        return new Token(TokenType.DIVIDE, "/", linhaAtual);
-                    }
-                case '=':
-                    posicao++;
-                    return new Token(TokenType.EQUAL, "=", linhaAtual);
-                case '(':
-                    posicao++;
-                    return new Token(TokenType.LPAREN, "(", linhaAtual);
-                case ')':
-                    posicao++;
-                    return new Token(TokenType.RPAREN, ")", linhaAtual);
-                case '{':
-                    skipBlockComment(tokens);
-                    return nextToken(tokens); // Recomeça a análise após o comentário de bloco
-                case ';':
-                    posicao++;
-                    return new Token(TokenType.SEMICOLON, ";", linhaAtual);
-                case ':':
-                    if (posicao + 1 < codigo.length() && codigo.charAt(posicao + 1) == '=') {
-                        posicao += 2;
-                        return new Token(TokenType.ASSIGN, ":=", linhaAtual);
-                    } else {
+                        type = TokenType.PLUS;
+                        break;
+                    case '-':
                         posicao++;
-                        return new Token(TokenType.COLON, ":", linhaAtual);
-                    }
-                case ',':
-                    posicao++;
-                    return new Token(TokenType.COMMA, ",", linhaAtual);
-                case '<':
-                    posicao++;
-                    if (posicao < codigo.length() && codigo.charAt(posicao) == '=') {
+                        type = TokenType.MINUS;
+                        break;
+                    case '*':
                         posicao++;
-                        return new Token(TokenType.LESS_THAN_OR_EQUAL, "<=", linhaAtual);
-                    } else {
-                        return new Token(TokenType.LESS_THAN, "<", linhaAtual);
-                    }
-                case '>':
-                    posicao++;
-                    if (posicao < codigo.length() && codigo.charAt(posicao) == '=') {
+                        type = TokenType.MULTIPLY;
+                        break;
+                    case '/':
+                        if (fonte.has(posicao + 1) && fonte.charAt(posicao + 1) == '/') {
+                            skipLineComment();
+                            continue; // Recomeça a análise após o comentário de linha
+                        } else if (fonte.has(posicao + 1) && fonte.charAt(posicao + 1) == '*') {
+                            skipBlockComment(sink);
+                            continue; // Recomeça a análise após o comentário de bloco
+                        } else {
+                            posicao++;
+                            type = TokenType.DIVIDE;
+                        }
+                        break;
+                    case '=':
                         posicao++;
-                        return new Token(TokenType.GREATER_THAN_OR_EQUAL, ">=", linhaAtual);
-                    } else {
-                        return new Token(TokenType.GREATER_THAN, ">", linhaAtual);
-                    }
-                case '.':
-                    posicao++;
-                    return new Token(TokenType.PERIOD, ".", linhaAtual);
-                case '\'':
-                case '"':
-                    return extractStringLiteral();
-                default:
-                    throw new LexicalException("Caractere inesperado: " + current + " na linha " + linhaAtual);
+                        type = TokenType.EQUAL;
+                        break;
+                    case '(':
+                        posicao++;
+                        type = TokenType.LPAREN;
+                        break;
+                    case ')':
+                        posicao++;
+                        type = TokenType.RPAREN;
+                        break;
+                    case '{':
+                        skipBlockComment(sink);
+                        continue; // Recomeça a análise após o comentário de bloco
+                    case ';':
+                        posicao++;
+                        type = TokenType.SEMICOLON;
+                        break;
+                    case ':':
+                        if (fonte.has(posicao + 1) && fonte.charAt(posicao + 1) == '=') {
+                            posicao += 2;
+                            type = TokenType.ASSIGN;
+                        } else {
+                            posicao++;
+                            type = TokenType.COLON;
+                        }
+                        break;
+                    case ',':
+                        posicao++;
+                        type = TokenType.COMMA;
+                        break;
+                    case '<':
+                        posicao++;
+                        if (fonte.has(posicao) && fonte.charAt(posicao) == '=') {
+                            posicao++;
+                            type = TokenType.LESS_THAN_OR_EQUAL;
+                        } else {
+                            type = TokenType.LESS_THAN;
+                        }
+                        break;
+                    case '>':
+                        posicao++;
+                        if (fonte.has(posicao) && fonte.charAt(posicao) == '=') {
+                            posicao++;
+                            type = TokenType.GREATER_THAN_OR_EQUAL;
+                        } else {
+                            type = TokenType.GREATER_THAN;
+                        }
+                        break;
+                    case '.':
+                        posicao++;
+                        type = TokenType.PERIOD;
+                        break;
+                    case '\'':
+                    case '"':
+                        return extractStringLiteral();
+                    default:
+                        mensagemErro = "Caractere inesperado: " + current + " na linha " + linhaAtual;
+                        codigoErro = DiagnosticCode.UNEXPECTED_CHARACTER;
+                        fimLexema = posicao + 1;
+                        return TokenType.ERROR;
+                }
+                fimLexema = posicao;
+                return type;
             }
         }
     }
 
-    private void skipWhitespace() {
-        while (hasNext() && Character.isWhitespace(codigo.charAt(posicao))) {
-            if (codigo.charAt(posicao) == '\n') {
-                linhaAtual++;
-            }
-            posicao++;
-        }
+    void skipWhitespace() {
+        int antes = linhas.getTotalLinhas();
+        posicao = fonte.pularEspacos(posicao, linhas);
+        linhaAtual += linhas.getTotalLinhas() - antes;
     }
 
-    private void skipLineComment() {
+    /**
+     * Avança até o próximo {@code alvo} (ou o fim do código) contando as
+     * quebras de linha do caminho, sem examinar caractere por caractere aqui.
+     */
+    private void avancarAte(char alvo) {
+        int antes = linhas.getTotalLinhas();
+        posicao = fonte.procurar(posicao, alvo, linhas);
+        linhaAtual += linhas.getTotalLinhas() - antes;
+    }
+
+    void skipLineComment() {
+        int inicio = posicao;
         posicao += 2; // Pula os dois caracteres '/'
-        while (hasNext() && codigo.charAt(posicao) != '\n') {
-            posicao++;
+        avancarAte('\n');
+        novaLinha();
+        if (hasNext()) {
+            posicao++; // Pula o '\n'
         }
-        linhaAtual++;
-        posicao++; // Pula o '\n'
+        comentarios += posicao - inicio;
     }
 
-    private void skipBlockComment(List<Token> tokens) {
+    void skipBlockComment(TokenSink sink) {
+        int inicio = posicao;
         posicao++; // Pula o '{' ou o '/' seguido de '*'
-        if (codigo.charAt(posicao) == '*') {
+        if (fonte.charAt(posicao) == '*') {
             posicao++; // Pula o '*'
-            while (hasNext()) {
-                if (codigo.charAt(posicao) == '\n') {
-                    linhaAtual++;
+            while (true) {
+                avancarAte('*');
+                if (!hasNext()) {
+                    erro(sink, DiagnosticCode.UNCLOSED_COMMENT, "Comentário de bloco não fechado corretamente",
+                            linhaAtual, inicio, posicao);
+                    break;
                 }
-                if (codigo.charAt(posicao) == '*' && posicao + 1 < codigo.length() && codigo.charAt(posicao + 1) == '/') {
+                if (fonte.has(posicao + 1) && fonte.charAt(posicao + 1) == '/') {
                     posicao += 2; // Pula o '*' e o '/'
-                    return;
+                    break;
                 }
                 posicao++;
             }
-            tokens.add(new Token(TokenType.ERROR, "Comentário de bloco não fechado corretamente", linhaAtual));
         } else {
-            while (hasNext() && codigo.charAt(posicao) != '}') {
-                if (codigo.charAt(posicao) == '\n') {
-                    linhaAtual++;
-                }
-                posicao++;
-            }
+            avancarAte('}');
             if (!hasNext()) {
-                tokens.add(new Token(TokenType.ERROR, "Comentário de bloco não fechado corretamente", linhaAtual));
+                erro(sink, DiagnosticCode.UNCLOSED_COMMENT, "Comentário de bloco não fechado corretamente",
+                        linhaAtual, inicio, posicao);
             } else {
                 posicao++; // Pula o '}'
             }
         }
+        comentarios += posicao - inicio;
     }
 
     private void skipToNextToken() {
-        while (hasNext() && !Character.isWhitespace(codigo.charAt(posicao))) {
+        while (hasNext() && !Character.isWhitespace(fonte.charAt(posicao))) {
             posicao++;
         }
+        int antes = posicao;
         skipWhitespace();
+        espacos += posicao - antes;
     }
 
-    private Token extractNumber() {
+    private TokenType extractNumber() {
         int start = posicao;
-        while (hasNext() && (Character.isDigit(codigo.charAt(posicao)) || codigo.charAt(posicao) == '.')) {
-            if (codigo.charAt(posicao) == '.') {
+        while (hasNext() && (Character.isDigit(fonte.charAt(posicao)) || fonte.charAt(posicao) == '.')) {
+            if (fonte.charAt(posicao) == '.') {
                 // Verifica se é um número real
-                if (posicao + 1 < codigo.length() && Character.isDigit(codigo.charAt(posicao + 1))) {
+                if (fonte.has(posicao + 1) && Character.isDigit(fonte.charAt(posicao + 1))) {
                     posicao++;
-                    while (hasNext() && Character.isDigit(codigo.charAt(posicao))) {
+                    while (hasNext() && Character.isDigit(fonte.charAt(posicao))) {
                         posicao++;
                     }
                 } else {
@@ -222,39 +809,211 @@ public class Lexer {
                 posicao++;
             }
         }
-        return new Token(TokenType.NUMBER, codigo.substring(start, posicao), linhaAtual);
+        fimLexema = posicao;
+        return TokenType.NUMBER;
+    }
+
+    /**
+     * Converte o NUMBER em [{@code inicioLexema}, {@code fimLexema}) direto
+     * dos caracteres do buffer, sem criar o lexema, para {@code valorNumero}
+     * e {@code numeroReal}. Os problemas do literal viram diagnósticos antes
+     * do token, que continua sendo entregue.
+     *
+     * O real é calculado como mantissa inteira dividida por uma potência de
+     * dez, o que dá o double mais próximo quando a mantissa tem até 15
+     * dígitos e há até 22 casas decimais; fora disso, que é raro, o trecho é
+     * convertido por {@link Double#parseDouble}.
+     */
+    private void converterNumero(TokenSink sink) {
+        long mantissa = 0;
+        boolean estouro = false;
+        int pontos = 0;
+        int casas = 0;            // Dígitos depois do ponto
+        int significativos = 0;   // Dígitos desde o primeiro diferente de zero
+        int zerosPendentes = 0;   // Zeros depois do último dígito não nulo, que só contam se vier outro
+        for (int p = inicioLexema; p < fimLexema; p++) {
+            char c = fonte.charAt(p);
+            if (c == '.') {
+                pontos++;
+                continue;
+            }
+            int digito = c <= '9' ? c - '0' : Character.digit(c, 10);
+            if (pontos > 0) {
+                casas++;
+            }
+            if (digito != 0) {
+                significativos += zerosPendentes + 1;
+                zerosPendentes = 0;
+            } else if (significativos > 0) {
+                zerosPendentes++;
+            }
+            if (mantissa < LIMITE_MANTISSA || mantissa == LIMITE_MANTISSA && digito <= Long.MAX_VALUE % 10) {
+                mantissa = mantissa * 10 + digito;
+            } else {
+                estouro = true;
+                mantissa = Long.MAX_VALUE; // Fica acima do limite, então os próximos dígitos não são somados
+            }
+        }
+        if (pontos == 0) {
+            numeroReal = false;
+            valorNumero = estouro ? Long.MAX_VALUE : mantissa;
+            if (estouro) {
+                erro(sink, DiagnosticCode.INTEGER_OVERFLOW, "Inteiro maior que " + Long.MAX_VALUE + " na linha "
+                        + linhaAtual, linhaAtual, inicioLexema, fimLexema);
+            }
+            return;
+        }
+        numeroReal = true;
+        double real;
+        if (pontos > 1) {
+            real = Double.NaN;
+            erro(sink, DiagnosticCode.MALFORMED_NUMBER, "Número com mais de um ponto decimal na linha " + linhaAtual,
+                    linhaAtual, inicioLexema, fimLexema);
+        } else if (!estouro && mantissa < (1L << 53) && casas < POTENCIAS_DE_DEZ.length) {
+            real = mantissa / POTENCIAS_DE_DEZ[casas];
+        } else {
+            real = Double.parseDouble(digitosAscii(inicioLexema, fimLexema));
+            if (Double.isInfinite(real)) {
+                erro(sink, DiagnosticCode.REAL_OUT_OF_RANGE, "Real fora do intervalo de um double na linha "
+                        + linhaAtual, linhaAtual, inicioLexema, fimLexema);
+            } else {
+                perdaDePrecisao = significativos > DIGITOS_DOUBLE;
+            }
+        }
+        valorNumero = Double.doubleToRawLongBits(real);
     }
 
-    private Token extractIdentifierOrKeyword() {
+    // O trecho do número com os dígitos de outros alfabetos trocados pelos ASCII
+    private String digitosAscii(int inicio, int fim) {
+        char[] chars = new char[fim - inicio];
+        for (int p = inicio; p < fim; p++) {
+            char c = fonte.charAt(p);
+            chars[p - inicio] = c == '.' ? '.' : (char) ('0' + Character.digit(c, 10));
+        }
+        return new String(chars);
+    }
+
+    private TokenType extractIdentifierOrKeyword() {
         int start = posicao;
-        while (hasNext() && (Character.isLetterOrDigit(codigo.charAt(posicao)) || codigo.charAt(posicao) == '_')) {
+        while (hasNext() && (Character.isLetterOrDigit(fonte.charAt(posicao)) || fonte.charAt(posicao) == '_')) {
             posicao++;
         }
-        String lexeme = codigo.substring(start, posicao);
-        TokenType type = KEYWORDS.getOrDefault(lexeme, TokenType.IDENTIFIER);
-        return new Token(type, lexeme, linhaAtual);
+        fimLexema = posicao;
+        return palavraReservada(start, posicao);
+    }
+
+    /**
+     * Classifica o trecho [inicio, fim) como palavra reservada ou identificador
+     * pelo tamanho e pela primeira letra, comparando direto com o código fonte.
+     */
+    private TokenType palavraReservada(int inicio, int fim) {
+        String palavra;
+        TokenType type;
+        switch (fim - inicio) {
+            case 2:
+                switch (fonte.charAt(inicio)) {
+                    case 'i': palavra = "if"; type = TokenType.IF; break;
+                    case 'd': palavra = "do"; type = TokenType.DO; break;
+                    default: return TokenType.IDENTIFIER;
+                }
+                break;
+            case 3:
+                switch (fonte.charAt(inicio)) {
+                    case 'v': palavra = "var"; type = TokenType.VAR; break;
+                    case 'e': palavra = "end"; type = TokenType.END; break;
+                    default: return TokenType.IDENTIFIER;
+                }
+                break;
+            case 4:
+                switch (fonte.charAt(inicio)) {
+                    case 't': palavra = "then"; type = TokenType.THEN; break;
+                    case 'e': palavra = "else"; type = TokenType.ELSE; break;
+                    case 'r': palavra = "real"; type = TokenType.REAL; break;
+                    default: return TokenType.IDENTIFIER;
+                }
+                break;
+            case 5:
+                switch (fonte.charAt(inicio)) {
+                    case 'b': palavra = "begin"; type = TokenType.BEGIN; break;
+                    case 'w': palavra = "while"; type = TokenType.WHILE; break;
+                    default: return TokenType.IDENTIFIER;
+                }
+                break;
+            case 7:
+                switch (fonte.charAt(inicio)) {
+                    case 'p': palavra = "program"; type = TokenType.PROGRAM; break;
+                    case 'i': palavra = "integer"; type = TokenType.INTEGER; break;
+                    default: return TokenType.IDENTIFIER;
+                }
+                break;
+            default:
+                return TokenType.IDENTIFIER;
+        }
+        return fonte.regionMatches(inicio, fim, palavra) ? type : TokenType.IDENTIFIER;
     }
 
-    private Token extractStringLiteral() throws LexicalException {
-        char delimiter = codigo.charAt(posicao);
+    TokenType extractStringLiteral() {
+        char delimiter = fonte.charAt(posicao);
         posicao++; // Pula o delimitador inicial (aspas simples ou duplas)
         int start = posicao;
         while (hasNext()
-                && codigo.charAt(posicao) != delimiter) {
-            if (codigo.charAt(posicao) == '\n') {
-                throw new LexicalException("String literal não fechada corretamente na linha " + linhaAtual);
+                && fonte.charAt(posicao) != delimiter) {
+            if (fonte.charAt(posicao) == '\n') {
+                return stringNaoFechada();
             }
             posicao++;
         }
 
         if (!hasNext()) {
-            throw new LexicalException("String literal não fechada corretamente na linha " + linhaAtual);
+            return stringNaoFechada();
         }
+        inicioLexema = start;
+        fimLexema = posicao;
         posicao++; // Pula o delimitador final (aspas simples ou duplas)
-        return new Token(TokenType.STRING_LITERAL, codigo.substring(start, posicao - 1), linhaAtual);
+        return TokenType.STRING_LITERAL;
+    }
+
+    // O trecho do erro vai das aspas iniciais (inicioLexema) até o fim da linha
+    private TokenType stringNaoFechada() {
+        mensagemErro = "String literal não fechada corretamente na linha " + linhaAtual;
+        codigoErro = DiagnosticCode.UNCLOSED_STRING;
+        fimLexema = posicao;
+        return TokenType.ERROR;
+    }
+
+    /**
+     * Libera a fonte do código, fechando o Reader ou arquivo subjacente.
+     */
+    @Override
+    public void close() {
+        publicarMetricas();
+        fonte.close();
     }
 
     private boolean isReservedWord(String lexeme) {
         return KEYWORDS.containsKey(lexeme);
     }
+
+    /**
+     * Bytes alocados pela thread atual, ou -1 se a JVM não souber medir. Fica
+     * em uma classe à parte para que o JMX só seja carregado quando houver métricas.
+     */
+    private static final class Alocacao {
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        private static com.sun.management.ThreadMXBean threads() {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean memoria = (com.sun.management.ThreadMXBean) threads;
+                if (memoria.isThreadAllocatedMemorySupported() && memoria.isThreadAllocatedMemoryEnabled()) {
+                    return memoria;
+                }
+            }
+            return null;
+        }
+
+        static long daThread() {
+            return THREADS == null ? -1 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
 }
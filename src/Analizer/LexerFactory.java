@@ -0,0 +1,44 @@
+package Analizer;
+
+import java.io.Reader;
+
+/**
+ * Cria Lexers com o motor de análise escolhido.
+ */
+public final class LexerFactory {
+
+    /**
+     * Motores de análise disponíveis; todos produzem os mesmos tokens.
+     */
+    public enum Engine {
+        /** Despacho por {@code switch} e {@code Character.isX} ({@link Lexer}). */
+        SWITCH,
+        /** Autômato com tabelas de classes de caracteres e de transições ({@link DfaLexer}). */
+        DFA,
+        /** Código gerado no build a partir de spec/MiniPascal.tokens ({@link GeneratedLexer}). */
+        GENERATED
+    }
+
+    private LexerFactory() {
+    }
+
+    public static Lexer create(SourceBuffer fonte, Engine engine) {
+        switch (engine) {
+            case DFA:
+                return new DfaLexer(fonte);
+            case GENERATED:
+                return new GeneratedLexer(fonte);
+            case SWITCH:
+            default:
+                return new Lexer(fonte);
+        }
+    }
+
+    public static Lexer create(String codigo, Engine engine) {
+        return create(SourceBuffer.of(codigo), engine);
+    }
+
+    public static Lexer create(Reader reader, Engine engine) {
+        return create(SourceBuffer.of(reader), engine);
+    }
+}
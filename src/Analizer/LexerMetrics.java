@@ -0,0 +1,91 @@
+package Analizer;
+
+/**
+ * Recebe as medições de um {@link Lexer}.
+ *
+ * O Lexer acumula as contagens em campos próprios, sem sincronização, e só
+ * as entrega aqui ao fim de cada lote e da análise; por isso as
+ * implementações podem ser compartilhadas entre threads sem pesar no laço
+ * principal. Com {@link #NOOP}, que é o padrão, nada é contado além de
+ * somas que o Lexer já faz.
+ */
+public interface LexerMetrics {
+
+    /**
+     * Etapas cronometradas de uma análise.
+     */
+    enum Phase {
+        /** Leitura e decodificação do código. */
+        READ,
+        /** Análise léxica propriamente dita. */
+        LEX,
+        /** Formatação ou exibição dos tokens. */
+        OUTPUT
+    }
+
+    /**
+     * Descarta tudo; um Lexer com estas métricas não mede nada.
+     */
+    LexerMetrics NOOP = new LexerMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void caracteres(long analisados, long espacos, long comentarios) {
+        }
+
+        @Override
+        public void tokens(TokenType tipo, long quantidade) {
+        }
+
+        @Override
+        public void diagnosticos(DiagnosticCode codigo, long quantidade) {
+        }
+
+        @Override
+        public void fase(Phase fase, long nanos) {
+        }
+
+        @Override
+        public void alocacao(long bytes) {
+        }
+    };
+
+    /**
+     * Indica se vale a pena medir; quando {@code false} o Lexer não reserva
+     * contadores nem lê o relógio.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Caracteres percorridos, dos quais {@code espacos} eram espaços e
+     * {@code comentarios} estavam em comentários.
+     */
+    void caracteres(long analisados, long espacos, long comentarios);
+
+    /**
+     * Tokens reconhecidos de um tipo; os tokens ERROR são contados em {@link #diagnosticos}.
+     */
+    void tokens(TokenType tipo, long quantidade);
+
+    /**
+     * Diagnósticos encontrados com um código, inclusive os erros omitidos pelo
+     * limite de erros. Vêm de todas as gravidades: só os códigos de gravidade
+     * ERROR são erros.
+     */
+    void diagnosticos(DiagnosticCode codigo, long quantidade);
+
+    /**
+     * Duração de uma etapa, em nanossegundos.
+     */
+    void fase(Phase fase, long nanos);
+
+    /**
+     * Bytes alocados pela thread durante a análise, segundo a JVM; é uma estimativa.
+     */
+    void alocacao(long bytes);
+}
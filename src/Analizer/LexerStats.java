@@ -0,0 +1,232 @@
+package Analizer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas acumuladas de todos os Lexers que as recebem, seguras para várias
+ * threads. Podem ser publicadas por JMX ({@link #registrarJmx(String)}) ou
+ * escritas no formato de texto do Prometheus ({@link #escreverPrometheus}).
+ */
+public final class LexerStats implements LexerMetrics, LexerStatsMXBean {
+
+    private static final TokenType[] TIPOS = TokenType.values();
+    private static final DiagnosticCode[] CODIGOS = DiagnosticCode.values();
+    private static final Phase[] FASES = Phase.values();
+
+    private final LongAdder caracteres = new LongAdder();
+    private final LongAdder espacos = new LongAdder();
+    private final LongAdder comentarios = new LongAdder();
+    private final LongAdder alocados = new LongAdder();
+    private final LongAdder[] tokens = contadores(TIPOS.length);
+    private final LongAdder[] diagnosticos = contadores(CODIGOS.length);
+    private final LongAdder[] nanosPorFase = contadores(FASES.length);
+    private final LongAdder[] medicoesPorFase = contadores(FASES.length);
+
+    @Override
+    public void caracteres(long analisados, long espacos, long comentarios) {
+        this.caracteres.add(analisados);
+        this.espacos.add(espacos);
+        this.comentarios.add(comentarios);
+    }
+
+    @Override
+    public void tokens(TokenType tipo, long quantidade) {
+        tokens[tipo.ordinal()].add(quantidade);
+    }
+
+    @Override
+    public void diagnosticos(DiagnosticCode codigo, long quantidade) {
+        diagnosticos[codigo.ordinal()].add(quantidade);
+    }
+
+    @Override
+    public void fase(Phase fase, long nanos) {
+        nanosPorFase[fase.ordinal()].add(nanos);
+        medicoesPorFase[fase.ordinal()].increment();
+    }
+
+    @Override
+    public void alocacao(long bytes) {
+        alocados.add(bytes);
+    }
+
+    @Override
+    public long getCaracteres() {
+        return caracteres.sum();
+    }
+
+    @Override
+    public long getEspacos() {
+        return espacos.sum();
+    }
+
+    @Override
+    public long getComentarios() {
+        return comentarios.sum();
+    }
+
+    @Override
+    public long getBytesAlocados() {
+        return alocados.sum();
+    }
+
+    @Override
+    public long getAnalises() {
+        return medicoesPorFase[Phase.LEX.ordinal()].sum();
+    }
+
+    public long getTokens(TokenType tipo) {
+        return tokens[tipo.ordinal()].sum();
+    }
+
+    public long getDiagnosticos(DiagnosticCode codigo) {
+        return diagnosticos[codigo.ordinal()].sum();
+    }
+
+    public long getNanos(Phase fase) {
+        return nanosPorFase[fase.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getTokensPorTipo() {
+        Map<String, Long> mapa = new LinkedHashMap<>();
+        for (TokenType tipo : TIPOS) {
+            mapa.put(tipo.name(), getTokens(tipo));
+        }
+        return mapa;
+    }
+
+    @Override
+    public Map<String, Long> getErrosPorCodigo() {
+        return porCodigo(true);
+    }
+
+    @Override
+    public Map<String, Long> getAvisosPorCodigo() {
+        return porCodigo(false);
+    }
+
+    private Map<String, Long> porCodigo(boolean erros) {
+        Map<String, Long> mapa = new LinkedHashMap<>();
+        for (DiagnosticCode codigo : CODIGOS) {
+            if ((codigo.getSeverity() == Severity.ERROR) == erros) {
+                mapa.put(codigo.name(), getDiagnosticos(codigo));
+            }
+        }
+        return mapa;
+    }
+
+    @Override
+    public Map<String, Long> getNanosPorFase() {
+        Map<String, Long> mapa = new LinkedHashMap<>();
+        for (Phase fase : FASES) {
+            mapa.put(fase.name(), getNanos(fase));
+        }
+        return mapa;
+    }
+
+    @Override
+    public void zerar() {
+        caracteres.reset();
+        espacos.reset();
+        comentarios.reset();
+        alocados.reset();
+        for (LongAdder[] grupo : new LongAdder[][]{tokens, diagnosticos, nanosPorFase, medicoesPorFase}) {
+            for (LongAdder contador : grupo) {
+                contador.reset();
+            }
+        }
+    }
+
+    /**
+     * Publica estas métricas no servidor JMX da plataforma com o nome
+     * {@code Analizer:type=LexerStats,name=<nome>}.
+     *
+     * @return O nome registrado.
+     * @throws JMException Se o nome já estiver em uso ou o registro falhar.
+     */
+    public ObjectName registrarJmx(String nome) throws JMException {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objeto = new ObjectName("Analizer:type=LexerStats,name=" + ObjectName.quote(nome));
+        servidor.registerMBean(this, objeto);
+        return objeto;
+    }
+
+    /**
+     * Escreve as métricas no formato de texto do Prometheus (versão 0.0.4).
+     */
+    public void escreverPrometheus(Appendable saida) throws IOException {
+        cabecalho(saida, "minipascal_lexer_chars_total", "counter", "Caracteres percorridos pelo analisador.");
+        saida.append("minipascal_lexer_chars_total ").append(Long.toString(getCaracteres())).append('\n');
+
+        cabecalho(saida, "minipascal_lexer_skipped_chars_total", "counter",
+                "Caracteres de espaço e de comentário pulados.");
+        saida.append("minipascal_lexer_skipped_chars_total{kind=\"whitespace\"} ")
+                .append(Long.toString(getEspacos())).append('\n');
+        saida.append("minipascal_lexer_skipped_chars_total{kind=\"comment\"} ")
+                .append(Long.toString(getComentarios())).append('\n');
+
+        cabecalho(saida, "minipascal_lexer_tokens_total", "counter", "Tokens reconhecidos, por tipo.");
+        for (TokenType tipo : TIPOS) {
+            long quantidade = getTokens(tipo);
+            if (quantidade != 0) {
+                saida.append("minipascal_lexer_tokens_total{type=\"").append(tipo.name()).append("\"} ")
+                        .append(Long.toString(quantidade)).append('\n');
+            }
+        }
+
+        cabecalho(saida, "minipascal_lexer_errors_total", "counter",
+                "Erros léxicos encontrados, por código; só os de gravidade ERROR.");
+        for (DiagnosticCode codigo : CODIGOS) {
+            if (codigo.getSeverity() == Severity.ERROR) {
+                saida.append("minipascal_lexer_errors_total{code=\"").append(codigo.name()).append("\"} ")
+                        .append(Long.toString(getDiagnosticos(codigo))).append('\n');
+            }
+        }
+
+        cabecalho(saida, "minipascal_lexer_notices_total", "counter",
+                "Avisos e informações do analisador, por código; não contam como erros.");
+        for (DiagnosticCode codigo : CODIGOS) {
+            if (codigo.getSeverity() != Severity.ERROR) {
+                saida.append("minipascal_lexer_notices_total{code=\"").append(codigo.name())
+                        .append("\",severity=\"").append(codigo.getSeverity().name().toLowerCase(Locale.ROOT))
+                        .append("\"} ").append(Long.toString(getDiagnosticos(codigo))).append('\n');
+            }
+        }
+
+        cabecalho(saida, "minipascal_lexer_phase_seconds", "summary", "Duração das etapas da análise.");
+        for (Phase fase : FASES) {
+            String rotulo = "{phase=\"" + fase.name().toLowerCase(Locale.ROOT) + "\"} ";
+            saida.append("minipascal_lexer_phase_seconds_sum").append(rotulo)
+                    .append(String.format(Locale.ROOT, "%.9f", getNanos(fase) / 1e9)).append('\n');
+            saida.append("minipascal_lexer_phase_seconds_count").append(rotulo)
+                    .append(Long.toString(medicoesPorFase[fase.ordinal()].sum())).append('\n');
+        }
+
+        cabecalho(saida, "minipascal_lexer_allocated_bytes_total", "counter",
+                "Bytes alocados durante a análise, estimados pela JVM.");
+        saida.append("minipascal_lexer_allocated_bytes_total ").append(Long.toString(getBytesAlocados()))
+                .append('\n');
+    }
+
+    private static void cabecalho(Appendable saida, String nome, String tipo, String ajuda) throws IOException {
+        saida.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+        saida.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+    }
+
+    private static LongAdder[] contadores(int quantidade) {
+        LongAdder[] contadores = new LongAdder[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            contadores[i] = new LongAdder();
+        }
+        return contadores;
+    }
+}
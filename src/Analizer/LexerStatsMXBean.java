@@ -0,0 +1,41 @@
+package Analizer;
+
+import java.util.Map;
+
+/**
+ * Atributos de {@link LexerStats} publicados por JMX.
+ */
+public interface LexerStatsMXBean {
+
+    long getCaracteres();
+
+    long getEspacos();
+
+    long getComentarios();
+
+    long getBytesAlocados();
+
+    /**
+     * Quantidade de análises cronometradas (etapa {@link LexerMetrics.Phase#LEX}).
+     */
+    long getAnalises();
+
+    Map<String, Long> getTokensPorTipo();
+
+    /**
+     * Erros por código, só dos códigos de gravidade ERROR.
+     */
+    Map<String, Long> getErrosPorCodigo();
+
+    /**
+     * Avisos e informações por código, que não contam como erros.
+     */
+    Map<String, Long> getAvisosPorCodigo();
+
+    Map<String, Long> getNanosPorFase();
+
+    /**
+     * Zera todos os contadores.
+     */
+    void zerar();
+}
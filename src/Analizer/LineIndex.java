@@ -0,0 +1,113 @@
+package Analizer;
+
+import java.util.Arrays;
+
+/**
+ * Posição de início de cada linha do código, para converter uma posição em
+ * linha e coluna. Ocupa um int por linha, não por token.
+ *
+ * Na análise sob demanda o índice pode guardar só a linha atual: as linhas
+ * continuam sendo contadas, mas só as posições da última linha têm coluna.
+ */
+public final class LineIndex {
+
+    private final int primeiraLinha;
+    private final boolean completo; // Senão, inicios[0] é o início da última linha
+    private int[] inicios;
+    private int total;
+
+    /**
+     * Índice que começa na linha {@code primeiraLinha}, iniciada em {@code inicio}.
+     *
+     * @param completo Se guarda todas as linhas, ou só a última.
+     */
+    LineIndex(int primeiraLinha, int inicio, boolean completo) {
+        this.primeiraLinha = primeiraLinha;
+        this.completo = completo;
+        this.inicios = new int[completo ? 64 : 1];
+        inicios[total++] = inicio;
+    }
+
+    /**
+     * Índice de todas as linhas de um código inteiro na memória.
+     */
+    static LineIndex of(SourceBuffer fonte) {
+        LineIndex linhas = new LineIndex(1, 0, true);
+        for (int pos = 0; fonte.has(pos); pos++) {
+            if (fonte.charAt(pos) == '\n') {
+                linhas.adicionar(pos + 1);
+            }
+        }
+        return linhas;
+    }
+
+    /**
+     * Registra o início de uma nova linha, sempre depois das anteriores.
+     */
+    void adicionar(int inicio) {
+        if (inicio <= ultimoInicio()) {
+            return;
+        }
+        if (!completo) {
+            inicios[0] = inicio;
+            total++;
+            return;
+        }
+        if (total == inicios.length) {
+            inicios = Arrays.copyOf(inicios, total * 2);
+        }
+        inicios[total++] = inicio;
+    }
+
+    /**
+     * Linha (a partir de 1) que contém a posição.
+     */
+    public int getLinha(int pos) {
+        return primeiraLinha + indice(pos);
+    }
+
+    /**
+     * Coluna (a partir de 1) da posição na sua linha.
+     */
+    public int getColuna(int pos) {
+        int i = indice(pos);
+        return pos - (i == total - 1 ? ultimoInicio() : inicios[i]) + 1;
+    }
+
+    /**
+     * Posição em que a linha começa.
+     */
+    public int getInicioLinha(int linha) {
+        int i = linha - primeiraLinha;
+        if (i < 0 || i >= total || !completo && i < total - 1) {
+            throw new IndexOutOfBoundsException("Linha " + linha + " inexistente");
+        }
+        return i == total - 1 ? ultimoInicio() : inicios[i];
+    }
+
+    public int getTotalLinhas() {
+        return total;
+    }
+
+    /**
+     * Indica se o índice guarda todas as linhas, e não só a última.
+     */
+    public boolean isCompleto() {
+        return completo;
+    }
+
+    private int ultimoInicio() {
+        return inicios[completo ? total - 1 : 0];
+    }
+
+    private int indice(int pos) {
+        if (pos >= ultimoInicio()) {
+            return total - 1; // Caso comum: posição na última linha lida
+        }
+        if (!completo) {
+            throw new IllegalStateException("Posição " + pos + " antes da linha atual, que é a única guardada");
+        }
+        int i = Arrays.binarySearch(inicios, 0, total, pos);
+        return i >= 0 ? i : Math.max(0, -i - 2);
+    }
+}
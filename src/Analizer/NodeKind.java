@@ -0,0 +1,38 @@
+package Analizer;
+
+/**
+ * Tipos de nó da {@link Ast}. O valor de cada nó, em {@link Ast#getValor(int)},
+ * depende do tipo.
+ */
+public enum NodeKind {
+    /** Programa inteiro; valor é o símbolo do nome. Filhos: declarações e o bloco principal. */
+    PROGRAM,
+    /** Declaração {@code a, b: integer;}; valor é o ordinal do tipo. Filhos: as variáveis. */
+    DECLARATION,
+    /** Variável declarada; valor é o símbolo. */
+    VARIABLE,
+    /** Bloco {@code begin ... end}. Filhos: os comandos. */
+    BLOCK,
+    /** Atribuição; valor é o símbolo da variável. Filho: a expressão. */
+    ASSIGN,
+    /** {@code if}. Filhos: a condição, o comando do {@code then} e o do {@code else}, se houver. */
+    IF,
+    /** {@code while}. Filhos: a condição e o comando. */
+    WHILE,
+    /** Comando vazio, como o do {@code then} em {@code if a then ;}. */
+    EMPTY,
+    /** Chamada de procedimento ou função; valor é o símbolo. Filhos: os argumentos. */
+    CALL,
+    /** Operação binária; valor é o ordinal do {@link TokenType} do operador. Filhos: os dois operandos. */
+    BINARY,
+    /** Sinal; valor é o ordinal do {@link TokenType} do operador. Filho: o operando. */
+    UNARY,
+    /** Literal numérico; o valor convertido está em {@link Ast#getInteiro(int)} e {@link Ast#getReal(int)}. */
+    NUMBER,
+    /** Literal de texto; o trecho do nó é o conteúdo entre as aspas. */
+    STRING,
+    /** Uso de variável em uma expressão; valor é o símbolo. */
+    IDENTIFIER,
+    /** Trecho que não pôde ser analisado; há um diagnóstico sobre ele. */
+    ERROR
+}
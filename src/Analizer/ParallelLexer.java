@@ -0,0 +1,246 @@
+package Analizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Análise léxica paralela de códigos grandes.
+ *
+ * O código é dividido em trechos logo depois de uma quebra de linha. Como um
+ * literal de texto não atravessa linhas, esse ponto só não é seguro quando
+ * cai dentro de um comentário. Cada trecho é analisado de forma especulativa
+ * em um {@link ForkJoinPool}, como se começasse fora de comentários, na linha 1.
+ *
+ * Cada trecho para no primeiro token que começa depois do seu fim. Na junção,
+ * em ordem, o trecho só é aceito se o anterior parou exatamente onde ele
+ * começou a ler tokens. Nesse caso basta somar às suas linhas a
+ * diferença para a linha real. Se não parou ali (um comentário ou token do
+ * trecho anterior passou da fronteira), o trecho é analisado de novo a partir
+ * de onde o anterior parou, até reencontrar o resultado especulativo. A verificação de ponto e vírgula ausente entre o
+ * último token de um trecho e o primeiro do seguinte também é feita na junção.
+ * Cada trecho interna os identificadores na tabela do seu próprio Lexer; na
+ * junção eles são internados de novo, em ordem, numa tabela única, para que
+ * os ids sejam os mesmos da análise sequencial.
+ * O resultado é idêntico ao de {@link Lexer#analisarCompacto()}.
+ */
+public final class ParallelLexer {
+
+    private static final int TAMANHO_MINIMO_TRECHO = 1 << 20;
+
+    private ParallelLexer() {
+    }
+
+    /**
+     * Analisa o código no pool comum, em trechos de pelo menos 1 MB.
+     */
+    public static TokenBuffer analisar(String codigo) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int partes = Math.min(pool.getParallelism() * 4, codigo.length() / TAMANHO_MINIMO_TRECHO);
+        return analisar(codigo, pool, partes, LexerFactory.Engine.SWITCH);
+    }
+
+    /**
+     * Analisa o código dividido em até {@code partes} trechos, no pool e com o motor informados.
+     */
+    public static TokenBuffer analisar(String codigo, ForkJoinPool pool, int partes, LexerFactory.Engine engine) {
+        SourceBuffer fonte = SourceBuffer.of(codigo);
+        if (partes <= 1) {
+            return LexerFactory.create(fonte, engine).analisarCompacto();
+        }
+
+        int[] inicios = dividir(codigo, partes);
+        int total = inicios.length - 1;
+        List<ForkJoinTask<Trecho>> tarefas = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            int inicio = inicios[i];
+            int limite = inicios[i + 1];
+            boolean ultimo = i == total - 1;
+            tarefas.add(pool.submit(() -> analisarTrecho(fonte, engine, inicio, limite, 1, ultimo)));
+        }
+
+        SymbolTable simbolos = new SymbolTable();
+        TokenBuffer resultado = new TokenBuffer(fonte, simbolos);
+        TokenType ultimoTipo = null;
+        int ultimaLinha = 0;
+        int ultimoInicio = 0;
+        int ultimoFim = 0;
+        int posicao = 0;
+        int linha = 1;
+        for (int i = 0; i < total; i++) {
+            Trecho trecho = tarefas.get(i).join();
+            int delta;
+            if (i == 0) {
+                delta = 0;
+            } else if (trecho.inicioEfetivo == posicao && posicao < codigo.length()) {
+                delta = linha - trecho.linhaInicioEfetivo;
+            } else {
+                // A especulação falhou: o trecho anterior terminou em outro ponto
+                // (ou chegou ao fim do código e só falta o EOF final)
+                trecho = corrigir(fonte, engine, posicao, inicios[i + 1], linha, i == total - 1, trecho);
+                delta = 0;
+            }
+
+            TokenBuffer tokens = trecho.tokens;
+            int primeiro = 0;
+            while (primeiro < tokens.size() && tokens.getType(primeiro) == TokenType.ERROR) {
+                primeiro++;
+            }
+            int base = resultado.size();
+            resultado.anexar(tokens, 0, primeiro, delta, 0);
+            boolean soEofFinal = trecho.terminado && primeiro == tokens.size() - 1;
+            if (primeiro < tokens.size() && !soEofFinal && ultimoTipo != null
+                    && ultimaLinha < tokens.getLinha(primeiro) + delta && ultimoTipo != TokenType.SEMICOLON) {
+                // Como no Lexer: depois dos erros do literal numérico e antes dos seus avisos
+                resultado.diagnostico(DiagnosticCode.MISSING_SEMICOLON, "Faltando ponto e virgula", ultimaLinha,
+                        ultimoInicio, ultimoFim);
+            }
+            resultado.anexar(tokens, primeiro, tokens.size(), delta, 0);
+            for (int j = base; j < resultado.size(); j++) {
+                if (resultado.getType(j) == TokenType.IDENTIFIER) {
+                    simbolos.intern(fonte, resultado.getInicio(j), resultado.getFim(j));
+                }
+            }
+
+            if (trecho.ultimoTipo != null) {
+                ultimoTipo = trecho.ultimoTipo;
+                ultimaLinha = trecho.ultimaLinha + delta;
+                ultimoInicio = trecho.ultimoInicio;
+                ultimoFim = trecho.ultimoFim;
+            }
+            posicao = trecho.fim;
+            linha = trecho.linhaFim + delta;
+        }
+        return resultado;
+    }
+
+    /**
+     * Posições de início dos trechos, sempre logo depois de um '\n', terminando no tamanho do código.
+     */
+    private static int[] dividir(String codigo, int partes) {
+        int[] inicios = new int[partes + 1];
+        int total = 1;
+        int passo = codigo.length() / partes;
+        for (int i = 1; i < partes; i++) {
+            int quebra = codigo.indexOf('\n', Math.max(i * passo, inicios[total - 1]));
+            if (quebra < 0 || quebra + 1 >= codigo.length()) {
+                break;
+            }
+            if (quebra + 1 > inicios[total - 1]) {
+                inicios[total++] = quebra + 1;
+            }
+        }
+        inicios[total++] = codigo.length();
+        return Arrays.copyOf(inicios, total);
+    }
+
+    private static Trecho analisarTrecho(SourceBuffer codigo, LexerFactory.Engine engine,
+                                         int inicio, int limite, int linha, boolean ultimo) {
+        SourceBuffer fonte = codigo.compartilhar();
+        Trecho trecho = new Trecho();
+
+        // Onde o trecho começa a ler tokens, para comparar com o fim do trecho anterior
+        int efetivo = inicio;
+        int linhaEfetiva = linha;
+        while (fonte.has(efetivo) && Character.isWhitespace(fonte.charAt(efetivo))) {
+            if (fonte.charAt(efetivo) == '\n') {
+                linhaEfetiva++;
+            }
+            efetivo++;
+        }
+        trecho.inicioEfetivo = efetivo;
+        trecho.linhaInicioEfetivo = linhaEfetiva;
+
+        Lexer lexer = LexerFactory.create(fonte, engine);
+        lexer.posicionar(inicio, linha);
+        trecho.tokens = new TokenBuffer(fonte, lexer.getSymbolTable());
+        if (ultimo) {
+            lexer.analisarTudo(trecho.tokens);
+        } else {
+            lexer.analisarAte(trecho.tokens, limite);
+        }
+        trecho.fim = lexer.posicao;
+        trecho.linhaFim = lexer.linhaAtual;
+        trecho.ultimoTipo = lexer.ultimoTipo();
+        trecho.ultimaLinha = lexer.ultimaLinha();
+        trecho.ultimoInicio = lexer.ultimoInicio();
+        trecho.ultimoFim = lexer.ultimoFim();
+        trecho.terminado = lexer.terminado();
+        return trecho;
+    }
+
+    /**
+     * Analisa de novo um trecho a partir de onde o anterior realmente parou,
+     * só até reencontrar um token que a análise especulativa também produziu
+     * na mesma posição. Dali em diante os dois estados são iguais e o resto
+     * do resultado especulativo é reaproveitado, com as linhas corrigidas.
+     */
+    private static Trecho corrigir(SourceBuffer codigo, LexerFactory.Engine engine, int inicio, int limite,
+                                   int linha, boolean ultimo, Trecho especulado) {
+        SourceBuffer fonte = codigo.compartilhar();
+        Lexer lexer = LexerFactory.create(fonte, engine);
+        lexer.posicionar(inicio, linha);
+        if (!ultimo) {
+            lexer.limitar(limite);
+        }
+        TokenBuffer tokens = new TokenBuffer(fonte, lexer.getSymbolTable());
+        TokenBuffer anteriores = especulado.tokens;
+        int k = 0;
+        while (!lexer.terminado() && (ultimo || lexer.posicao < limite)) {
+            int antes = tokens.size();
+            lexer.avancar(tokens);
+            int j = tokens.size() - 1;
+            if (j < antes || tokens.getType(j) == TokenType.ERROR || tokens.getType(j) == TokenType.EOF) {
+                continue;
+            }
+            int posicaoToken = tokens.getInicio(j);
+            while (k < anteriores.size()
+                    && (anteriores.getType(k) == TokenType.ERROR || anteriores.getInicio(k) < posicaoToken)) {
+                k++;
+            }
+            if (k < anteriores.size() && anteriores.getInicio(k) == posicaoToken
+                    && anteriores.getType(k) == tokens.getType(j)) {
+                int delta = tokens.getLinha(j) - anteriores.getLinha(k);
+                tokens.anexar(anteriores, k + 1, anteriores.size(), delta, 0);
+                Trecho trecho = new Trecho();
+                trecho.tokens = tokens;
+                trecho.fim = especulado.fim;
+                trecho.linhaFim = especulado.linhaFim + delta;
+                trecho.ultimoTipo = especulado.ultimoTipo;
+                trecho.ultimaLinha = especulado.ultimaLinha + delta;
+                trecho.ultimoInicio = especulado.ultimoInicio;
+                trecho.ultimoFim = especulado.ultimoFim;
+                trecho.terminado = especulado.terminado;
+                return trecho;
+            }
+        }
+        Trecho trecho = new Trecho();
+        trecho.tokens = tokens;
+        trecho.fim = lexer.posicao;
+        trecho.linhaFim = lexer.linhaAtual;
+        trecho.ultimoTipo = lexer.ultimoTipo();
+        trecho.ultimaLinha = lexer.ultimaLinha();
+        trecho.ultimoInicio = lexer.ultimoInicio();
+        trecho.ultimoFim = lexer.ultimoFim();
+        trecho.terminado = lexer.terminado();
+        return trecho;
+    }
+
+    /**
+     * Resultado da análise de um trecho, com linhas relativas ao início escolhido.
+     */
+    private static final class Trecho {
+        TokenBuffer tokens;
+        int inicioEfetivo;
+        int linhaInicioEfetivo;
+        int fim;
+        int linhaFim;
+        TokenType ultimoTipo;
+        int ultimaLinha;
+        int ultimoInicio;
+        int ultimoFim;
+        boolean terminado;
+    }
+}
@@ -0,0 +1,521 @@
+package Analizer;
+
+import java.util.Locale;
+
+/**
+ * Analisador sintático descendente recursivo do MiniPascal.
+ *
+ * Os tokens são pedidos ao {@link Lexer} um de cada vez, só quando a
+ * gramática precisa do próximo, e nenhum é guardado: o Parser só conhece o
+ * token atual e o anterior. O resultado é uma {@link Ast} em vetores, então
+ * a memória acompanha o tamanho da árvore, não o número de tokens.
+ *
+ * <pre>
+ * programa   = "program" id ";" ["var" declaracao {declaracao}] bloco "."
+ * declaracao = id {"," id} ":" ("integer" | "real") ";"
+ * bloco      = "begin" [comando] {";" [comando]} "end"
+ * comando    = id ":=" expressao | id ["(" argumentos ")"] | bloco
+ *            | "if" expressao "then" comando ["else" comando]
+ *            | "while" expressao "do" comando
+ * expressao  = simples [("=" | "<" | "<=" | ">" | ">=") simples]
+ * simples    = termo {("+" | "-") termo}
+ * termo      = fator {("*" | "/") fator}
+ * fator      = número | texto | id ["(" argumentos ")"] | "(" expressao ")" | ("+" | "-") fator
+ * </pre>
+ *
+ * O ponto e vírgula é verificado pela gramática: o erro SEMICOLON_EXPECTED
+ * sai quando dois comandos ou uma declaração e o que vem depois não estão
+ * separados por ';', e não mais por mudança de linha, então o Parser desliga
+ * a verificação do Lexer. Outros erros viram UNEXPECTED_TOKEN, e a análise
+ * continua a partir do próximo ';', {@code end} ou início de comando. Os
+ * erros léxicos vão para a mesma lista de diagnósticos.
+ */
+public final class Parser {
+
+    // Acima disto a pilha de chamadas poderia estourar em threads com pilha pequena
+    private static final int PROFUNDIDADE_MAXIMA = 256;
+
+    private static final long INICIO_COMANDO = conjunto(TokenType.IDENTIFIER, TokenType.BEGIN, TokenType.IF,
+            TokenType.WHILE);
+    private static final long SINCRONIA_COMANDO = INICIO_COMANDO | conjunto(TokenType.SEMICOLON, TokenType.END,
+            TokenType.ELSE, TokenType.PERIOD, TokenType.EOF);
+    private static final long SINCRONIA_DECLARACAO = conjunto(TokenType.SEMICOLON, TokenType.BEGIN,
+            TokenType.PERIOD, TokenType.EOF);
+
+    private final Lexer lexer;
+    private final Ast ast;
+
+    // Token atual
+    private TokenType tipo;
+    private int inicio;
+    private int fim;
+    private int linha;
+    private int simbolo;
+    private long valorNumero;
+    private boolean numeroReal;
+    private boolean recebido;
+
+    // Token anterior, para o trecho do aviso de ponto e vírgula
+    private int anteriorInicio;
+    private int anteriorFim;
+
+    private int consumidos;          // Tokens consumidos; mostra se a recuperação de um erro avançou
+    private int inicioUltimoErro = -1;
+    private int profundidade;
+
+    private final TokenSink entrada = new TokenSink() {
+        @Override
+        public void token(TokenType type, int inicio, int fim, int linha) {
+            tipo = type;
+            Parser.this.inicio = inicio;
+            Parser.this.fim = fim;
+            Parser.this.linha = linha;
+            simbolo = type == TokenType.IDENTIFIER ? lexer.getSimboloAtual() : -1;
+            recebido = true;
+        }
+
+        @Override
+        public void numero(int inicio, int fim, int linha, long valor, boolean real) {
+            valorNumero = valor;
+            numeroReal = real;
+            token(TokenType.NUMBER, inicio, fim, linha);
+        }
+
+        @Override
+        public void diagnostico(DiagnosticCode codigo, String mensagem, int linha, int inicio, int fim) {
+            ast.getDiagnostics().adicionar(-1, codigo, mensagem, inicio, fim);
+        }
+    };
+
+    /**
+     * @param lexer Lexer posicionado no início do programa; o Parser desliga
+     *              nele o erro de ponto e vírgula por linha e liga o índice
+     *              de todas as linhas, para as colunas da árvore.
+     */
+    public Parser(Lexer lexer) {
+        this.lexer = lexer;
+        lexer.setVerificarPontoEVirgula(false);
+        lexer.indexarLinhas();
+        this.ast = new Ast(lexer.fonte, lexer.getSymbolTable(), lexer.getLineIndex());
+    }
+
+    public Parser(String codigo) {
+        this(new Lexer(codigo));
+    }
+
+    /**
+     * Analisa o programa inteiro em uma passada.
+     *
+     * @return A árvore, com os erros léxicos e sintáticos em {@link Ast#getDiagnostics()}.
+     */
+    public Ast analisar() {
+        avancarToken();
+        if (tipo != TokenType.EOF) {
+            ast.setRaiz(programa());
+        }
+        return ast;
+    }
+
+    private int programa() {
+        int programa = ast.novo(NodeKind.PROGRAM, inicio, inicio, -1);
+        if (tipo == TokenType.PROGRAM) {
+            avancarToken();
+            if (tipo == TokenType.IDENTIFIER) {
+                ast.setValor(programa, simbolo);
+                avancarToken();
+            } else {
+                erroEsperado("o nome do programa");
+            }
+            ast.setFim(programa, anteriorFim);
+            pontoEVirgula();
+        } else {
+            erroEsperado("'program'");
+        }
+
+        if (tipo == TokenType.VAR) {
+            avancarToken();
+            if (tipo != TokenType.IDENTIFIER) {
+                erroEsperado("uma declaração");
+            }
+            while (tipo == TokenType.IDENTIFIER) {
+                ast.adicionarFilho(programa, declaracao());
+            }
+        }
+
+        if (tipo != TokenType.BEGIN) {
+            erroEsperado("'begin'");
+            sincronizar(conjunto(TokenType.BEGIN, TokenType.EOF));
+        }
+        if (tipo == TokenType.BEGIN) {
+            ast.adicionarFilho(programa, bloco());
+            if (esperar(TokenType.PERIOD)) {
+                ast.setFim(programa, anteriorFim);
+            }
+        }
+        if (tipo != TokenType.EOF) {
+            erro(DiagnosticCode.UNEXPECTED_TOKEN, "Código depois do fim do programa na linha " + linha);
+        }
+        return programa;
+    }
+
+    private int declaracao() {
+        int declaracao = ast.novo(NodeKind.DECLARATION, inicio, fim, -1);
+        while (true) {
+            if (tipo == TokenType.IDENTIFIER) {
+                ast.adicionarFilho(declaracao, ast.novo(NodeKind.VARIABLE, inicio, fim, simbolo));
+                avancarToken();
+            } else {
+                erroEsperado("um identificador");
+            }
+            if (tipo != TokenType.COMMA) {
+                break;
+            }
+            avancarToken();
+        }
+
+        boolean ok = esperar(TokenType.COLON);
+        if (ok && (tipo == TokenType.INTEGER || tipo == TokenType.REAL)) {
+            ast.setValor(declaracao, tipo.ordinal());
+            ast.setFim(declaracao, fim);
+            avancarToken();
+        } else {
+            if (ok) {
+                erroEsperado("'integer' ou 'real'");
+            }
+            ok = false;
+        }
+        if (ok) {
+            pontoEVirgula();
+        } else {
+            sincronizar(SINCRONIA_DECLARACAO);
+            if (tipo == TokenType.SEMICOLON) {
+                avancarToken();
+            }
+        }
+        return declaracao;
+    }
+
+    private int bloco() {
+        int bloco = ast.novo(NodeKind.BLOCK, inicio, fim, -1);
+        esperar(TokenType.BEGIN);
+        entrar();
+        while (tipo != TokenType.END && tipo != TokenType.PERIOD && tipo != TokenType.EOF) {
+            if (tipo == TokenType.SEMICOLON) {
+                avancarToken();
+                continue;
+            }
+            int antes = consumidos;
+            ast.adicionarFilho(bloco, comando());
+            if (tipo == TokenType.SEMICOLON) {
+                avancarToken();
+            } else if (contem(INICIO_COMANDO, tipo)) {
+                faltaPontoEVirgula();
+            } else if (tipo != TokenType.END && tipo != TokenType.PERIOD && tipo != TokenType.EOF) {
+                erroInesperado();
+                sincronizar(SINCRONIA_COMANDO);
+                if (consumidos == antes) {
+                    avancarToken(); // Garante que a análise avança
+                }
+            }
+        }
+        sair();
+        if (tipo == TokenType.END) {
+            ast.setFim(bloco, fim);
+            avancarToken();
+        } else {
+            erroEsperado("'end'");
+        }
+        return bloco;
+    }
+
+    private int comando() {
+        if (profundidade >= PROFUNDIDADE_MAXIMA) {
+            return profundoDemais();
+        }
+        switch (tipo) {
+            case IDENTIFIER: {
+                int comeco = inicio;
+                int nome = simbolo;
+                avancarToken();
+                if (tipo == TokenType.ASSIGN) {
+                    avancarToken();
+                    int atribuicao = ast.novo(NodeKind.ASSIGN, comeco, anteriorFim, nome);
+                    ast.adicionarFilho(atribuicao, expressao());
+                    return atribuicao;
+                }
+                return chamada(comeco, nome);
+            }
+            case BEGIN:
+                return bloco();
+            case IF: {
+                int se = ast.novo(NodeKind.IF, inicio, fim, -1);
+                avancarToken();
+                entrar();
+                ast.adicionarFilho(se, expressao());
+                esperar(TokenType.THEN);
+                ast.adicionarFilho(se, comandoOuVazio());
+                if (tipo == TokenType.ELSE) {
+                    avancarToken();
+                    ast.adicionarFilho(se, comandoOuVazio());
+                }
+                sair();
+                return se;
+            }
+            case WHILE: {
+                int enquanto = ast.novo(NodeKind.WHILE, inicio, fim, -1);
+                avancarToken();
+                entrar();
+                ast.adicionarFilho(enquanto, expressao());
+                esperar(TokenType.DO);
+                ast.adicionarFilho(enquanto, comandoOuVazio());
+                sair();
+                return enquanto;
+            }
+            default:
+                erroEsperado("um comando");
+                return ast.novo(NodeKind.ERROR, inicio, fim, -1);
+        }
+    }
+
+    private int comandoOuVazio() {
+        if (tipo == TokenType.SEMICOLON || tipo == TokenType.END || tipo == TokenType.ELSE) {
+            return ast.novo(NodeKind.EMPTY, anteriorFim, anteriorFim, -1);
+        }
+        return comando();
+    }
+
+    private int chamada(int comeco, int nome) {
+        int chamada = ast.novo(NodeKind.CALL, comeco, anteriorFim, nome);
+        if (tipo == TokenType.LPAREN) {
+            avancarToken();
+            if (tipo != TokenType.RPAREN) {
+                ast.adicionarFilho(chamada, expressao());
+                while (tipo == TokenType.COMMA) {
+                    avancarToken();
+                    ast.adicionarFilho(chamada, expressao());
+                }
+            }
+            if (tipo == TokenType.RPAREN) {
+                ast.setFim(chamada, fim);
+            }
+            esperar(TokenType.RPAREN);
+        }
+        return chamada;
+    }
+
+    private int expressao() {
+        int esquerda = simples();
+        switch (tipo) {
+            case EQUAL:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUAL:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUAL:
+                TokenType operador = tipo;
+                avancarToken();
+                return binaria(operador, esquerda, simples());
+            default:
+                return esquerda;
+        }
+    }
+
+    private int simples() {
+        int esquerda = termo();
+        while (tipo == TokenType.PLUS || tipo == TokenType.MINUS) {
+            TokenType operador = tipo;
+            avancarToken();
+            esquerda = binaria(operador, esquerda, termo());
+        }
+        return esquerda;
+    }
+
+    private int termo() {
+        int esquerda = fator();
+        while (tipo == TokenType.MULTIPLY || tipo == TokenType.DIVIDE) {
+            TokenType operador = tipo;
+            avancarToken();
+            esquerda = binaria(operador, esquerda, fator());
+        }
+        return esquerda;
+    }
+
+    private int fator() {
+        if (profundidade >= PROFUNDIDADE_MAXIMA) {
+            return profundoDemais();
+        }
+        int no;
+        switch (tipo) {
+            case NUMBER:
+                no = ast.novo(NodeKind.NUMBER, inicio, fim, ast.adicionarNumero(valorNumero, numeroReal));
+                avancarToken();
+                return no;
+            case STRING_LITERAL:
+                no = ast.novo(NodeKind.STRING, inicio, fim, -1);
+                avancarToken();
+                return no;
+            case IDENTIFIER: {
+                int comeco = inicio;
+                int nome = simbolo;
+                avancarToken();
+                if (tipo == TokenType.LPAREN) {
+                    entrar();
+                    no = chamada(comeco, nome);
+                    sair();
+                    return no;
+                }
+                return ast.novo(NodeKind.IDENTIFIER, comeco, anteriorFim, nome);
+            }
+            case LPAREN:
+                avancarToken();
+                entrar();
+                no = expressao();
+                sair();
+                esperar(TokenType.RPAREN);
+                return no;
+            case PLUS:
+            case MINUS:
+                no = ast.novo(NodeKind.UNARY, inicio, fim, tipo.ordinal());
+                avancarToken();
+                entrar();
+                ast.adicionarFilho(no, fator());
+                sair();
+                return no;
+            default:
+                erroEsperado("uma expressão");
+                return ast.novo(NodeKind.ERROR, inicio, inicio, -1);
+        }
+    }
+
+    private int binaria(TokenType operador, int esquerda, int direita) {
+        int no = ast.novo(NodeKind.BINARY, ast.getInicio(esquerda), ast.getFim(esquerda), operador.ordinal());
+        ast.adicionarFilho(no, esquerda);
+        ast.adicionarFilho(no, direita);
+        return no;
+    }
+
+    private void entrar() {
+        profundidade++;
+    }
+
+    private void sair() {
+        profundidade--;
+    }
+
+    /**
+     * Desiste do trecho aninhado demais, pulando até o fim do comando atual.
+     */
+    private int profundoDemais() {
+        int no = ast.novo(NodeKind.ERROR, inicio, fim, -1);
+        erro(DiagnosticCode.NESTING_TOO_DEEP, "Aninhamento acima de " + PROFUNDIDADE_MAXIMA + " níveis na linha "
+                + linha);
+        sincronizar(conjunto(TokenType.SEMICOLON, TokenType.END, TokenType.PERIOD, TokenType.EOF));
+        return no;
+    }
+
+    // Tokens
+
+    private void avancarToken() {
+        if (tipo != null) {
+            anteriorInicio = inicio;
+            anteriorFim = fim;
+            consumidos++;
+        }
+        recebido = false;
+        while (!recebido) {
+            if (lexer.terminado()) {
+                // Depois do EOF final o Lexer não entrega mais nada; o EOF continua sendo o token atual
+                tipo = TokenType.EOF;
+                return;
+            }
+            lexer.avancar(entrada);
+        }
+    }
+
+    private boolean esperar(TokenType esperado) {
+        if (tipo == esperado) {
+            avancarToken();
+            return true;
+        }
+        erroEsperado(descrever(esperado));
+        return false;
+    }
+
+    /**
+     * Consome o ';' que encerra o cabeçalho ou uma declaração, ou aponta que ele falta.
+     */
+    private void pontoEVirgula() {
+        if (tipo == TokenType.SEMICOLON) {
+            avancarToken();
+        } else {
+            faltaPontoEVirgula();
+        }
+    }
+
+    private void faltaPontoEVirgula() {
+        ast.getDiagnostics().adicionar(-1, DiagnosticCode.SEMICOLON_EXPECTED, "Faltando ponto e virgula",
+                anteriorInicio, anteriorFim);
+    }
+
+    private void sincronizar(long conjunto) {
+        while (!contem(conjunto, tipo)) {
+            avancarToken();
+        }
+    }
+
+    private void erroEsperado(String esperado) {
+        erro(DiagnosticCode.UNEXPECTED_TOKEN, "Esperado " + esperado + ", encontrado " + descreverAtual()
+                + " na linha " + linha);
+    }
+
+    private void erroInesperado() {
+        erro(DiagnosticCode.UNEXPECTED_TOKEN, "Token inesperado: " + descreverAtual() + " na linha " + linha);
+    }
+
+    /**
+     * Registra um erro sobre o token atual; erros seguidos no mesmo token são
+     * consequência do primeiro e ficam de fora.
+     */
+    private void erro(DiagnosticCode codigo, String mensagem) {
+        if (inicio == inicioUltimoErro) {
+            return;
+        }
+        inicioUltimoErro = inicio;
+        ast.getDiagnostics().adicionar(-1, codigo, mensagem, inicio, fim);
+    }
+
+    private String descreverAtual() {
+        switch (tipo) {
+            case IDENTIFIER:
+                return "identificador '" + lexer.getSymbolTable().nome(simbolo) + "'";
+            case NUMBER:
+                return "número";
+            case STRING_LITERAL:
+                return "texto";
+            default:
+                return descrever(tipo);
+        }
+    }
+
+    private static String descrever(TokenType tipo) {
+        if (tipo == TokenType.EOF) {
+            return "fim do código";
+        }
+        if (tipo == TokenType.IDENTIFIER) {
+            return "um identificador";
+        }
+        String fixo = Lexer.lexemaFixo(tipo);
+        return "'" + (fixo != null ? fixo : tipo.name().toLowerCase(Locale.ROOT)) + "'";
+    }
+
+    private static long conjunto(TokenType... tipos) {
+        long conjunto = 0;
+        for (TokenType tipo : tipos) {
+            conjunto |= 1L << tipo.ordinal();
+        }
+        return conjunto;
+    }
+
+    private static boolean contem(long conjunto, TokenType tipo) {
+        return (conjunto & (1L << tipo.ordinal())) != 0;
+    }
+}
@@ -0,0 +1,10 @@
+package Analizer;
+
+/**
+ * Gravidade de um diagnóstico.
+ */
+public enum Severity {
+    ERROR,
+    WARNING,
+    INFO
+}
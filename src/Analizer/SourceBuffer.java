@@ -0,0 +1,353 @@
+package Analizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Janela de caracteres sobre o código fonte usada pelo {@link Lexer}.
+ *
+ * As posições são absolutas (contadas desde o início do código). Quando a
+ * fonte é um {@link Reader}, o buffer é recarregado aos poucos e só mantém os
+ * caracteres a partir da última {@link #mark(int) marca}, de modo que o
+ * lookahead de {@code :=}, {@code <=}, {@code //} e {@code /*} funciona mesmo
+ * quando o token cruza a fronteira entre dois blocos lidos.
+ */
+public class SourceBuffer implements Closeable {
+
+    private static final int TAMANHO_BLOCO = 8192;
+    private static final boolean[] ESPACO = new boolean[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            ESPACO[c] = Character.isWhitespace(c);
+        }
+    }
+
+    private final Reader reader;
+    private char[] buffer;
+    private int base;      // Posição absoluta de buffer[0]
+    private int limite;    // Quantidade de caracteres válidos em buffer
+    private int marca;     // Primeira posição absoluta que ainda precisa ficar no buffer
+    private boolean esgotado;
+
+    private SourceBuffer(Reader reader, char[] buffer, int limite, boolean esgotado) {
+        this.reader = reader;
+        this.buffer = buffer;
+        this.limite = limite;
+        this.esgotado = esgotado;
+    }
+
+    /**
+     * Fonte já carregada por completo na memória.
+     */
+    public static SourceBuffer of(String codigo) {
+        char[] chars = codigo.toCharArray();
+        return new SourceBuffer(null, chars, chars.length, true);
+    }
+
+    /**
+     * Fonte sobre os {@code tamanho} primeiros caracteres de um vetor, sem
+     * cópia. O vetor não pode ser alterado enquanto a fonte estiver em uso.
+     */
+    static SourceBuffer wrap(char[] chars, int tamanho) {
+        return new SourceBuffer(null, chars, tamanho, true);
+    }
+
+    /**
+     * Fonte lida sob demanda de um {@link Reader}, em blocos de tamanho fixo.
+     */
+    public static SourceBuffer of(Reader reader) {
+        return new SourceBuffer(reader, new char[TAMANHO_BLOCO], 0, false);
+    }
+
+    /**
+     * Fonte lida sob demanda de um canal de bytes, decodificada com o charset informado.
+     */
+    public static SourceBuffer of(ReadableByteChannel canal, Charset charset) {
+        return of(Channels.newReader(canal, newDecoder(charset), -1));
+    }
+
+    /**
+     * Fonte mapeada em memória a partir de um arquivo, decodificada aos poucos.
+     *
+     * @throws IOException Se o arquivo não puder ser aberto.
+     */
+    public static SourceBuffer map(Path arquivo, Charset charset) throws IOException {
+        return of(new MappedReader(FileChannel.open(arquivo, StandardOpenOption.READ), newDecoder(charset)));
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Indica se existe um caractere na posição absoluta informada.
+     */
+    public boolean has(int pos) {
+        return pos - base < limite || carregar(pos);
+    }
+
+    /**
+     * Caractere na posição absoluta informada, ou {@code '\0'} depois do fim do código.
+     */
+    public char charAt(int pos) {
+        int i = pos - base;
+        if (i < limite) {
+            return buffer[i];
+        }
+        return carregar(pos) ? buffer[pos - base] : '\0';
+    }
+
+    /**
+     * Copia o trecho [inicio, fim) do código. O trecho precisa estar depois da marca atual.
+     */
+    public String substring(int inicio, int fim) {
+        return new String(buffer, inicio - base, fim - inicio);
+    }
+
+    /**
+     * Compara o trecho [inicio, fim) do código com o texto, sem copiar o trecho.
+     * O trecho precisa estar depois da marca atual.
+     */
+    public boolean regionMatches(int inicio, int fim, String texto) {
+        int comprimento = fim - inicio;
+        if (comprimento != texto.length()) {
+            return false;
+        }
+        int deslocamento = inicio - base;
+        for (int i = 0; i < comprimento; i++) {
+            if (buffer[deslocamento + i] != texto.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indica se todo o código está no buffer, permitindo ler qualquer trecho a qualquer momento.
+     */
+    public boolean isCompleto() {
+        return reader == null;
+    }
+
+    /**
+     * Outra janela sobre o mesmo código já carregado, com marca própria, para
+     * que várias threads leiam o código ao mesmo tempo.
+     */
+    SourceBuffer compartilhar() {
+        if (!isCompleto()) {
+            throw new IllegalStateException("Só é possível compartilhar um código inteiro na memória");
+        }
+        return new SourceBuffer(null, buffer, limite, true);
+    }
+
+    /**
+     * Posição do primeiro caractere a partir de {@code pos} que não é espaço
+     * ({@link Character#isWhitespace}), ou a do fim do código. As quebras de
+     * linha do caminho são registradas em {@code linhas}.
+     *
+     * Percorre o vetor interno bloco a bloco, sem as verificações de
+     * {@link #has} e {@link #charAt} a cada caractere; o trecho percorrido
+     * fica marcado como descartável.
+     */
+    int pularEspacos(int pos, LineIndex linhas) {
+        while (true) {
+            char[] chars = buffer;
+            int deslocamento = base;
+            int fim = limite;
+            for (int i = pos - deslocamento; i < fim; i++) {
+                char c = chars[i];
+                if (c < 128 ? !ESPACO[c] : !Character.isWhitespace(c)) {
+                    return deslocamento + i;
+                }
+                if (c == '\n') {
+                    linhas.adicionar(deslocamento + i + 1);
+                }
+            }
+            pos = deslocamento + fim;
+            marca = pos;
+            if (!carregar(pos)) {
+                return pos;
+            }
+        }
+    }
+
+    /**
+     * Posição da primeira ocorrência de {@code alvo} a partir de {@code pos},
+     * ou a do fim do código se ela não existir. As quebras de linha antes do
+     * alvo são registradas em {@code linhas}; usado para pular comentários de
+     * uma vez, como {@link #pularEspacos}.
+     */
+    int procurar(int pos, char alvo, LineIndex linhas) {
+        while (true) {
+            char[] chars = buffer;
+            int deslocamento = base;
+            int fim = limite;
+            for (int i = pos - deslocamento; i < fim; i++) {
+                char c = chars[i];
+                if (c == alvo) {
+                    return deslocamento + i;
+                }
+                if (c == '\n') {
+                    linhas.adicionar(deslocamento + i + 1);
+                }
+            }
+            pos = deslocamento + fim;
+            marca = pos;
+            if (!carregar(pos)) {
+                return pos;
+            }
+        }
+    }
+
+    /**
+     * Informa que as posições anteriores a {@code pos} não serão mais lidas
+     * e podem ser descartadas na próxima recarga.
+     */
+    public void mark(int pos) {
+        marca = pos;
+    }
+
+    @Override
+    public void close() {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private boolean carregar(int pos) {
+        try {
+            while (pos - base >= limite) {
+                if (esgotado) {
+                    return false;
+                }
+                int descartar = Math.min(marca, pos) - base;
+                if (descartar > 0) {
+                    System.arraycopy(buffer, descartar, buffer, 0, limite - descartar);
+                    limite -= descartar;
+                    base += descartar;
+                }
+                if (limite == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int lidos = reader.read(buffer, limite, buffer.length - limite);
+                if (lidos < 0) {
+                    esgotado = true;
+                } else {
+                    limite += lidos;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reader que decodifica um arquivo mapeado em janelas, remapeando a partir
+     * do primeiro byte não consumido para não quebrar sequências multibyte.
+     *
+     * Um par de surrogates não cabe em um pedido de um único caractere, e o
+     * decoder não escreve metade dele; nesse caso o par é decodificado em um
+     * vetor auxiliar e a segunda metade fica guardada para a próxima leitura,
+     * como faz o {@code StreamDecoder} de {@link java.io.InputStreamReader}.
+     */
+    private static final class MappedReader extends Reader {
+
+        private static final long TAMANHO_JANELA = 64L << 20;
+
+        private final FileChannel canal;
+        private final CharsetDecoder decoder;
+        private final long tamanho;
+        private MappedByteBuffer janela;
+        private long inicioJanela;
+        private boolean finalizado;
+        private final char[] par = new char[2];
+        private boolean temSobra;  // par[1] ainda não foi entregue
+
+        MappedReader(FileChannel canal, CharsetDecoder decoder) throws IOException {
+            this.canal = canal;
+            this.decoder = decoder;
+            this.tamanho = canal.size();
+        }
+
+        @Override
+        public int read(char[] destino, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (temSobra) {
+                destino[off] = par[1];
+                temSobra = false;
+                return 1;
+            }
+            if (len < 2) {
+                int lidos = decodificar(par, 0, 2);
+                if (lidos < 0) {
+                    return -1;
+                }
+                destino[off] = par[0];
+                temSobra = lidos == 2;
+                return 1;
+            }
+            return decodificar(destino, off, len);
+        }
+
+        // Decodifica pelo menos um caractere; len precisa ser 2 ou mais
+        private int decodificar(char[] destino, int off, int len) throws IOException {
+            CharBuffer saida = CharBuffer.wrap(destino, off, len);
+            while (saida.position() == off) {
+                if (finalizado) {
+                    return -1;
+                }
+                if (janela == null) {
+                    long restante = tamanho - inicioJanela;
+                    janela = canal.map(FileChannel.MapMode.READ_ONLY, inicioJanela, Math.min(restante, TAMANHO_JANELA));
+                }
+                boolean ultima = inicioJanela + janela.limit() >= tamanho;
+                CoderResult resultado = decoder.decode(janela, saida, ultima);
+                if (resultado.isError()) {
+                    resultado.throwException();
+                }
+                if (resultado.isUnderflow()) {
+                    if (ultima) {
+                        if (decoder.flush(saida).isOverflow()) {
+                            break;
+                        }
+                        finalizado = true;
+                    } else {
+                        inicioJanela += janela.position();
+                        janela = null;
+                    }
+                }
+            }
+            return saida.position() - off;
+        }
+
+        @Override
+        public void close() throws IOException {
+            janela = null;
+            canal.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package Analizer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índices de declarações de vários arquivos. Quando um arquivo muda, só ele é
+ * analisado de novo e tem o seu {@link DeclarationIndex} trocado; os totais
+ * de variáveis não declaradas e não usadas são ajustados pela diferença, sem
+ * percorrer os outros arquivos.
+ *
+ * Não é seguro para várias threads.
+ */
+public final class SymbolIndex {
+
+    private final LexerFactory.Engine engine;
+    private final Map<String, DeclarationIndex> arquivos = new HashMap<>();
+    private int totalNaoDeclaradas;
+    private int totalNaoUsadas;
+
+    public SymbolIndex() {
+        this(LexerFactory.Engine.SWITCH);
+    }
+
+    public SymbolIndex(LexerFactory.Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Analisa o novo conteúdo do arquivo e troca o índice dele.
+     *
+     * @return O índice novo do arquivo.
+     */
+    public DeclarationIndex atualizar(String arquivo, String codigo) {
+        DeclarationIndex indice = DeclarationIndex.of(new Parser(LexerFactory.create(codigo, engine)).analisar());
+        atualizar(arquivo, indice);
+        return indice;
+    }
+
+    /**
+     * Troca o índice do arquivo por um já montado.
+     */
+    public void atualizar(String arquivo, DeclarationIndex indice) {
+        descontar(arquivos.put(arquivo, indice));
+        totalNaoDeclaradas += indice.getTotalNaoDeclaradas();
+        totalNaoUsadas += indice.getTotalNaoUsadas();
+    }
+
+    public void remover(String arquivo) {
+        descontar(arquivos.remove(arquivo));
+    }
+
+    /**
+     * Índice do arquivo, ou {@code null} se ele não foi indexado.
+     */
+    public DeclarationIndex get(String arquivo) {
+        return arquivos.get(arquivo);
+    }
+
+    public Set<String> getArquivos() {
+        return Collections.unmodifiableSet(arquivos.keySet());
+    }
+
+    /**
+     * Usos da variável em cada arquivo em que ela aparece, como nós da árvore do arquivo.
+     */
+    public Map<String, int[]> procurarReferencias(String nome) {
+        Map<String, int[]> referencias = new LinkedHashMap<>();
+        for (Map.Entry<String, DeclarationIndex> entrada : arquivos.entrySet()) {
+            DeclarationIndex indice = entrada.getValue();
+            int simbolo = indice.getSimbolo(nome);
+            if (simbolo >= 0 && indice.getQuantidadeUsos(simbolo) > 0) {
+                referencias.put(entrada.getKey(), indice.getReferencias(simbolo));
+            }
+        }
+        return referencias;
+    }
+
+    public int getTotalNaoDeclaradas() {
+        return totalNaoDeclaradas;
+    }
+
+    public int getTotalNaoUsadas() {
+        return totalNaoUsadas;
+    }
+
+    private void descontar(DeclarationIndex anterior) {
+        if (anterior != null) {
+            totalNaoDeclaradas -= anterior.getTotalNaoDeclaradas();
+            totalNaoUsadas -= anterior.getTotalNaoUsadas();
+        }
+    }
+}
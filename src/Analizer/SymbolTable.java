@@ -0,0 +1,159 @@
+package Analizer;
+
+import java.util.Arrays;
+
+/**
+ * Tabela de símbolos que interna os identificadores: cada nome distinto
+ * recebe um id inteiro estável (0, 1, 2, ...) e uma única String.
+ *
+ * A busca é feita direto sobre o trecho do código fonte, então um
+ * identificador repetido não cria String nenhuma. Como os nomes são
+ * internados, dois identificadores iguais podem ser comparados por id ou
+ * por referência.
+ *
+ * Só uma thread pode internar, mas outras podem consultar ao mesmo tempo com
+ * {@link #lookup}: os vetores trocados ao crescer e o total são publicados
+ * por campos volatile, e quem consulta ignora os ids criados depois de ler o
+ * total. Assim a view lê os lotes já publicados enquanto o Lexer continua.
+ */
+public class SymbolTable {
+
+    private volatile String[] nomes = new String[64];
+    private volatile int[] hashes = new int[64];
+    private volatile int total;
+    private volatile int[] tabela = new int[128]; // id + 1 em endereçamento aberto; 0 = vazio
+
+    /**
+     * Interna o identificador em [inicio, fim) do código e devolve seu id.
+     */
+    public int intern(SourceBuffer fonte, int inicio, int fim) {
+        int hash = hash(fonte, inicio, fim);
+        int[] tabela = this.tabela;
+        int[] hashes = this.hashes;
+        String[] nomes = this.nomes;
+        int mascara = tabela.length - 1;
+        for (int slot = misturar(hash) & mascara; ; slot = (slot + 1) & mascara) {
+            int id = tabela[slot] - 1;
+            if (id < 0) {
+                return adicionar(fonte.substring(inicio, fim), hash, slot);
+            }
+            if (hashes[id] == hash && fonte.regionMatches(inicio, fim, nomes[id])) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Id do identificador em [inicio, fim) do código, ou -1 se ele nunca foi
+     * internado. Não altera a tabela.
+     */
+    public int lookup(SourceBuffer fonte, int inicio, int fim) {
+        int hash = hash(fonte, inicio, fim);
+        int limite = total;
+        int[] tabela = this.tabela;
+        int[] hashes = this.hashes;
+        String[] nomes = this.nomes;
+        int mascara = tabela.length - 1;
+        for (int slot = misturar(hash) & mascara; ; slot = (slot + 1) & mascara) {
+            int id = tabela[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (id < limite && hashes[id] == hash && fonte.regionMatches(inicio, fim, nomes[id])) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Interna um nome vindo de fora do código fonte e devolve seu id.
+     */
+    public int intern(String nome) {
+        int id = lookup(nome);
+        if (id >= 0) {
+            return id;
+        }
+        int hash = nome.hashCode();
+        int mascara = tabela.length - 1;
+        int slot = misturar(hash) & mascara;
+        while (tabela[slot] != 0) {
+            slot = (slot + 1) & mascara;
+        }
+        return adicionar(nome, hash, slot);
+    }
+
+    /**
+     * Id do nome, ou -1 se ele nunca foi internado.
+     */
+    public int lookup(String nome) {
+        int hash = nome.hashCode();
+        int limite = total;
+        int[] tabela = this.tabela;
+        int[] hashes = this.hashes;
+        String[] nomes = this.nomes;
+        int mascara = tabela.length - 1;
+        for (int slot = misturar(hash) & mascara; ; slot = (slot + 1) & mascara) {
+            int id = tabela[slot] - 1;
+            if (id < 0) {
+                return -1;
+            }
+            if (id < limite && hashes[id] == hash && nomes[id].equals(nome)) {
+                return id;
+            }
+        }
+    }
+
+    public String nome(int id) {
+        if (id < 0 || id >= total) {
+            throw new IndexOutOfBoundsException("Símbolo " + id + " inexistente");
+        }
+        return nomes[id];
+    }
+
+    public int size() {
+        return total;
+    }
+
+    // O id só passa a valer para quem consulta quando o total é publicado, depois do nome
+    private int adicionar(String nome, int hash, int slot) {
+        int id = total;
+        if (id == nomes.length) {
+            nomes = Arrays.copyOf(nomes, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        nomes[id] = nome;
+        hashes[id] = hash;
+        tabela[slot] = id + 1;
+        total = id + 1;
+        if (total * 2 > tabela.length) {
+            redimensionar();
+        }
+        return id;
+    }
+
+    // Monta a tabela nova antes de publicá-la, para que uma consulta nunca a veja pela metade
+    private void redimensionar() {
+        int[] nova = new int[tabela.length * 2];
+        int mascara = nova.length - 1;
+        for (int id = 0; id < total; id++) {
+            int slot = misturar(hashes[id]) & mascara;
+            while (nova[slot] != 0) {
+                slot = (slot + 1) & mascara;
+            }
+            nova[slot] = id + 1;
+        }
+        tabela = nova;
+    }
+
+    private static int hash(SourceBuffer fonte, int inicio, int fim) {
+        int hash = 0;
+        for (int i = inicio; i < fim; i++) {
+            hash = 31 * hash + fonte.charAt(i);
+        }
+        return hash;
+    }
+
+    private static int misturar(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
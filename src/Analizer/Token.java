@@ -1,14 +1,31 @@
 package Analizer;
 
+/**
+ * Token isolado, como o devolvido por {@link Lexer#analisar()}. O trecho
+ * [início, fim) fica empacotado em um long, que leva cada objeto de 24 para
+ * 32 bytes (com referências comprimidas); quem guarda muitos tokens deve
+ * usar o {@link TokenBuffer}. A coluna sai do {@link LineIndex} de quem
+ * criou o token ({@link Lexer#getLineIndex()} ou {@link TokenBuffer#getColuna(int)}).
+ */
 public class Token {
     private final TokenType type;
     private final String lexema;
     private final int linha;
+    private final long trecho;
 
     public Token(TokenType type, String lexema, int linha) {
+        this(type, lexema, linha, -1, -1);
+    }
+
+    /**
+     * @param inicio Posição do lexema (ou do trecho do erro) no código.
+     * @param fim    Posição logo depois do lexema.
+     */
+    public Token(TokenType type, String lexema, int linha, int inicio, int fim) {
         this.type = type;
         this.lexema = lexema;
         this.linha = linha;
+        this.trecho = ((long) inicio << 32) | (fim & 0xFFFFFFFFL);
     }
 
     public TokenType getType() {
@@ -23,6 +40,14 @@ public class Token {
         return linha;
     }
 
+    public int getInicio() {
+        return (int) (trecho >> 32);
+    }
+
+    public int getFim() {
+        return (int) trecho;
+    }
+
     @Override
     public String toString() {
         return "Token{" +
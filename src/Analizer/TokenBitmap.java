@@ -0,0 +1,311 @@
+package Analizer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Conjunto comprimido de índices de token, em ordem crescente.
+ *
+ * Os índices são divididos em blocos de 65536; cada bloco guarda os 16 bits
+ * baixos dos seus índices num vetor de {@code char} ordenado enquanto tem até
+ * 4096 deles, e num mapa de 1024 {@code long} (8 KB) quando tem mais. Assim
+ * um tipo raro, como ERROR, ocupa 2 bytes por token, e um tipo comum, como
+ * IDENTIFIER, no máximo 1 bit por token do arquivo.
+ *
+ * A quantidade de índices antes de cada bloco fica guardada, então
+ * {@link #get(int)} (o k-ésimo índice) e {@link #contarAntes(int)} custam uma
+ * busca binária nos blocos mais uma dentro do bloco, e o conjunto serve de
+ * modelo de tabela filtrada sem copiar as linhas.
+ */
+public final class TokenBitmap {
+
+    private static final int BITS_BLOCO = 16;
+    private static final int MASCARA_BLOCO = (1 << BITS_BLOCO) - 1;
+    private static final int LIMITE_VETOR = 4096;
+    private static final int PALAVRAS_MAPA = (1 << BITS_BLOCO) / 64;
+
+    private Object[] blocos = new Object[0]; // Por bloco: char[] ordenado, long[] com um bit por índice, ou null
+    private int[] quantidades = new int[0];  // Índices em cada bloco
+    private int[] antes = new int[0];        // Índices nos blocos anteriores
+    private int total;
+    private int ultimo = -1;
+
+    /**
+     * Acrescenta um índice maior que todos os já presentes.
+     */
+    void adicionar(int indice) {
+        if (indice <= ultimo) {
+            throw new IllegalArgumentException("Índice " + indice + " fora de ordem depois de " + ultimo);
+        }
+        int b = indice >>> BITS_BLOCO;
+        if (b >= blocos.length) {
+            crescer(b + 1);
+        }
+        char baixo = (char) (indice & MASCARA_BLOCO);
+        Object bloco = blocos[b];
+        int quantidade = quantidades[b];
+        if (bloco == null) {
+            blocos[b] = new char[]{baixo, 0, 0, 0};
+        } else if (bloco instanceof char[]) {
+            char[] vetor = (char[]) bloco;
+            if (quantidade == LIMITE_VETOR) {
+                long[] mapa = new long[PALAVRAS_MAPA];
+                for (int i = 0; i < quantidade; i++) {
+                    mapa[vetor[i] >>> 6] |= 1L << vetor[i];
+                }
+                mapa[baixo >>> 6] |= 1L << baixo;
+                blocos[b] = mapa;
+            } else {
+                if (quantidade == vetor.length) {
+                    vetor = Arrays.copyOf(vetor, Math.min(LIMITE_VETOR, quantidade * 2));
+                    blocos[b] = vetor;
+                }
+                vetor[quantidade] = baixo;
+            }
+        } else {
+            ((long[]) bloco)[baixo >>> 6] |= 1L << baixo;
+        }
+        quantidades[b]++;
+        total++;
+        ultimo = indice;
+    }
+
+    private void crescer(int tamanho) {
+        int anterior = blocos.length;
+        blocos = Arrays.copyOf(blocos, tamanho);
+        quantidades = Arrays.copyOf(quantidades, tamanho);
+        antes = Arrays.copyOf(antes, tamanho);
+        Arrays.fill(antes, anterior, tamanho, total);
+    }
+
+    /**
+     * União de vários conjuntos, bloco a bloco.
+     */
+    static TokenBitmap unir(List<TokenBitmap> conjuntos) {
+        int blocosUniao = 0;
+        for (TokenBitmap conjunto : conjuntos) {
+            blocosUniao = Math.max(blocosUniao, conjunto.blocos.length);
+        }
+        TokenBitmap uniao = new TokenBitmap();
+        uniao.crescer(blocosUniao);
+        long[] mapa = new long[PALAVRAS_MAPA];
+        for (int b = 0; b < blocosUniao; b++) {
+            Arrays.fill(mapa, 0);
+            for (TokenBitmap conjunto : conjuntos) {
+                conjunto.marcar(b, mapa);
+            }
+            int quantidade = 0;
+            for (long palavra : mapa) {
+                quantidade += Long.bitCount(palavra);
+            }
+            uniao.antes[b] = uniao.total;
+            uniao.quantidades[b] = quantidade;
+            uniao.total += quantidade;
+            if (quantidade == 0) {
+                continue;
+            }
+            if (quantidade > LIMITE_VETOR) {
+                uniao.blocos[b] = mapa.clone();
+            } else {
+                char[] vetor = new char[quantidade];
+                int k = 0;
+                for (int p = 0; p < PALAVRAS_MAPA; p++) {
+                    for (long palavra = mapa[p]; palavra != 0; palavra &= palavra - 1) {
+                        vetor[k++] = (char) (p * 64 + Long.numberOfTrailingZeros(palavra));
+                    }
+                }
+                uniao.blocos[b] = vetor;
+            }
+        }
+        uniao.ultimo = uniao.total == 0 ? -1 : uniao.get(uniao.total - 1);
+        return uniao;
+    }
+
+    // Liga em mapa os bits dos índices do bloco b
+    private void marcar(int b, long[] mapa) {
+        if (b >= blocos.length || blocos[b] == null) {
+            return;
+        }
+        if (blocos[b] instanceof char[]) {
+            char[] vetor = (char[]) blocos[b];
+            for (int i = 0; i < quantidades[b]; i++) {
+                mapa[vetor[i] >>> 6] |= 1L << vetor[i];
+            }
+        } else {
+            long[] bits = (long[]) blocos[b];
+            for (int p = 0; p < PALAVRAS_MAPA; p++) {
+                mapa[p] |= bits[p];
+            }
+        }
+    }
+
+    /**
+     * Quantidade de índices no conjunto.
+     */
+    public int size() {
+        return total;
+    }
+
+    /**
+     * O {@code k}-ésimo índice do conjunto, em ordem crescente.
+     */
+    public int get(int k) {
+        if (k < 0 || k >= total) {
+            throw new IndexOutOfBoundsException("Posição " + k + " fora do intervalo 0.." + total);
+        }
+        // Último bloco com antes <= k; ele não é vazio, porque o seguinte já começa depois de k
+        int baixo = 0;
+        int alto = blocos.length - 1;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (antes[meio] <= k) {
+                baixo = meio;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        int b = baixo;
+        int resto = k - antes[b];
+        if (blocos[b] instanceof char[]) {
+            return (b << BITS_BLOCO) | ((char[]) blocos[b])[resto];
+        }
+        long[] mapa = (long[]) blocos[b];
+        int p = 0;
+        int contagem;
+        while ((contagem = Long.bitCount(mapa[p])) <= resto) {
+            resto -= contagem;
+            p++;
+        }
+        long palavra = mapa[p];
+        for (; resto > 0; resto--) {
+            palavra &= palavra - 1;
+        }
+        return (b << BITS_BLOCO) | (p * 64 + Long.numberOfTrailingZeros(palavra));
+    }
+
+    /**
+     * Quantos índices do conjunto são menores que {@code indice}; é também a
+     * posição de {@code indice} no conjunto, se ele estiver presente.
+     */
+    public int contarAntes(int indice) {
+        if (indice <= 0) {
+            return 0;
+        }
+        int b = indice >>> BITS_BLOCO;
+        if (b >= blocos.length) {
+            return total;
+        }
+        Object bloco = blocos[b];
+        char baixo = (char) (indice & MASCARA_BLOCO);
+        if (bloco == null) {
+            return antes[b];
+        }
+        if (bloco instanceof char[]) {
+            int i = Arrays.binarySearch((char[]) bloco, 0, quantidades[b], baixo);
+            return antes[b] + (i >= 0 ? i : -i - 1);
+        }
+        long[] mapa = (long[]) bloco;
+        int contagem = antes[b];
+        int p = baixo >>> 6;
+        for (int i = 0; i < p; i++) {
+            contagem += Long.bitCount(mapa[i]);
+        }
+        return contagem + Long.bitCount(mapa[p] & ((1L << baixo) - 1));
+    }
+
+    public boolean contains(int indice) {
+        if (indice < 0 || indice > ultimo) {
+            return false;
+        }
+        Object bloco = blocos[indice >>> BITS_BLOCO];
+        char baixo = (char) (indice & MASCARA_BLOCO);
+        if (bloco == null) {
+            return false;
+        }
+        if (bloco instanceof char[]) {
+            return Arrays.binarySearch((char[]) bloco, 0, quantidades[indice >>> BITS_BLOCO], baixo) >= 0;
+        }
+        return (((long[]) bloco)[baixo >>> 6] & (1L << baixo)) != 0;
+    }
+
+    /**
+     * Posição no conjunto do índice, ou -1 se ele não estiver presente.
+     */
+    public int indexOf(int indice) {
+        return contains(indice) ? contarAntes(indice) : -1;
+    }
+
+    /**
+     * Primeiro índice do conjunto maior ou igual a {@code desde}, ou -1 se não houver.
+     */
+    public int proximo(int desde) {
+        int k = contarAntes(desde);
+        return k < total ? get(k) : -1;
+    }
+
+    /**
+     * Percorre os índices em ordem crescente, bloco a bloco, em tempo
+     * proporcional à quantidade de índices; para percorrer todos, é mais
+     * barato que chamar {@link #get(int)} para cada posição.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int bloco = -1;
+            private int posicao;       // Próxima posição no vetor, ou próxima palavra do mapa
+            private long palavra;      // Bits ainda não entregues da palavra atual do mapa
+            private int restantes = total;
+
+            @Override
+            public boolean hasNext() {
+                return restantes > 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (restantes == 0) {
+                    throw new NoSuchElementException();
+                }
+                restantes--;
+                while (true) {
+                    if (bloco >= 0 && blocos[bloco] instanceof char[]) {
+                        if (posicao < quantidades[bloco]) {
+                            return (bloco << BITS_BLOCO) | ((char[]) blocos[bloco])[posicao++];
+                        }
+                    } else if (bloco >= 0) {
+                        long[] mapa = (long[]) blocos[bloco];
+                        while (palavra == 0 && posicao < PALAVRAS_MAPA) {
+                            palavra = mapa[posicao++];
+                        }
+                        if (palavra != 0) {
+                            int bit = Long.numberOfTrailingZeros(palavra);
+                            palavra &= palavra - 1;
+                            return (bloco << BITS_BLOCO) | ((posicao - 1) * 64 + bit);
+                        }
+                    }
+                    do {
+                        bloco++;
+                    } while (quantidades[bloco] == 0);
+                    posicao = 0;
+                    palavra = 0;
+                }
+            }
+        };
+    }
+
+    /**
+     * Memória ocupada pelos blocos, sem contar os cabeçalhos dos objetos.
+     */
+    public long tamanhoEmBytes() {
+        long bytes = (long) blocos.length * (4 + 4 + 4);
+        for (Object bloco : blocos) {
+            if (bloco instanceof char[]) {
+                bytes += 2L * ((char[]) bloco).length;
+            } else if (bloco != null) {
+                bytes += 8L * PALAVRAS_MAPA;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,454 @@
+package Analizer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Armazena os tokens em vetores paralelos de tipos primitivos sobre o código
+ * original, em vez de um objeto {@link Token} por token.
+ *
+ * Cada token ocupa 13 bytes (tipo, início, comprimento e linha), mais a folga
+ * de crescimento dos vetores; em um código de 20 MB foram medidos 21 bytes por
+ * token, contra 58 bytes por token com {@code List<Token>} e os lexemas
+ * copiados. O lexema só é criado quando pedido em {@link #getLexema(int)}, e
+ * a coluna em {@link #getColuna(int)}, a partir de um índice de linhas.
+ *
+ * Os diagnósticos ficam em uma {@link DiagnosticList} à parte, com código e
+ * trecho exato no código; a sequência de tokens mantém um token ERROR para
+ * cada erro, e os avisos não entram nela.
+ *
+ * Os valores dos literais numéricos, já convertidos pelo Lexer, ficam numa
+ * tabela à parte só com os tokens NUMBER, em ordem de token; os outros
+ * tokens não pagam por ela, e ler um valor não cria o lexema.
+ */
+public class TokenBuffer implements TokenSink {
+
+    private static final TokenType[] TIPOS = TokenType.values();
+    private static final int CAPACIDADE_INICIAL = 256;
+
+    private final SourceBuffer fonte;
+    private final SymbolTable simbolos;
+    private byte[] tipos = new byte[CAPACIDADE_INICIAL];
+    private int[] inicios = new int[CAPACIDADE_INICIAL];
+    private int[] comprimentos = new int[CAPACIDADE_INICIAL];
+    private int[] linhas = new int[CAPACIDADE_INICIAL];
+    private int tamanho;
+
+    private int[] tokensNumero = new int[16];     // Índice de cada NUMBER, em ordem crescente
+    private long[] valoresNumero = new long[16];  // O inteiro, ou os bits do double se for real
+    private boolean[] numerosReais = new boolean[16];
+    private int totalNumeros;
+    private int ultimoNumero;  // Posição do último número lido, para que uma leitura em ordem não faça busca
+
+    private final DiagnosticList diagnosticos = new DiagnosticList(this);
+    private LineIndex linhasFonte;
+
+    /**
+     * @param fonte    Código fonte inteiro na memória, usado para criar os lexemas.
+     * @param simbolos Tabela onde quem preenche o buffer interna os identificadores.
+     */
+    public TokenBuffer(SourceBuffer fonte, SymbolTable simbolos) {
+        if (!fonte.isCompleto()) {
+            throw new IllegalStateException("TokenBuffer precisa do código fonte inteiro na memória");
+        }
+        this.fonte = fonte;
+        this.simbolos = simbolos;
+    }
+
+    private TokenBuffer() {
+        this.fonte = null;
+        this.simbolos = null;
+    }
+
+    /**
+     * Buffer só com tipos, posições, linhas e diagnósticos, para quem guarda
+     * o código em outro lugar, como o {@link IncrementalLexer}. Pedir um
+     * lexema, símbolo ou coluna dele lança {@link IllegalStateException}.
+     */
+    static TokenBuffer semFonte() {
+        return new TokenBuffer();
+    }
+
+    @Override
+    public void token(TokenType type, int inicio, int fim, int linha) {
+        adicionar(type, inicio, fim - inicio, linha);
+    }
+
+    @Override
+    public void numero(int inicio, int fim, int linha, long valor, boolean real) {
+        adicionarNumero(tamanho, valor, real);
+        adicionar(TokenType.NUMBER, inicio, fim - inicio, linha);
+    }
+
+    private void adicionarNumero(int token, long valor, boolean real) {
+        if (totalNumeros == tokensNumero.length) {
+            int capacidade = totalNumeros * 2;
+            tokensNumero = Arrays.copyOf(tokensNumero, capacidade);
+            valoresNumero = Arrays.copyOf(valoresNumero, capacidade);
+            numerosReais = Arrays.copyOf(numerosReais, capacidade);
+        }
+        tokensNumero[totalNumeros] = token;
+        valoresNumero[totalNumeros] = valor;
+        numerosReais[totalNumeros] = real;
+        totalNumeros++;
+    }
+
+    /**
+     * Um erro ganha um token ERROR na posição do token anterior, para que as
+     * posições do buffer continuem em ordem crescente; o trecho do erro fica
+     * no diagnóstico. Um aviso só entra na lista de diagnósticos, ligado ao
+     * próximo token.
+     */
+    @Override
+    public void diagnostico(DiagnosticCode codigo, String mensagem, int linha, int inicio, int fim) {
+        diagnosticos.adicionar(tamanho, codigo, mensagem, inicio, fim);
+        if (codigo.getSeverity() == Severity.ERROR) {
+            adicionar(TokenType.ERROR, tamanho > 0 ? inicios[tamanho - 1] : 0, 0, linha);
+        }
+    }
+
+    private void adicionar(TokenType type, int inicio, int comprimento, int linha) {
+        garantirCapacidade(tamanho + 1);
+        tipos[tamanho] = (byte) type.ordinal();
+        inicios[tamanho] = inicio;
+        comprimentos[tamanho] = comprimento;
+        linhas[tamanho] = linha;
+        tamanho++;
+    }
+
+    private void garantirCapacidade(int minimo) {
+        if (minimo > tipos.length) {
+            int capacidade = Math.max(minimo, tipos.length * 2);
+            tipos = Arrays.copyOf(tipos, capacidade);
+            inicios = Arrays.copyOf(inicios, capacidade);
+            comprimentos = Arrays.copyOf(comprimentos, capacidade);
+            linhas = Arrays.copyOf(linhas, capacidade);
+        }
+    }
+
+    /**
+     * Copia todos os tokens de outro buffer sobre o mesmo código para o fim deste.
+     */
+    public void anexar(TokenBuffer origem) {
+        anexar(origem, 0, origem.tamanho, 0, 0);
+    }
+
+    /**
+     * Copia os tokens [de, ate) de outro buffer para o fim deste, somando
+     * {@code deltaLinha} às linhas, inclusive nas mensagens de erro que citam
+     * a linha, e {@code deltaInicio} às posições.
+     */
+    void anexar(TokenBuffer origem, int de, int ate, int deltaLinha, int deltaInicio) {
+        int quantidade = ate - de;
+        garantirCapacidade(tamanho + quantidade);
+        System.arraycopy(origem.tipos, de, tipos, tamanho, quantidade);
+        System.arraycopy(origem.comprimentos, de, comprimentos, tamanho, quantidade);
+        if (deltaInicio == 0) {
+            System.arraycopy(origem.inicios, de, inicios, tamanho, quantidade);
+        } else {
+            for (int i = 0; i < quantidade; i++) {
+                inicios[tamanho + i] = origem.inicios[de + i] + deltaInicio;
+            }
+        }
+        for (int i = 0; i < quantidade; i++) {
+            linhas[tamanho + i] = origem.linhas[de + i] + deltaLinha;
+        }
+        int n = Arrays.binarySearch(origem.tokensNumero, 0, origem.totalNumeros, de);
+        for (n = n >= 0 ? n : -n - 1; n < origem.totalNumeros && origem.tokensNumero[n] < ate; n++) {
+            adicionarNumero(origem.tokensNumero[n] - de + tamanho, origem.valoresNumero[n], origem.numerosReais[n]);
+        }
+        int primeiroErro = diagnosticos.size();
+        diagnosticos.anexar(origem.diagnosticos, de, ate, tamanho, deltaLinha, deltaInicio);
+        for (int d = primeiroErro; d < diagnosticos.size(); d++) {
+            if (diagnosticos.getSeverity(d) == Severity.ERROR) {
+                int destino = diagnosticos.getTokenIndex(d);
+                inicios[destino] = destino > 0 ? inicios[destino - 1] : 0;
+            }
+        }
+        tamanho += quantidade;
+    }
+
+    /**
+     * Troca, no próprio buffer, os tokens [de, ate) por todos os de
+     * {@code novos}, que já têm posições e linhas finais, e desloca os
+     * seguintes: {@code deltaLinha} nas linhas, inclusive nas mensagens de
+     * erro que citam a linha, e {@code deltaInicio} nas posições.
+     *
+     * Não aloca nada além do crescimento dos vetores, mas ainda percorre a
+     * cauda: um arraycopy para abrir ou fechar o espaço e uma soma por token.
+     */
+    void substituir(int de, int ate, TokenBuffer novos, int deltaLinha, int deltaInicio) {
+        int quantidade = novos.tamanho;
+        int cauda = tamanho - ate;
+        int destino = de + quantidade;
+        diagnosticos.substituir(de, ate, novos.diagnosticos, deltaLinha, deltaInicio);
+        substituirNumeros(de, ate, novos);
+
+        garantirCapacidade(destino + cauda);
+        System.arraycopy(tipos, ate, tipos, destino, cauda);
+        System.arraycopy(comprimentos, ate, comprimentos, destino, cauda);
+        System.arraycopy(inicios, ate, inicios, destino, cauda);
+        System.arraycopy(linhas, ate, linhas, destino, cauda);
+        for (int i = destino; i < destino + cauda; i++) {
+            inicios[i] += deltaInicio;
+            linhas[i] += deltaLinha;
+        }
+        System.arraycopy(novos.tipos, 0, tipos, de, quantidade);
+        System.arraycopy(novos.comprimentos, 0, comprimentos, de, quantidade);
+        System.arraycopy(novos.inicios, 0, inicios, de, quantidade);
+        System.arraycopy(novos.linhas, 0, linhas, de, quantidade);
+        tamanho = destino + cauda;
+        // Os erros do começo de cada trecho copiado seguem o token que agora vem antes deles
+        corrigirErros(de);
+        corrigirErros(destino);
+        linhasFonte = null;
+    }
+
+    private void substituirNumeros(int de, int ate, TokenBuffer novos) {
+        int primeiro = primeiroNumeroAPartir(de);
+        int cauda = primeiroNumeroAPartir(ate);
+        int deltaIndice = novos.tamanho - (ate - de);
+        int novoTotal = totalNumeros - (cauda - primeiro) + novos.totalNumeros;
+        if (novoTotal > tokensNumero.length) {
+            int capacidade = Math.max(novoTotal, tokensNumero.length * 2);
+            tokensNumero = Arrays.copyOf(tokensNumero, capacidade);
+            valoresNumero = Arrays.copyOf(valoresNumero, capacidade);
+            numerosReais = Arrays.copyOf(numerosReais, capacidade);
+        }
+        int destino = primeiro + novos.totalNumeros;
+        System.arraycopy(tokensNumero, cauda, tokensNumero, destino, totalNumeros - cauda);
+        System.arraycopy(valoresNumero, cauda, valoresNumero, destino, totalNumeros - cauda);
+        System.arraycopy(numerosReais, cauda, numerosReais, destino, totalNumeros - cauda);
+        for (int n = destino; n < novoTotal; n++) {
+            tokensNumero[n] += deltaIndice;
+        }
+        for (int n = 0; n < novos.totalNumeros; n++) {
+            tokensNumero[primeiro + n] = novos.tokensNumero[n] + de;
+        }
+        System.arraycopy(novos.valoresNumero, 0, valoresNumero, primeiro, novos.totalNumeros);
+        System.arraycopy(novos.numerosReais, 0, numerosReais, primeiro, novos.totalNumeros);
+        totalNumeros = novoTotal;
+        ultimoNumero = 0;
+    }
+
+    private int primeiroNumeroAPartir(int indice) {
+        int n = Arrays.binarySearch(tokensNumero, 0, totalNumeros, indice);
+        return n >= 0 ? n : -n - 1;
+    }
+
+    private void corrigirErros(int indice) {
+        for (int i = indice; i < tamanho && tipos[i] == TokenType.ERROR.ordinal(); i++) {
+            inicios[i] = i > 0 ? inicios[i - 1] : 0;
+        }
+    }
+
+    public int size() {
+        return tamanho;
+    }
+
+    public TokenType getType(int i) {
+        return TIPOS[tipos[verificar(i)]];
+    }
+
+    /**
+     * Posição do lexema no código fonte.
+     */
+    public int getInicio(int i) {
+        return inicios[verificar(i)];
+    }
+
+    public int getComprimento(int i) {
+        return comprimentos[verificar(i)];
+    }
+
+    /**
+     * Posição logo depois do lexema; para um erro, o fim do trecho do diagnóstico.
+     */
+    public int getFim(int i) {
+        int d = getDiagnostico(i);
+        return d >= 0 ? diagnosticos.getFim(d) : inicios[i] + comprimentos[i];
+    }
+
+    /**
+     * Coluna (a partir de 1) do início do lexema; para um erro, do início do trecho do diagnóstico.
+     */
+    public int getColuna(int i) {
+        int d = getDiagnostico(i);
+        return getLineIndex().getColuna(d >= 0 ? diagnosticos.getInicio(d) : inicios[i]);
+    }
+
+    public int getLinha(int i) {
+        return linhas[verificar(i)];
+    }
+
+    /**
+     * Índice do último token com início antes de {@code posicao}, ou -1 se não houver.
+     */
+    public int ultimoAntes(int posicao) {
+        int baixo = 0;
+        int alto = tamanho - 1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (inicios[meio] < posicao) {
+                baixo = meio + 1;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return alto;
+    }
+
+    /**
+     * Indica se o NUMBER na posição {@code i} é um literal real (com ponto
+     * decimal), e não inteiro.
+     */
+    public boolean isReal(int i) {
+        return numerosReais[procurarNumero(i)];
+    }
+
+    /**
+     * Valor do NUMBER na posição {@code i}; um literal real é truncado.
+     */
+    public long getInteiro(int i) {
+        int n = procurarNumero(i);
+        return numerosReais[n] ? (long) Double.longBitsToDouble(valoresNumero[n]) : valoresNumero[n];
+    }
+
+    /**
+     * Valor do NUMBER na posição {@code i} como double.
+     */
+    public double getReal(int i) {
+        int n = procurarNumero(i);
+        return numerosReais[n] ? Double.longBitsToDouble(valoresNumero[n]) : valoresNumero[n];
+    }
+
+    private int procurarNumero(int i) {
+        if (getType(i) != TokenType.NUMBER) {
+            throw new IllegalArgumentException("Token " + i + " não é um número: " + getType(i));
+        }
+        // O mesmo número ou o seguinte ao último lido; a dica é sempre conferida,
+        // então uma leitura concorrente que a mude só leva à busca binária
+        int n = ultimoNumero;
+        if (!numeroEm(n, i) && !numeroEm(++n, i)) {
+            n = Arrays.binarySearch(tokensNumero, 0, totalNumeros, i);
+            if (n < 0) {
+                throw new IllegalStateException("Número " + i + " recebido sem o valor convertido");
+            }
+        }
+        ultimoNumero = n;
+        return n;
+    }
+
+    private boolean numeroEm(int n, int i) {
+        return n < totalNumeros && tokensNumero[n] == i;
+    }
+
+    /**
+     * Cria o lexema do token; para tokens ERROR, devolve a mensagem de erro.
+     */
+    public String getLexema(int i) {
+        TokenType type = getType(i);
+        if (type == TokenType.ERROR) {
+            return diagnosticos.getMensagem(diagnosticos.procurarToken(i));
+        }
+        if (type == TokenType.IDENTIFIER) {
+            int simbolo = getSimbolo(i);
+            if (simbolo >= 0) {
+                return getSymbolTable().nome(simbolo);
+            }
+        }
+        String fixo = Lexer.lexemaFixo(type);
+        if (fixo != null) {
+            return fixo;
+        }
+        return fonte().substring(inicios[i], inicios[i] + comprimentos[i]);
+    }
+
+    /**
+     * Id na tabela de símbolos do identificador na posição {@code i}, ou -1 se
+     * não for um identificador ou se quem preencheu o buffer não o internou.
+     * Só consulta a tabela, que continua sendo alterada apenas pelo Lexer.
+     */
+    public int getSimbolo(int i) {
+        if (getType(i) != TokenType.IDENTIFIER) {
+            return -1;
+        }
+        return getSymbolTable().lookup(fonte(), inicios[i], inicios[i] + comprimentos[i]);
+    }
+
+    public SymbolTable getSymbolTable() {
+        fonte(); // Sem o código também não há tabela
+        return simbolos;
+    }
+
+    public DiagnosticList getDiagnostics() {
+        return diagnosticos;
+    }
+
+    /**
+     * Índice em {@link #getDiagnostics()} do erro na posição {@code i}, ou -1 se o token não for um erro.
+     */
+    public int getDiagnostico(int i) {
+        return getType(i) == TokenType.ERROR ? diagnosticos.procurarToken(i) : -1;
+    }
+
+    /**
+     * Índice das linhas do código, criado no primeiro uso.
+     */
+    public LineIndex getLineIndex() {
+        if (linhasFonte == null) {
+            linhasFonte = LineIndex.of(fonte());
+        }
+        return linhasFonte;
+    }
+
+    private SourceBuffer fonte() {
+        if (fonte == null) {
+            throw new IllegalStateException("Buffer sem código fonte: só tem tipos e posições");
+        }
+        return fonte;
+    }
+
+    public Token get(int i) {
+        int d = getDiagnostico(i);
+        int inicio = d >= 0 ? diagnosticos.getInicio(d) : inicios[i];
+        int fim = d >= 0 ? diagnosticos.getFim(d) : inicios[i] + comprimentos[i];
+        return new Token(getType(i), getLexema(i), linhas[i], inicio, fim);
+    }
+
+    /**
+     * Visão somente leitura como {@code List<Token>}, criando cada Token só quando acessado.
+     */
+    public List<Token> asList() {
+        return new TokenList();
+    }
+
+    /**
+     * Memória ocupada pelos vetores do buffer, sem contar o código fonte.
+     */
+    public long tamanhoEmBytes() {
+        return (long) tipos.length * (1 + 4 + 4 + 4) + (long) tokensNumero.length * (4 + 8 + 1)
+                + diagnosticos.tamanhoEmBytes();
+    }
+
+    private int verificar(int i) {
+        if (i < 0 || i >= tamanho) {
+            throw new IndexOutOfBoundsException("Índice " + i + " fora do intervalo 0.." + tamanho);
+        }
+        return i;
+    }
+
+    private final class TokenList extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            return TokenBuffer.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return tamanho;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package Analizer;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+
+/**
+ * Cache em disco dos tokens de códigos já analisados, indexado pelo hash
+ * SHA-256 do conteúdo, da versão do formato e do motor de análise.
+ *
+ * Cada entrada é um arquivo com os tokens em varints (tipo, distância ao
+ * início do token anterior, comprimento e diferença de linha; um NUMBER
+ * leva ainda o valor convertido, em 8 bytes, e se é real). Os avisos, que
+ * não têm token, vêm como registros à parte logo antes do token a que se
+ * referem. O arquivo é mapeado em memória e decodificado numa única
+ * passada para os vetores de um {@link TokenBuffer}, sem cópia intermediária.
+ * A leitura não é zero-copy: os varints não permitem acesso direto ao token
+ * i, e o TokenBuffer, que o resto do analisador usa, guarda os tokens em
+ * vetores próprios. O diretório pode
+ * ser compartilhado por vários processos: cada entrada é escrita em um
+ * arquivo temporário e movida atomicamente para o nome final, então ninguém
+ * lê uma entrada pela metade. O cabeçalho guarda um CRC-32C do resto do
+ * arquivo, e entradas ilegíveis ou com o CRC errado contam como falta.
+ *
+ * O tamanho total é limitado por remoção LRU: um acerto atualiza a data de
+ * modificação da entrada, e quando o limite é ultrapassado as entradas mais
+ * antigas são removidas, por uma thread e um processo de cada vez.
+ */
+public final class TokenCache {
+
+    /**
+     * Versão do formato e do resultado do Lexer. Deve mudar sempre que os
+     * tokens produzidos mudarem, para que entradas antigas deixem de valer.
+     */
+    static final int VERSAO = 5;
+
+    private static final int MAGICO = 0x4C584331; // "LXC1"
+    private static final String EXTENSAO = ".tok";
+    private static final String ARQUIVO_TRAVA = "remocao.lock";
+    private static final byte AVISO = -1;  // No lugar do tipo, marca um registro de aviso
+    private static final int CABECALHO = 16; // Mágico, versão, tamanho do código e CRC
+
+    // A trava em arquivo vale para o processo inteiro, e pedi-la de novo na mesma JVM lança
+    // OverlappingFileLockException; por isso só uma thread por vez tenta a remoção
+    private static final AtomicBoolean REMOVENDO = new AtomicBoolean();
+
+    private final Path diretorio;
+    private final long tamanhoMaximo;
+    private final AtomicLong tamanhoEstimado = new AtomicLong();
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong faltas = new AtomicLong();
+    private final AtomicLong remocoes = new AtomicLong();
+
+    /**
+     * @param diretorio     Diretório das entradas; é criado se não existir.
+     * @param tamanhoMaximo Tamanho total aproximado permitido, em bytes.
+     * @throws IOException Se o diretório não puder ser criado ou lido.
+     */
+    public TokenCache(Path diretorio, long tamanhoMaximo) throws IOException {
+        this.diretorio = Files.createDirectories(diretorio);
+        this.tamanhoMaximo = tamanhoMaximo;
+        long total = 0;
+        for (Entrada entrada : listarEntradas()) {
+            total += entrada.tamanho;
+        }
+        tamanhoEstimado.set(total);
+    }
+
+    /**
+     * Tokens do código, do cache quando possível; senão analisa com o
+     * {@link Lexer} e guarda o resultado.
+     */
+    public TokenBuffer analisar(String codigo) {
+        return analisar(codigo, LexerFactory.Engine.SWITCH);
+    }
+
+    public TokenBuffer analisar(String codigo, LexerFactory.Engine engine) {
+        SourceBuffer fonte = SourceBuffer.of(codigo);
+        Path arquivo = diretorio.resolve(chave(codigo, engine) + EXTENSAO);
+
+        TokenBuffer tokens = ler(arquivo, fonte, codigo.length());
+        if (tokens != null) {
+            acertos.incrementAndGet();
+            try {
+                Files.setLastModifiedTime(arquivo, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException e) {
+                // Outro processo pode ter removido a entrada; o resultado já foi lido
+            }
+            return tokens;
+        }
+
+        faltas.incrementAndGet();
+        tokens = LexerFactory.create(fonte, engine).analisarCompacto();
+        try {
+            escrever(arquivo, tokens, codigo.length());
+        } catch (IOException e) {
+            // Sem espaço ou sem permissão: o cache é só uma otimização
+        }
+        return tokens;
+    }
+
+    public long getHits() {
+        return acertos.get();
+    }
+
+    public long getMisses() {
+        return faltas.get();
+    }
+
+    public long getEvictions() {
+        return remocoes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TokenCache{acertos=" + acertos + ", faltas=" + faltas + ", remoções=" + remocoes + "}";
+    }
+
+    private static String chave(String codigo, LexerFactory.Engine engine) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+        digest.update(("v" + VERSAO + ":" + engine.name() + ":").getBytes(StandardCharsets.UTF_8));
+        byte[] bloco = new byte[16384];
+        for (int i = 0; i < codigo.length(); ) {
+            int n = 0;
+            for (; n < bloco.length && i < codigo.length(); i++) {
+                char c = codigo.charAt(i);
+                bloco[n++] = (byte) (c >>> 8);
+                bloco[n++] = (byte) c;
+            }
+            digest.update(bloco, 0, n);
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Lê a entrada mapeando o arquivo, ou devolve {@code null} se ela não existir ou estiver corrompida.
+     */
+    private static TokenBuffer ler(Path arquivo, SourceBuffer fonte, int tamanhoCodigo) {
+        MappedByteBuffer dados;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            dados = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        } catch (IOException e) {
+            return null; // Inexistente ou removida por outro processo
+        }
+        try {
+            if (dados.getInt() != MAGICO || dados.getInt() != VERSAO || dados.getInt() != tamanhoCodigo
+                    || dados.getInt() != crc(dados)) {
+                return null;
+            }
+            int total = lerVarint(dados);
+            SymbolTable simbolos = new SymbolTable();
+            TokenBuffer tokens = new TokenBuffer(fonte, simbolos);
+            TokenType[] tipos = TokenType.values();
+            DiagnosticCode[] codigos = DiagnosticCode.values();
+            int inicio = 0;
+            int linha = 0;
+            while (tokens.size() < total) {
+                byte marca = dados.get();
+                if (marca == AVISO) {
+                    DiagnosticCode codigo = codigos[dados.get()];
+                    int inicioAviso = lerVarint(dados);
+                    int fimAviso = inicioAviso + lerVarint(dados);
+                    byte[] mensagem = new byte[lerVarint(dados)];
+                    dados.get(mensagem);
+                    if (codigo.getSeverity() == Severity.ERROR) {
+                        return null; // Um erro viraria token a mais
+                    }
+                    tokens.diagnostico(codigo, new String(mensagem, StandardCharsets.UTF_8), linha, inicioAviso,
+                            fimAviso);
+                    continue;
+                }
+                TokenType tipo = tipos[marca];
+                linha += decodificarZigZag(lerVarint(dados));
+                if (tipo == TokenType.ERROR) {
+                    DiagnosticCode codigo = codigos[dados.get()];
+                    int inicioErro = lerVarint(dados);
+                    int fimErro = inicioErro + lerVarint(dados);
+                    byte[] mensagem = new byte[lerVarint(dados)];
+                    dados.get(mensagem);
+                    tokens.diagnostico(codigo, new String(mensagem, StandardCharsets.UTF_8), linha, inicioErro, fimErro);
+                } else {
+                    inicio += lerVarint(dados);
+                    int fim = inicio + lerVarint(dados);
+                    if (tipo == TokenType.NUMBER) {
+                        boolean real = dados.get() != 0;
+                        tokens.numero(inicio, fim, linha, dados.getLong(), real);
+                    } else {
+                        if (tipo == TokenType.IDENTIFIER) {
+                            simbolos.intern(fonte, inicio, fim);
+                        }
+                        tokens.token(tipo, inicio, fim, linha);
+                    }
+                }
+            }
+            return dados.hasRemaining() ? null : tokens;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            return null; // Entrada corrompida
+        }
+    }
+
+    private void escrever(Path arquivo, TokenBuffer tokens, int tamanhoCodigo) throws IOException {
+        ByteBuffer dados = ByteBuffer.allocate(CABECALHO + tokens.size() * 6);
+        dados.putInt(MAGICO).putInt(VERSAO).putInt(tamanhoCodigo).putInt(0);
+        dados = escreverVarint(dados, tokens.size());
+        DiagnosticList diagnosticos = tokens.getDiagnostics();
+        int d = 0;
+        int inicio = 0;
+        int linha = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            for (; d < diagnosticos.size() && diagnosticos.getTokenIndex(d) == i; d++) {
+                if (diagnosticos.getSeverity(d) != Severity.ERROR) {
+                    dados = escreverDiagnostico(dados, true, diagnosticos, d);
+                }
+            }
+            TokenType tipo = tokens.getType(i);
+            dados = garantir(dados, 1);
+            dados.put((byte) tipo.ordinal());
+            dados = escreverVarint(dados, codificarZigZag(tokens.getLinha(i) - linha));
+            linha = tokens.getLinha(i);
+            if (tipo == TokenType.ERROR) {
+                dados = escreverDiagnostico(dados, false, diagnosticos, tokens.getDiagnostico(i));
+            } else {
+                dados = escreverVarint(dados, tokens.getInicio(i) - inicio);
+                dados = escreverVarint(dados, tokens.getComprimento(i));
+                inicio = tokens.getInicio(i);
+                if (tipo == TokenType.NUMBER) {
+                    boolean real = tokens.isReal(i);
+                    dados = garantir(dados, 9);
+                    dados.put((byte) (real ? 1 : 0));
+                    dados.putLong(real ? Double.doubleToRawLongBits(tokens.getReal(i)) : tokens.getInteiro(i));
+                }
+            }
+        }
+        dados.flip();
+        dados.putInt(CABECALHO - 4, crc(dados.position(CABECALHO)));
+        dados.rewind();
+
+        Path temporario = Files.createTempFile(diretorio, arquivo.getFileName().toString(), ".tmp");
+        long anterior; // Uma entrada corrompida, ou escrita ao mesmo tempo por outro processo, é substituída
+        try {
+            anterior = Files.size(arquivo);
+        } catch (NoSuchFileException e) {
+            anterior = 0;
+        }
+        try {
+            try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE)) {
+                while (dados.hasRemaining()) {
+                    canal.write(dados);
+                }
+            }
+            Files.move(temporario, arquivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+
+        if (tamanhoEstimado.addAndGet(Files.size(arquivo) - anterior) > tamanhoMaximo) {
+            removerAntigas();
+        }
+    }
+
+    /**
+     * Remove as entradas usadas há mais tempo até o cache caber no limite.
+     * Uma thread por vez no processo, e a trava em arquivo impede que dois
+     * processos façam isso ao mesmo tempo; quem não consegue a vez deixa a
+     * remoção para o outro.
+     */
+    private void removerAntigas() throws IOException {
+        if (!REMOVENDO.compareAndSet(false, true)) {
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(diretorio.resolve(ARQUIVO_TRAVA),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock trava = canal.tryLock()) {
+            if (trava == null) {
+                return;
+            }
+            List<Entrada> entradas = listarEntradas();
+            entradas.sort((a, b) -> Long.compare(a.usada, b.usada));
+            long total = 0;
+            for (Entrada entrada : entradas) {
+                total += entrada.tamanho;
+            }
+            for (int i = 0; i < entradas.size() && total > tamanhoMaximo; i++) {
+                Entrada entrada = entradas.get(i);
+                try {
+                    if (Files.deleteIfExists(entrada.arquivo)) {
+                        remocoes.incrementAndGet();
+                    }
+                    total -= entrada.tamanho;
+                } catch (IOException e) {
+                    // Ainda aberta por outro processo (no Windows); fica para a próxima vez
+                }
+            }
+            tamanhoEstimado.set(total);
+        } catch (OverlappingFileLockException e) {
+            // Outro código deste processo está com a trava do arquivo; a remoção fica para depois
+        } finally {
+            REMOVENDO.set(false);
+        }
+    }
+
+    private List<Entrada> listarEntradas() throws IOException {
+        List<Entrada> entradas = new ArrayList<>();
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "*" + EXTENSAO)) {
+            for (Path arquivo : arquivos) {
+                try {
+                    entradas.add(new Entrada(arquivo, Files.size(arquivo),
+                            Files.getLastModifiedTime(arquivo).toMillis()));
+                } catch (NoSuchFileException e) {
+                    // Removida por outro processo durante a listagem
+                }
+            }
+        }
+        return entradas;
+    }
+
+    /**
+     * Código, trecho e mensagem do diagnóstico; um aviso vem precedido da marca {@link #AVISO}.
+     */
+    private static ByteBuffer escreverDiagnostico(ByteBuffer dados, boolean aviso, DiagnosticList diagnosticos,
+                                                  int d) {
+        byte[] mensagem = diagnosticos.getMensagem(d).getBytes(StandardCharsets.UTF_8);
+        dados = garantir(dados, 2);
+        if (aviso) {
+            dados.put(AVISO);
+        }
+        dados.put((byte) diagnosticos.getCode(d).ordinal());
+        dados = escreverVarint(dados, diagnosticos.getInicio(d));
+        dados = escreverVarint(dados, diagnosticos.getFim(d) - diagnosticos.getInicio(d));
+        dados = escreverVarint(dados, mensagem.length);
+        dados = garantir(dados, mensagem.length);
+        return dados.put(mensagem);
+    }
+
+    // CRC-32C do que resta no buffer, sem mudar sua posição
+    private static int crc(ByteBuffer dados) {
+        CRC32C crc = new CRC32C();
+        crc.update(dados.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer garantir(ByteBuffer dados, int bytes) {
+        if (dados.remaining() >= bytes) {
+            return dados;
+        }
+        ByteBuffer maior = ByteBuffer.allocate(Math.max(dados.capacity() * 2, dados.position() + bytes));
+        dados.flip();
+        return maior.put(dados);
+    }
+
+    private static ByteBuffer escreverVarint(ByteBuffer dados, int valor) {
+        dados = garantir(dados, 5);
+        while ((valor & ~0x7F) != 0) {
+            dados.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        return dados.put((byte) valor);
+    }
+
+    private static int lerVarint(ByteBuffer dados) {
+        int valor = 0;
+        for (int deslocamento = 0; deslocamento < 35; deslocamento += 7) {
+            byte b = dados.get();
+            valor |= (b & 0x7F) << deslocamento;
+            if (b >= 0) {
+                return valor;
+            }
+        }
+        throw new IndexOutOfBoundsException("Varint inválido");
+    }
+
+    private static int codificarZigZag(int valor) {
+        return (valor << 1) ^ (valor >> 31);
+    }
+
+    private static int decodificarZigZag(int valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+
+    private static final class Entrada {
+        final Path arquivo;
+        final long tamanho;
+        final long usada;
+
+        Entrada(Path arquivo, long tamanho, long usada) {
+            this.arquivo = arquivo;
+            this.tamanho = tamanho;
+            this.usada = usada;
+        }
+    }
+}
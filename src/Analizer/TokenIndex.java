@@ -0,0 +1,118 @@
+package Analizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Índice de um {@link TokenBuffer} para filtrar e navegar sem percorrer os
+ * tokens: um {@link TokenBitmap} por {@link TokenType} e, por linha, o
+ * primeiro token dela.
+ *
+ * O índice acompanha um buffer que cresce: {@link #atualizar()} indexa só os
+ * tokens acrescentados desde a última chamada, então pode ser mantido junto
+ * com a análise em lotes. Contar os tokens de um tipo custa O(1), e filtrar
+ * por um tipo devolve o próprio conjunto do índice.
+ */
+public final class TokenIndex {
+
+    private static final TokenType[] TIPOS = TokenType.values();
+
+    private final TokenBuffer tokens;
+    private final TokenBitmap[] porTipo = new TokenBitmap[TIPOS.length];
+    private int[] primeiroDaLinha = new int[64]; // Por linha (a partir de 1): primeiro token numa linha >= ela
+    private int linhas;
+    private int indexados;
+
+    private TokenIndex(TokenBuffer tokens) {
+        this.tokens = tokens;
+        for (int t = 0; t < porTipo.length; t++) {
+            porTipo[t] = new TokenBitmap();
+        }
+    }
+
+    /**
+     * Indexa todos os tokens já presentes no buffer.
+     */
+    public static TokenIndex of(TokenBuffer tokens) {
+        TokenIndex indice = new TokenIndex(tokens);
+        indice.atualizar();
+        return indice;
+    }
+
+    /**
+     * Indexa os tokens acrescentados ao buffer desde a última atualização.
+     */
+    public void atualizar() {
+        int tamanho = tokens.size();
+        for (int i = indexados; i < tamanho; i++) {
+            porTipo[tokens.getType(i).ordinal()].adicionar(i);
+            int linha = tokens.getLinha(i);
+            if (linha > linhas) {
+                if (linha > primeiroDaLinha.length) {
+                    primeiroDaLinha = Arrays.copyOf(primeiroDaLinha, Math.max(linha, primeiroDaLinha.length * 2));
+                }
+                while (linhas < linha) {
+                    primeiroDaLinha[linhas++] = i;
+                }
+            }
+        }
+        indexados = tamanho;
+    }
+
+    public TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Quantidade de tokens do tipo.
+     */
+    public int contar(TokenType tipo) {
+        return porTipo[tipo.ordinal()].size();
+    }
+
+    /**
+     * Índices dos tokens do tipo. O conjunto continua crescendo a cada {@link #atualizar()}.
+     */
+    public TokenBitmap get(TokenType tipo) {
+        return porTipo[tipo.ordinal()];
+    }
+
+    /**
+     * Índices dos tokens de qualquer um dos tipos, em ordem. Com mais de um
+     * tipo, é uma união feita agora, que não acompanha as próximas atualizações.
+     */
+    public TokenBitmap filtrar(Set<TokenType> tipos) {
+        if (tipos.size() == 1) {
+            return get(tipos.iterator().next());
+        }
+        List<TokenBitmap> conjuntos = new ArrayList<>(tipos.size());
+        for (TokenType tipo : tipos) {
+            conjuntos.add(get(tipo));
+        }
+        return TokenBitmap.unir(conjuntos);
+    }
+
+    /**
+     * Primeiro token da linha, ou do primeiro token depois dela se a linha
+     * não tem tokens; -1 se não há tokens a partir da linha.
+     */
+    public int getPrimeiroDaLinha(int linha) {
+        if (linha > linhas) {
+            return -1;
+        }
+        return primeiroDaLinha[Math.max(linha, 1) - 1];
+    }
+
+    /**
+     * Memória ocupada pelos conjuntos e pela tabela de linhas.
+     */
+    public long tamanhoEmBytes() {
+        long bytes = 4L * primeiroDaLinha.length;
+        for (TokenBitmap conjunto : porTipo) {
+            bytes += conjunto.tamanhoEmBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,30 @@
+package Analizer;
+
+/**
+ * Destino dos tokens produzidos pelo {@link Lexer}, na ordem em que são reconhecidos.
+ */
+public interface TokenSink {
+
+    /**
+     * Recebe um token cujo lexema ocupa [inicio, fim) no código fonte.
+     */
+    void token(TokenType type, int inicio, int fim, int linha);
+
+    /**
+     * Recebe um literal numérico já convertido durante a análise: {@code valor}
+     * é o próprio inteiro ou, se {@code real}, os bits do double
+     * ({@link Double#doubleToRawLongBits}). Por padrão é entregue como um
+     * token NUMBER comum.
+     */
+    default void numero(int inicio, int fim, int linha, long valor, boolean real) {
+        token(TokenType.NUMBER, inicio, fim, linha);
+    }
+
+    /**
+     * Recebe um diagnóstico. A {@code linha} é a citada na mensagem; o trecho
+     * [inicio, fim) é a parte do código a que ele se refere. Os de gravidade
+     * {@link Severity#ERROR} são erros léxicos; os demais são avisos sobre o
+     * token entregue em seguida, que continua válido.
+     */
+    void diagnostico(DiagnosticCode codigo, String mensagem, int linha, int inicio, int fim);
+}
@@ -5,6 +5,6 @@ public enum TokenType {
     PLUS, MINUS, MULTIPLY, DIVIDE, EQUAL,
     LPAREN, RPAREN, LBRACE, RBRACE, SEMICOLON, COLON, ASSIGN, COMMA,
     LESS_THAN, GREATER_THAN, PERIOD, NUMBER, IDENTIFIER, EOF,
-    LESS_THAN_OR_EQUAL, GREATER_THAN_OR_EQUAL, STRING_LITERAL,STRING,ERROR, REAL, WHITESPACE, COMMENT, 
-   
+    LESS_THAN_OR_EQUAL, GREATER_THAN_OR_EQUAL, STRING_LITERAL,STRING,ERROR, REAL, WHITESPACE, COMMENT,
+    NOTICE, // Aviso ou informação do Lexer nos tokens em lista; o lexema é a mensagem
 }
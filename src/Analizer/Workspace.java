@@ -0,0 +1,564 @@
+package Analizer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Documentos abertos de um projeto, analisados em segundo plano por um
+ * {@link ForkJoinPool} (com roubo de trabalho entre as threads) na ordem das
+ * prioridades: primeiro o documento visível no editor, depois os editados
+ * há pouco e por último a indexação dos demais.
+ *
+ * As análises esperam em uma fila por prioridade, e cada tarefa do pool tira
+ * a mais urgente quando começa, não a que a criou; assim uma edição no
+ * editor passa na frente de tudo o que já estava na fila.
+ * <ul>
+ * <li>Edições seguidas do mesmo documento se juntam: enquanto a análise dele
+ * espera, novas edições só trocam o texto, e ela usa o mais recente. Uma
+ * análise em andamento que fica desatualizada para no próximo lote e volta
+ * para a fila.</li>
+ * <li>Análises em segundo plano são feitas em lotes de tokens; entre um lote
+ * e outro, cedem a vez quando há documento visível ou editado esperando, e
+ * depois continuam de onde pararam.</li>
+ * <li>Os tokens guardados de todos os documentos, inclusive os das análises
+ * interrompidas entre dois lotes, ocupam no máximo {@code limiteBytes},
+ * medidos por {@link TokenBuffer#tamanhoEmBytes()}. Acima disso, primeiro
+ * são descartadas as análises interrompidas, que recomeçam do início quando
+ * saírem da fila; depois os resultados usados há mais tempo (LRU), menos o
+ * do documento visível. Um documento descartado é analisado de novo quando
+ * alguém pede os tokens dele.</li>
+ * </ul>
+ *
+ * O tamanho das filas e a latência da edição ao resultado ficam em
+ * {@link #getMetricas()}. Seguro para várias threads.
+ */
+public final class Workspace implements Closeable {
+
+    /**
+     * Prioridades das análises, da mais urgente para a menos.
+     */
+    public enum Priority {
+        /** O documento aberto no editor. */
+        VISIBLE,
+        /** Documentos editados, ou cujos tokens alguém está esperando. */
+        RECENT,
+        /** Documentos só abertos, analisados para indexação. */
+        BACKGROUND
+    }
+
+    private static final Priority[] PRIORIDADES = Priority.values();
+    private static final int TAMANHO_LOTE = 16384;
+
+    private enum Estado { OCIOSO, PENDENTE, EXECUTANDO, FECHADO }
+
+    private static final class Documento {
+        final String nome;
+        volatile long versao;            // Lida sem o monitor pela análise em andamento
+        // Guardados pelo monitor do documento
+        String texto = "";
+        Estado estado = Estado.OCIOSO;
+        Priority prioridade;              // Da análise pendente ou em andamento
+        long editadoEm;                   // nanoTime da primeira edição ainda sem resultado; 0 se não há
+        CompletableFuture<TokenBuffer> futuro;
+        TokenBuffer tokens;               // Último resultado, ou null se ainda não há ou foi descartado
+        Lexer lexerParcial;               // Análise em segundo plano interrompida entre dois lotes
+        TokenBuffer parcial;
+        long versaoParcial;
+        // Guardados pelo LRU
+        long tamanhoGuardado;
+        long tamanhoParcial;
+
+        Documento(String nome) {
+            this.nome = nome;
+        }
+    }
+
+    private final LexerFactory.Engine engine;
+    private final long limiteBytes;
+    private final LexerMetrics metricasLexer;
+    private final ForkJoinPool pool;
+    private final Map<String, Documento> documentos = new ConcurrentHashMap<>();
+    private final List<ConcurrentLinkedDeque<Documento>> filas = new ArrayList<>();
+    private final LinkedHashMap<Documento, Boolean> usados = new LinkedHashMap<>(16, 0.75f, true); // LRU
+    private final Set<Documento> parciais = new LinkedHashSet<>();  // Guardado por usados; mais antigo primeiro
+    private long bytesEmUso;              // Guardado por usados
+    private final WorkspaceStats metricas = new WorkspaceStats();
+    private volatile Documento visivel;
+
+    /**
+     * @param limiteBytes Memória máxima dos tokens guardados, somando todos os documentos.
+     */
+    public Workspace(long limiteBytes) {
+        this(Runtime.getRuntime().availableProcessors(), limiteBytes, LexerFactory.Engine.SWITCH, LexerMetrics.NOOP);
+    }
+
+    /**
+     * @param threads       Threads do pool de análise.
+     * @param limiteBytes   Memória máxima dos tokens guardados, somando todos os documentos.
+     * @param engine        Motor de análise.
+     * @param metricasLexer Métricas entregues por cada Lexer, como as de {@link LexerStats}.
+     */
+    public Workspace(int threads, long limiteBytes, LexerFactory.Engine engine, LexerMetrics metricasLexer) {
+        this.engine = engine;
+        this.limiteBytes = limiteBytes;
+        this.metricasLexer = metricasLexer;
+        // Modo assíncrono: as tarefas não se dividem, então a fila de cada thread é FIFO
+        this.pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        for (int p = 0; p < PRIORIDADES.length; p++) {
+            filas.add(new ConcurrentLinkedDeque<>());
+        }
+    }
+
+    /**
+     * Abre o documento, ou troca o texto de um já aberto, e agenda a análise
+     * em segundo plano (ou como visível, se for o documento do editor).
+     */
+    public void abrir(String nome, String codigo) {
+        Documento doc = documentos.computeIfAbsent(nome, k -> {
+            metricas.documentos(1);
+            return new Documento(k);
+        });
+        alterar(doc, codigo, Priority.BACKGROUND);
+    }
+
+    /**
+     * Troca todo o texto do documento.
+     */
+    public void atualizar(String nome, String codigo) {
+        alterar(documento(nome), codigo, Priority.RECENT);
+    }
+
+    /**
+     * Troca {@code removidos} caracteres a partir de {@code offset} por {@code inserido}.
+     */
+    public void editar(String nome, int offset, int removidos, String inserido) {
+        Documento doc = documento(nome);
+        String texto;
+        synchronized (doc) {
+            texto = doc.texto;
+            if (offset < 0 || removidos < 0 || offset + removidos > texto.length()) {
+                throw new IndexOutOfBoundsException("Edição fora do documento: " + offset + "+" + removidos);
+            }
+            alterar(doc, texto.substring(0, offset) + inserido + texto.substring(offset + removidos),
+                    Priority.RECENT);
+        }
+    }
+
+    private void alterar(Documento doc, String codigo, Priority prioridade) {
+        boolean executar;
+        synchronized (doc) {
+            if (doc.estado == Estado.FECHADO) {
+                throw new IllegalStateException("Documento fechado: " + doc.nome);
+            }
+            doc.texto = codigo;
+            doc.versao++;
+            if (doc.estado != Estado.OCIOSO) {
+                metricas.edicaoJuntada();
+                if (doc.editadoEm == 0) {
+                    doc.editadoEm = System.nanoTime();
+                }
+            }
+            executar = agendar(doc, prioridade, false);
+        }
+        if (executar) {
+            executar();
+        }
+    }
+
+    /**
+     * Garante, com o monitor do documento, uma análise da versão atual com
+     * pelo menos a prioridade informada.
+     *
+     * @return Se uma tarefa deve ser entregue ao pool para ela.
+     */
+    private boolean agendar(Documento doc, Priority prioridade, boolean naFrente) {
+        if (doc == visivel) {
+            prioridade = Priority.VISIBLE;
+        }
+        switch (doc.estado) {
+            case OCIOSO:
+                doc.estado = Estado.PENDENTE;
+                doc.prioridade = prioridade;
+                if (doc.editadoEm == 0) {
+                    doc.editadoEm = System.nanoTime();
+                }
+                metricas.entrouNaFila(prioridade);
+                if (naFrente) {
+                    filas.get(prioridade.ordinal()).addFirst(doc);
+                } else {
+                    filas.get(prioridade.ordinal()).addLast(doc);
+                }
+                return true;
+            case PENDENTE:
+                if (prioridade.compareTo(doc.prioridade) >= 0) {
+                    return false;
+                }
+                // A entrada na fila antiga fica para trás e é ignorada quando sair
+                metricas.saiuDaFila(doc.prioridade);
+                metricas.entrouNaFila(prioridade);
+                doc.prioridade = prioridade;
+                filas.get(prioridade.ordinal()).addLast(doc);
+                return true;
+            case EXECUTANDO:
+                // Vale quando a análise em andamento voltar para a fila
+                if (prioridade.compareTo(doc.prioridade) < 0) {
+                    doc.prioridade = prioridade;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    // Cada análise agendada ganha uma tarefa, que pega a mais urgente da fila quando começar
+    private void executar() {
+        try {
+            pool.execute(this::analisarProxima);
+        } catch (RejectedExecutionException e) {
+            // Workspace fechado
+        }
+    }
+
+    private void analisarProxima() {
+        for (Priority prioridade : PRIORIDADES) {
+            Documento doc;
+            while ((doc = filas.get(prioridade.ordinal()).poll()) != null) {
+                if (analisar(doc, prioridade)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Analisa o documento tirado da fila da prioridade, se a entrada ainda
+     * valer; senão devolve {@code false} para que outra seja tirada.
+     */
+    private boolean analisar(Documento doc, Priority prioridade) {
+        long versao;
+        long editadoEm;
+        Lexer lexer;
+        TokenBuffer tokens;
+        boolean tinhaParcial;
+        synchronized (doc) {
+            if (doc.estado != Estado.PENDENTE || doc.prioridade != prioridade) {
+                return false;
+            }
+            doc.estado = Estado.EXECUTANDO;
+            metricas.saiuDaFila(prioridade);
+            versao = doc.versao;
+            editadoEm = doc.editadoEm;
+            doc.editadoEm = 0;
+            if (doc.lexerParcial != null && doc.versaoParcial == versao) {
+                lexer = doc.lexerParcial;
+                tokens = doc.parcial;
+            } else {
+                SourceBuffer fonte = SourceBuffer.of(doc.texto);
+                lexer = LexerFactory.create(fonte, engine);
+                lexer.setMetricas(metricasLexer);
+                tokens = new TokenBuffer(fonte, lexer.getSymbolTable());
+            }
+            tinhaParcial = doc.parcial != null;
+            doc.lexerParcial = null;
+            doc.parcial = null;
+        }
+        if (tinhaParcial) {
+            contarParcial(doc);
+        }
+
+        boolean continuar;
+        try {
+            do {
+                continuar = lexer.analisarLote(tokens, TAMANHO_LOTE);
+            } while (continuar && doc.versao == versao && !(prioridade == Priority.BACKGROUND && haUrgente()));
+        } catch (RuntimeException e) {
+            CompletableFuture<TokenBuffer> futuro;
+            synchronized (doc) {
+                if (doc.estado == Estado.EXECUTANDO) {
+                    doc.estado = Estado.OCIOSO;
+                }
+                futuro = doc.futuro;
+                doc.futuro = null;
+            }
+            if (futuro != null) {
+                futuro.completeExceptionally(e);
+            }
+            return true;
+        }
+
+        boolean executar = false;
+        boolean interrompido = false;
+        CompletableFuture<TokenBuffer> futuro = null;
+        synchronized (doc) {
+            if (doc.estado == Estado.FECHADO) {
+                return true;
+            }
+            doc.estado = Estado.OCIOSO;
+            if (doc.versao != versao) {
+                metricas.analiseDescartada();
+                executar = agendar(doc, doc.prioridade, false);
+                doc.editadoEm = editadoEm; // A edição mais antiga continua sem resultado
+            } else if (continuar) {
+                metricas.cedencia();
+                doc.lexerParcial = lexer;
+                doc.parcial = tokens;
+                doc.versaoParcial = versao;
+                interrompido = true;
+                executar = agendar(doc, doc.prioridade, true);
+                doc.editadoEm = editadoEm;
+            } else {
+                doc.tokens = tokens;
+                futuro = doc.futuro;
+                doc.futuro = null;
+                metricas.analiseConcluida(prioridade, System.nanoTime() - editadoEm);
+            }
+        }
+        if (interrompido) {
+            contarParcial(doc);
+        }
+        if (executar) {
+            executar();
+        }
+        if (futuro != null || !continuar) {
+            guardar(doc, tokens);
+        }
+        if (futuro != null) {
+            futuro.complete(tokens);
+        }
+        return true;
+    }
+
+    private boolean haUrgente() {
+        return metricas.getFila(Priority.VISIBLE) + metricas.getFila(Priority.RECENT) > 0;
+    }
+
+    /**
+     * Registra o resultado no LRU e descarta os usados há mais tempo até
+     * voltar ao limite. O resultado novo e o do documento visível ficam,
+     * mesmo que sozinhos passem do limite.
+     */
+    private void guardar(Documento doc, TokenBuffer tokens) {
+        long tamanho = tokens.tamanhoEmBytes();
+        synchronized (usados) {
+            synchronized (doc) {
+                if (doc.estado == Estado.FECHADO || doc.tokens != tokens) {
+                    return;
+                }
+            }
+            metricas.bytes(tamanho - doc.tamanhoGuardado);
+            bytesEmUso += tamanho - doc.tamanhoGuardado;
+            doc.tamanhoGuardado = tamanho;
+            usados.put(doc, Boolean.TRUE);
+            liberar(doc);
+        }
+    }
+
+    /**
+     * Acerta a conta da análise interrompida do documento com a que ele tem
+     * agora, e descarta o que for preciso se ela fizer passar do limite.
+     * Chamado depois de cada troca de {@code doc.parcial}, fora do monitor do
+     * documento; como lê o estado atual, a ordem entre duas chamadas não importa.
+     */
+    private void contarParcial(Documento doc) {
+        synchronized (usados) {
+            long tamanho;
+            synchronized (doc) {
+                tamanho = doc.parcial != null ? doc.parcial.tamanhoEmBytes() : 0;
+            }
+            metricas.bytes(tamanho - doc.tamanhoParcial);
+            bytesEmUso += tamanho - doc.tamanhoParcial;
+            doc.tamanhoParcial = tamanho;
+            if (tamanho == 0) {
+                parciais.remove(doc);
+            } else {
+                parciais.add(doc);
+                liberar(doc);
+            }
+        }
+    }
+
+    /**
+     * Com o monitor de {@code usados}, descarta até voltar ao limite: primeiro
+     * as análises interrompidas, depois os resultados pelo LRU. O que é de
+     * {@code atual} e do documento visível fica.
+     */
+    private void liberar(Documento atual) {
+        Iterator<Documento> interrompidos = parciais.iterator();
+        while (bytesEmUso > limiteBytes && interrompidos.hasNext()) {
+            Documento antigo = interrompidos.next();
+            if (antigo == atual || antigo == visivel) {
+                continue;
+            }
+            synchronized (antigo) {
+                antigo.lexerParcial = null;
+                antigo.parcial = null;
+            }
+            interrompidos.remove();
+            metricas.bytes(-antigo.tamanhoParcial);
+            bytesEmUso -= antigo.tamanhoParcial;
+            antigo.tamanhoParcial = 0;
+            metricas.remocao();
+        }
+        Iterator<Documento> antigos = usados.keySet().iterator();
+        while (bytesEmUso > limiteBytes && antigos.hasNext()) {
+            Documento antigo = antigos.next();
+            if (antigo == atual || antigo == visivel) {
+                continue;
+            }
+            synchronized (antigo) {
+                antigo.tokens = null;
+            }
+            antigos.remove();
+            metricas.bytes(-antigo.tamanhoGuardado);
+            bytesEmUso -= antigo.tamanhoGuardado;
+            antigo.tamanhoGuardado = 0;
+            metricas.remocao();
+        }
+    }
+
+    private void usar(Documento doc) {
+        synchronized (usados) {
+            usados.get(doc);
+        }
+    }
+
+    /**
+     * Marca o documento do editor, cuja análise passa na frente das outras e
+     * cujos tokens não são descartados pelo LRU; {@code null} se não há.
+     */
+    public void setVisivel(String nome) {
+        Documento doc = nome == null ? null : documento(nome);
+        visivel = doc;
+        if (doc == null) {
+            return;
+        }
+        boolean executar;
+        synchronized (doc) {
+            executar = (doc.estado != Estado.OCIOSO || doc.tokens == null) && agendar(doc, Priority.VISIBLE, false);
+        }
+        if (executar) {
+            executar();
+        }
+    }
+
+    /**
+     * Último resultado pronto do documento, sem esperar; pode ser de uma
+     * versão anterior do texto enquanto a atual espera na fila, e é
+     * {@code null} se ainda não há resultado ou se ele foi descartado.
+     */
+    public TokenBuffer getTokens(String nome) {
+        Documento doc = documento(nome);
+        TokenBuffer tokens;
+        synchronized (doc) {
+            tokens = doc.tokens;
+        }
+        if (tokens != null) {
+            usar(doc);
+        }
+        return tokens;
+    }
+
+    /**
+     * Tokens da versão atual do documento, quando ficarem prontos. Se a
+     * análise ainda não começou, passa a ter pelo menos a prioridade
+     * {@link Priority#RECENT}; um resultado descartado pelo LRU é refeito.
+     */
+    public CompletableFuture<TokenBuffer> aguardar(String nome) {
+        Documento doc = documento(nome);
+        CompletableFuture<TokenBuffer> futuro;
+        boolean executar = false;
+        synchronized (doc) {
+            if (doc.estado == Estado.OCIOSO && doc.tokens != null) {
+                futuro = CompletableFuture.completedFuture(doc.tokens);
+            } else {
+                if (doc.futuro == null) {
+                    doc.futuro = new CompletableFuture<>();
+                }
+                futuro = doc.futuro;
+                executar = agendar(doc, Priority.RECENT, false);
+            }
+        }
+        if (futuro.isDone()) {
+            usar(doc);
+        }
+        if (executar) {
+            executar();
+        }
+        return futuro;
+    }
+
+    /**
+     * Fecha o documento e libera os tokens dele; quem esperava o resultado recebe o cancelamento.
+     */
+    public void fechar(String nome) {
+        Documento doc = documentos.remove(nome);
+        if (doc == null) {
+            return;
+        }
+        CompletableFuture<TokenBuffer> futuro;
+        synchronized (doc) {
+            if (doc.estado == Estado.PENDENTE) {
+                metricas.saiuDaFila(doc.prioridade);
+            }
+            doc.estado = Estado.FECHADO;
+            doc.tokens = null;
+            doc.lexerParcial = null;
+            doc.parcial = null;
+            futuro = doc.futuro;
+            doc.futuro = null;
+        }
+        if (visivel == doc) {
+            visivel = null;
+        }
+        synchronized (usados) {
+            if (usados.remove(doc) != null) {
+                metricas.bytes(-doc.tamanhoGuardado);
+                bytesEmUso -= doc.tamanhoGuardado;
+                doc.tamanhoGuardado = 0;
+            }
+            if (parciais.remove(doc)) {
+                metricas.bytes(-doc.tamanhoParcial);
+                bytesEmUso -= doc.tamanhoParcial;
+                doc.tamanhoParcial = 0;
+            }
+        }
+        metricas.documentos(-1);
+        if (futuro != null) {
+            futuro.cancel(false);
+        }
+    }
+
+    private Documento documento(String nome) {
+        Documento doc = documentos.get(nome);
+        if (doc == null) {
+            throw new IllegalArgumentException("Documento não aberto: " + nome);
+        }
+        return doc;
+    }
+
+    public WorkspaceStats getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Fecha todos os documentos e interrompe o pool de análise.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        for (String nome : new ArrayList<>(documentos.keySet())) {
+            fechar(nome);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package Analizer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de um {@link Workspace}, seguras para várias threads: tamanho da
+ * fila e latência da edição ao resultado por prioridade, edições juntadas,
+ * análises descartadas, cedências e remoções pelo limite de memória. Como {@link LexerStats},
+ * podem ser publicadas por JMX ou escritas no formato do Prometheus.
+ *
+ * As latências ficam em um histograma de faixas que dobram de tamanho, de
+ * 16 µs a 16 s, para que registrar custe um incremento e os percentis não
+ * dependam de guardar as medições.
+ */
+public final class WorkspaceStats implements WorkspaceStatsMXBean {
+
+    private static final Workspace.Priority[] PRIORIDADES = Workspace.Priority.values();
+    private static final int MENOR_FAIXA = 4;  // A primeira faixa vai até 2^4 µs
+    private static final int FAIXAS = 21;      // Mais uma, sem limite, para o que passar de 2^24 µs
+
+    private final AtomicInteger[] fila = new AtomicInteger[PRIORIDADES.length];
+    private final LongAdder[] analises = new LongAdder[PRIORIDADES.length];
+    private final LongAdder[][] latencias = new LongAdder[PRIORIDADES.length][FAIXAS + 1];
+    private final LongAdder[] nanosLatencia = new LongAdder[PRIORIDADES.length];
+    private final LongAdder edicoesJuntadas = new LongAdder();
+    private final LongAdder analisesDescartadas = new LongAdder();
+    private final LongAdder cedencias = new LongAdder();
+    private final LongAdder remocoes = new LongAdder();
+    private final AtomicLong bytesEmUso = new AtomicLong();
+    private final AtomicInteger documentos = new AtomicInteger();
+
+    WorkspaceStats() {
+        for (int p = 0; p < PRIORIDADES.length; p++) {
+            fila[p] = new AtomicInteger();
+            analises[p] = new LongAdder();
+            nanosLatencia[p] = new LongAdder();
+            for (int f = 0; f <= FAIXAS; f++) {
+                latencias[p][f] = new LongAdder();
+            }
+        }
+    }
+
+    void entrouNaFila(Workspace.Priority prioridade) {
+        fila[prioridade.ordinal()].incrementAndGet();
+    }
+
+    void saiuDaFila(Workspace.Priority prioridade) {
+        fila[prioridade.ordinal()].decrementAndGet();
+    }
+
+    void analiseConcluida(Workspace.Priority prioridade, long nanos) {
+        analises[prioridade.ordinal()].increment();
+        nanosLatencia[prioridade.ordinal()].add(nanos);
+        long micros = Math.max(1, nanos / 1000);
+        int faixa = Math.max(0, 64 - Long.numberOfLeadingZeros(micros - 1) - MENOR_FAIXA);
+        latencias[prioridade.ordinal()][Math.min(faixa, FAIXAS)].increment();
+    }
+
+    void edicaoJuntada() {
+        edicoesJuntadas.increment();
+    }
+
+    void analiseDescartada() {
+        analisesDescartadas.increment();
+    }
+
+    void cedencia() {
+        cedencias.increment();
+    }
+
+    void remocao() {
+        remocoes.increment();
+    }
+
+    void bytes(long diferenca) {
+        bytesEmUso.addAndGet(diferenca);
+    }
+
+    void documentos(int diferenca) {
+        documentos.addAndGet(diferenca);
+    }
+
+    public int getFila(Workspace.Priority prioridade) {
+        return fila[prioridade.ordinal()].get();
+    }
+
+    public long getAnalises(Workspace.Priority prioridade) {
+        return analises[prioridade.ordinal()].sum();
+    }
+
+    /**
+     * Percentil {@code p} (0 a 100) da latência da prioridade, em nanossegundos,
+     * arredondado para cima até o limite da faixa; 0 sem medições.
+     */
+    public long getLatencia(Workspace.Priority prioridade, double p) {
+        LongAdder[] faixas = latencias[prioridade.ordinal()];
+        long[] contagens = new long[faixas.length];
+        long total = 0;
+        for (int f = 0; f < faixas.length; f++) {
+            contagens[f] = faixas[f].sum();
+            total += contagens[f];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long acumulado = 0;
+        for (int f = 0; f < FAIXAS; f++) {
+            acumulado += contagens[f];
+            if (acumulado >= alvo) {
+                return limite(f) * 1000;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    // Limite superior da faixa, em microssegundos
+    private static long limite(int faixa) {
+        return 1L << (faixa + MENOR_FAIXA);
+    }
+
+    @Override
+    public Map<String, Integer> getFilaPorPrioridade() {
+        Map<String, Integer> mapa = new LinkedHashMap<>();
+        for (Workspace.Priority prioridade : PRIORIDADES) {
+            mapa.put(prioridade.name(), getFila(prioridade));
+        }
+        return mapa;
+    }
+
+    @Override
+    public Map<String, Long> getAnalisesPorPrioridade() {
+        Map<String, Long> mapa = new LinkedHashMap<>();
+        for (Workspace.Priority prioridade : PRIORIDADES) {
+            mapa.put(prioridade.name(), getAnalises(prioridade));
+        }
+        return mapa;
+    }
+
+    @Override
+    public Map<String, Double> getLatenciaP50Ms() {
+        return percentis(50);
+    }
+
+    @Override
+    public Map<String, Double> getLatenciaP99Ms() {
+        return percentis(99);
+    }
+
+    private Map<String, Double> percentis(double p) {
+        Map<String, Double> mapa = new LinkedHashMap<>();
+        for (Workspace.Priority prioridade : PRIORIDADES) {
+            mapa.put(prioridade.name(), getLatencia(prioridade, p) / 1e6);
+        }
+        return mapa;
+    }
+
+    @Override
+    public long getEdicoesJuntadas() {
+        return edicoesJuntadas.sum();
+    }
+
+    @Override
+    public long getAnalisesDescartadas() {
+        return analisesDescartadas.sum();
+    }
+
+    @Override
+    public long getCedencias() {
+        return cedencias.sum();
+    }
+
+    @Override
+    public long getRemocoes() {
+        return remocoes.sum();
+    }
+
+    @Override
+    public long getBytesEmUso() {
+        return bytesEmUso.get();
+    }
+
+    @Override
+    public int getDocumentos() {
+        return documentos.get();
+    }
+
+    @Override
+    public void zerar() {
+        for (int p = 0; p < PRIORIDADES.length; p++) {
+            analises[p].reset();
+            nanosLatencia[p].reset();
+            for (LongAdder faixa : latencias[p]) {
+                faixa.reset();
+            }
+        }
+        edicoesJuntadas.reset();
+        analisesDescartadas.reset();
+        cedencias.reset();
+        remocoes.reset();
+    }
+
+    /**
+     * Publica estas métricas no servidor JMX da plataforma com o nome
+     * {@code Analizer:type=WorkspaceStats,name=<nome>}.
+     *
+     * @return O nome registrado.
+     * @throws JMException Se o nome já estiver em uso ou o registro falhar.
+     */
+    public ObjectName registrarJmx(String nome) throws JMException {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objeto = new ObjectName("Analizer:type=WorkspaceStats,name=" + ObjectName.quote(nome));
+        servidor.registerMBean(this, objeto);
+        return objeto;
+    }
+
+    /**
+     * Escreve as métricas no formato de texto do Prometheus (versão 0.0.4).
+     */
+    public void escreverPrometheus(Appendable saida) throws IOException {
+        cabecalho(saida, "minipascal_workspace_queue_depth", "gauge", "Documentos esperando análise, por prioridade.");
+        for (Workspace.Priority prioridade : PRIORIDADES) {
+            saida.append("minipascal_workspace_queue_depth").append(rotulo(prioridade))
+                    .append(Integer.toString(getFila(prioridade))).append('\n');
+        }
+
+        cabecalho(saida, "minipascal_workspace_latency_seconds", "histogram",
+                "Tempo da edição de um documento até os tokens dele ficarem prontos.");
+        for (Workspace.Priority prioridade : PRIORIDADES) {
+            String nome = prioridade.name().toLowerCase(Locale.ROOT);
+            long acumulado = 0;
+            for (int f = 0; f <= FAIXAS; f++) {
+                acumulado += latencias[prioridade.ordinal()][f].sum();
+                String le = f < FAIXAS ? String.format(Locale.ROOT, "%.6f", limite(f) / 1e6) : "+Inf";
+                saida.append("minipascal_workspace_latency_seconds_bucket{priority=\"").append(nome)
+                        .append("\",le=\"").append(le).append("\"} ").append(Long.toString(acumulado)).append('\n');
+            }
+            saida.append("minipascal_workspace_latency_seconds_sum").append(rotulo(prioridade))
+                    .append(String.format(Locale.ROOT, "%.9f", nanosLatencia[prioridade.ordinal()].sum() / 1e9))
+                    .append('\n');
+            saida.append("minipascal_workspace_latency_seconds_count").append(rotulo(prioridade))
+                    .append(Long.toString(acumulado)).append('\n');
+        }
+
+        contador(saida, "minipascal_workspace_coalesced_edits_total",
+                "Edições juntadas a uma análise já pendente.", getEdicoesJuntadas());
+        contador(saida, "minipascal_workspace_discarded_analyses_total",
+                "Análises abandonadas porque o documento mudou.", getAnalisesDescartadas());
+        contador(saida, "minipascal_workspace_yields_total",
+                "Pausas de análises em segundo plano para dar a vez a outras mais urgentes.", getCedencias());
+        contador(saida, "minipascal_workspace_evictions_total",
+                "Resultados e análises interrompidas descartados pelo limite de memória.", getRemocoes());
+
+        cabecalho(saida, "minipascal_workspace_token_bytes", "gauge", "Memória ocupada pelos tokens guardados.");
+        saida.append("minipascal_workspace_token_bytes ").append(Long.toString(getBytesEmUso())).append('\n');
+        cabecalho(saida, "minipascal_workspace_documents", "gauge", "Documentos abertos.");
+        saida.append("minipascal_workspace_documents ").append(Integer.toString(getDocumentos())).append('\n');
+    }
+
+    private static String rotulo(Workspace.Priority prioridade) {
+        return "{priority=\"" + prioridade.name().toLowerCase(Locale.ROOT) + "\"} ";
+    }
+
+    private static void contador(Appendable saida, String nome, String ajuda, long valor) throws IOException {
+        cabecalho(saida, nome, "counter", ajuda);
+        saida.append(nome).append(' ').append(Long.toString(valor)).append('\n');
+    }
+
+    private static void cabecalho(Appendable saida, String nome, String tipo, String ajuda) throws IOException {
+        saida.append("# HELP ").append(nome).append(' ').append(ajuda).append('\n');
+        saida.append("# TYPE ").append(nome).append(' ').append(tipo).append('\n');
+    }
+}
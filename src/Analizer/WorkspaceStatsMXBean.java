@@ -0,0 +1,52 @@
+package Analizer;
+
+import java.util.Map;
+
+/**
+ * Atributos de {@link WorkspaceStats} publicados por JMX. Os mapas são
+ * indexados pelo nome da {@link Workspace.Priority}.
+ */
+public interface WorkspaceStatsMXBean {
+
+    /**
+     * Documentos esperando análise, por prioridade.
+     */
+    Map<String, Integer> getFilaPorPrioridade();
+
+    Map<String, Long> getAnalisesPorPrioridade();
+
+    /**
+     * Latência da edição ao resultado, em milissegundos: limite superior da
+     * faixa do histograma que contém o percentil.
+     */
+    Map<String, Double> getLatenciaP50Ms();
+
+    Map<String, Double> getLatenciaP99Ms();
+
+    /**
+     * Edições que não geraram análise própria, porque a do documento ainda
+     * esperava na fila ou já estava em andamento.
+     */
+    long getEdicoesJuntadas();
+
+    /**
+     * Análises abandonadas porque o documento mudou antes do fim.
+     */
+    long getAnalisesDescartadas();
+
+    /**
+     * Vezes que uma análise em segundo plano parou entre dois lotes para dar a vez a uma mais urgente.
+     */
+    long getCedencias();
+
+    long getRemocoes();
+
+    long getBytesEmUso();
+
+    int getDocumentos();
+
+    /**
+     * Zera os contadores e os histogramas; a fila, os bytes e os documentos continuam valendo.
+     */
+    void zerar();
+}
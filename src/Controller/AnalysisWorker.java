@@ -0,0 +1,93 @@
+package Controller;
+
+import Analizer.Lexer;
+import Analizer.LexerMetrics;
+import Analizer.SourceBuffer;
+import Analizer.TokenBuffer;
+import View.AnalizadorView;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Analisa o código fora da thread de eventos do Swing, entregando os tokens à
+ * view em lotes.
+ *
+ * Cada lote é um {@link TokenBuffer} novo, que deixa de ser tocado por esta
+ * thread assim que é publicado; por isso a view pode lê-lo e juntá-lo aos
+ * anteriores sem sincronização. Os lotes usam a tabela de símbolos do Lexer,
+ * que continua internando nesta thread; a view só a consulta, o que a
+ * {@link Analizer.SymbolTable} permite ao mesmo tempo. A análise para entre
+ * dois lotes quando o worker é cancelado, e lotes de uma análise cancelada não
+ * chegam à view.
+ */
+public class AnalysisWorker extends SwingWorker<Void, TokenBuffer> {
+
+    private static final int TAMANHO_LOTE = 8192;
+
+    private final String sourceCode;
+    private final AnalizadorView view;
+    private volatile TokenBuffer ultimoLote;
+    private volatile long elapsedTime;
+
+    /**
+     * @param sourceCode Cópia do código a analisar.
+     * @param view       View que recebe os lotes na thread de eventos.
+     */
+    public AnalysisWorker(String sourceCode, AnalizadorView view) {
+        this.sourceCode = sourceCode;
+        this.view = view;
+    }
+
+    @Override
+    protected Void doInBackground() {
+        long startTime = System.currentTimeMillis();
+        SourceBuffer fonte = SourceBuffer.of(sourceCode);
+        Lexer lexer = new Lexer(fonte);
+        lexer.setMetricas(Controller.getMetricas());
+        boolean continuar;
+        do {
+            TokenBuffer lote = new TokenBuffer(fonte, lexer.getSymbolTable());
+            continuar = lexer.analisarLote(lote, TAMANHO_LOTE);
+            if (!continuar) {
+                elapsedTime = System.currentTimeMillis() - startTime;
+                ultimoLote = lote;
+            }
+            publish(lote);
+        } while (continuar && !isCancelled());
+        return null;
+    }
+
+    /**
+     * Os lotes chegam em ordem; a análise só é dada por concluída quando o
+     * último deles chega, que pode ser depois de {@link #done()}.
+     */
+    @Override
+    protected void process(List<TokenBuffer> lotes) {
+        if (isCancelled()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        view.appendTokens(lotes);
+        if (lotes.get(lotes.size() - 1) == ultimoLote) {
+            System.out.println("Número de Tokens: " + view.getTokenCount());
+            view.finishTokens(elapsedTime);
+        }
+        Controller.getMetricas().fase(LexerMetrics.Phase.OUTPUT, System.nanoTime() - inicio);
+    }
+
+    @Override
+    protected void done() {
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            view.displayError("Falha na análise: " + e.getCause().getMessage());
+        }
+    }
+}
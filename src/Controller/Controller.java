@@ -1,16 +1,24 @@
 package Controller;
 
+import Analizer.IncrementalLexer;
 import Analizer.Lexer;
-import Analizer.Token;
+import Analizer.LexerMetrics;
+import Analizer.LexerStats;
+import Analizer.TokenBuffer;
 import View.AnalizadorView;
 
-import java.util.List;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
 
 /**
  * Controller responsável por gerenciar a análise léxica do código fonte.
  */
 public class Controller {
 
+    // Métricas de todas as análises da interface, publicadas por JMX no primeiro Controller
+    private static final LexerStats METRICAS = new LexerStats();
+    private static boolean metricasRegistradas;
+
     private Lexer lexer;
     private AnalizadorView simpleAnalizadorView;
 
@@ -23,6 +31,26 @@ public class Controller {
     public Controller(Lexer lexer, AnalizadorView simpleAnalizadorView) {
         this.lexer = lexer;
         this.simpleAnalizadorView = simpleAnalizadorView;
+        registrarMetricas();
+    }
+
+    /**
+     * Publica as métricas por JMX uma única vez. Sem JMX a interface funciona
+     * do mesmo jeito, então uma falha só é avisada.
+     */
+    private static synchronized void registrarMetricas() {
+        if (metricasRegistradas) {
+            return;
+        }
+        metricasRegistradas = true;
+        try {
+            METRICAS.registrarJmx("AnalizadorView");
+        } catch (InstanceAlreadyExistsException e) {
+            // Outra cópia da interface na mesma JVM (outro class loader) já publicou as suas
+            System.err.println("Métricas da interface já registradas no JMX por outra instância");
+        } catch (JMException e) {
+            System.err.println("Métricas fora do JMX: " + e.getMessage());
+        }
     }
 
     /**
@@ -38,11 +66,56 @@ public class Controller {
 
         long startTime = System.currentTimeMillis();
         lexer = new Lexer(sourceCode);
-        List<Token> tokens = lexer.analisar();
+        lexer.setMetricas(METRICAS);
+        TokenBuffer tokens = lexer.analisarCompacto();
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        System.out.println("Número de Tokens: " + tokens.size());
+
+        exibir(tokens, elapsedTime);
+    }
+
+    /**
+     * Inicia a análise do código em segundo plano; a view recebe os tokens em
+     * lotes, sem travar a interface.
+     *
+     * @param sourceCode O código fonte a ser analisado.
+     * @return O worker iniciado, que pode ser cancelado por uma análise mais nova.
+     */
+    public AnalysisWorker analyzeInBackground(String sourceCode) {
+        simpleAnalizadorView.clearTokens();
+        AnalysisWorker worker = new AnalysisWorker(sourceCode, simpleAnalizadorView);
+        worker.execute();
+        return worker;
+    }
+
+    /**
+     * Exibe os tokens mantidos por um lexer incremental, que já reanalisou
+     * só os trechos editados do documento.
+     *
+     * @param incrementalLexer O lexer que acompanha as edições do documento.
+     */
+    public void analyzeIncremental(IncrementalLexer incrementalLexer) {
+        long startTime = System.currentTimeMillis();
+        TokenBuffer tokens = incrementalLexer.getTokens();
         long elapsedTime = System.currentTimeMillis() - startTime;
 
         System.out.println("Número de Tokens: " + tokens.size());
 
+        exibir(tokens, elapsedTime);
+    }
+
+    /**
+     * Métricas acumuladas pelas análises da interface: tokens por tipo, erros
+     * por código, caracteres pulados e duração das etapas.
+     */
+    public static LexerStats getMetricas() {
+        return METRICAS;
+    }
+
+    private void exibir(TokenBuffer tokens, long elapsedTime) {
+        long inicio = System.nanoTime();
         simpleAnalizadorView.displayTokens(tokens, elapsedTime);
+        METRICAS.fase(LexerMetrics.Phase.OUTPUT, System.nanoTime() - inicio);
     }
 }
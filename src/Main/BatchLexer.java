@@ -0,0 +1,524 @@
+package Main;
+
+import Analizer.DiagnosticCode;
+import Analizer.DiagnosticList;
+import Analizer.Lexer;
+import Analizer.LexerFactory;
+import Analizer.LexerMetrics;
+import Analizer.LexerStats;
+import Analizer.Severity;
+import Analizer.TokenBuffer;
+import Analizer.TokenCache;
+import Analizer.TokenType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Modo de linha de comando, sem interface gráfica: analisa vários arquivos ao
+ * mesmo tempo e escreve os tokens de cada um na saída padrão (ou em um
+ * arquivo), na ordem em que as análises terminam.
+ *
+ * Cada arquivo é analisado pelo mesmo {@link Analizer.Lexer} da interface
+ * gráfica, então os tokens e as mensagens de erro são idênticos. No fim, um
+ * resumo com vazão, percentis de latência por arquivo e total de erros é
+ * escrito na saída de erro.
+ *
+ * <pre>
+ * java -cp Analizador_Lexico-MiniPascal.jar Main.Main [opções] arquivo|diretório|glob...
+ *   --format jsonl|bin   formato da saída (padrão jsonl)
+ *   --output arquivo     escreve a saída no arquivo em vez da saída padrão
+ *   --threads n          número de threads (padrão: núcleos disponíveis)
+ *   --engine nome        motor de análise: switch, dfa ou generated (padrão switch)
+ *   --charset nome       codificação dos arquivos (padrão UTF-8)
+ *   --max-errors n       reporta no máximo n erros por arquivo
+ *   --fail-fast n        para de analisar um arquivo no n-ésimo erro
+ *   --cache diretório    reaproveita os tokens de arquivos já analisados
+ *   --cache-size mb      tamanho máximo do cache (padrão 256 MB)
+ *   --metrics arquivo|-  escreve as métricas no formato do Prometheus ("-" para a saída de erro)
+ * </pre>
+ *
+ * Com {@code --cache}, os tokens ficam em um {@link TokenCache} no diretório
+ * informado, que pode ser compartilhado entre execuções e processos; o resumo
+ * passa a trazer acertos, faltas e remoções. O cache não é usado junto com
+ * {@code --max-errors} ou {@code --fail-fast}.
+ *
+ * Só os diagnósticos de gravidade ERROR contam como erros, no resumo e nos
+ * limites; avisos, como o de ponto e vírgula ausente ou o de perda de
+ * precisão, aparecem só na lista de diagnósticos.
+ *
+ * Com {@code --metrics}, cada Lexer entrega suas medições a um
+ * {@link LexerStats} comum, e o tempo de leitura e de formatação de cada
+ * arquivo também é somado; sem a opção, nada é medido. Arquivos servidos pelo
+ * cache só contam nas etapas de leitura e de saída.
+ *
+ * Em JSON Lines cada arquivo é uma linha
+ * {@code {"arquivo":...,"micros":...,"erros":...,"tokens":[[tipo,lexema,linha],...],
+ * "diagnosticos":[[codigo,inicio,fim,linha,coluna],...]}};
+ * arquivos que não puderam ser lidos saem como {@code {"arquivo":...,"falha":...}}.
+ *
+ * O formato binário começa com os bytes {@code LXB1}; cada arquivo é o
+ * caminho em UTF-8 (int com o tamanho e os bytes), a duração em microssegundos
+ * (long), o número de tokens (int) ou -1 se a leitura falhou, seguido da
+ * mensagem da falha, e então, para cada token, o ordinal do {@link TokenType}
+ * (byte), a linha (int) e o lexema em UTF-8 (int com o tamanho e os bytes);
+ * por fim, o número de diagnósticos (int) e, para cada um, o ordinal do
+ * {@link DiagnosticCode} (byte), o início e o fim do trecho (int).
+ *
+ * Código de saída: 0 sem erros, 1 se algum arquivo tiver erros léxicos, 2 se
+ * algum arquivo não puder ser lido ou os argumentos forem inválidos.
+ */
+public final class BatchLexer {
+
+    private static final byte[] MAGICO_BINARIO = {'L', 'X', 'B', '1'};
+
+    private BatchLexer() {
+    }
+
+    /**
+     * Executa o modo de linha de comando e devolve o código de saída.
+     */
+    public static int run(String[] args) {
+        Opcoes opcoes;
+        List<Path> arquivos;
+        try {
+            opcoes = Opcoes.ler(args);
+            arquivos = expandir(opcoes.caminhos);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: Main.Main [--format jsonl|bin] [--output arquivo] [--threads n]"
+                    + " [--engine switch|dfa|generated] [--charset nome] [--max-errors n] [--fail-fast n]"
+                    + " [--cache diretório] [--cache-size mb] [--metrics arquivo|-] arquivo|diretório|glob...");
+            return 2;
+        }
+
+        TokenCache cache = null;
+        if (opcoes.cache != null && opcoes.limiteErros == Integer.MAX_VALUE
+                && opcoes.pararAposErros == Integer.MAX_VALUE) {
+            try {
+                cache = new TokenCache(opcoes.cache, opcoes.tamanhoCache);
+            } catch (IOException e) {
+                System.err.println("Cache desativado: " + e.getMessage());
+            }
+        }
+
+        LexerStats estatisticas = opcoes.metricas == null ? null : new LexerStats();
+        int codigo;
+        try (OutputStream saida = opcoes.saida == null
+                ? new BufferedOutputStream(System.out, 1 << 16)
+                : new BufferedOutputStream(Files.newOutputStream(opcoes.saida), 1 << 16)) {
+            codigo = analisar(arquivos, opcoes, cache,
+                    estatisticas == null ? LexerMetrics.NOOP : estatisticas, saida, System.err);
+        } catch (IOException e) {
+            System.err.println("Falha ao escrever a saída: " + e.getMessage());
+            return 2;
+        }
+
+        if (estatisticas != null) {
+            try {
+                escreverMetricas(estatisticas, opcoes.metricas);
+            } catch (IOException e) {
+                System.err.println("Falha ao escrever as métricas: " + e.getMessage());
+                return 2;
+            }
+        }
+        return codigo;
+    }
+
+    private static void escreverMetricas(LexerStats estatisticas, String destino) throws IOException {
+        if (destino.equals("-")) {
+            StringBuilder texto = new StringBuilder();
+            estatisticas.escreverPrometheus(texto);
+            System.err.print(texto);
+            System.err.flush();
+        } else {
+            try (Writer saida = new OutputStreamWriter(Files.newOutputStream(Paths.get(destino)),
+                    StandardCharsets.UTF_8)) {
+                estatisticas.escreverPrometheus(saida);
+            }
+        }
+    }
+
+    private static int analisar(List<Path> arquivos, Opcoes opcoes, TokenCache cache, LexerMetrics metricas,
+                                OutputStream saida, PrintStream resumo) throws IOException {
+        if (opcoes.binario) {
+            saida.write(MAGICO_BINARIO);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(opcoes.threads);
+        CompletionService<Resultado> concluidos = new ExecutorCompletionService<>(pool);
+        long inicio = System.nanoTime();
+        for (Path arquivo : arquivos) {
+            concluidos.submit(() -> analisarArquivo(arquivo, opcoes, cache, metricas));
+        }
+
+        long[] latencias = new long[arquivos.size()];
+        long bytes = 0;
+        long tokens = 0;
+        long erros = 0;
+        int falhas = 0;
+        try {
+            for (int i = 0; i < arquivos.size(); i++) {
+                Resultado resultado = concluidos.take().get();
+                saida.write(resultado.registro);
+                latencias[i] = resultado.nanos;
+                bytes += resultado.bytes;
+                tokens += resultado.tokens;
+                erros += resultado.erros;
+                if (resultado.falhou) {
+                    falhas++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Análise interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Falha inesperada na análise", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        saida.flush();
+        long total = System.nanoTime() - inicio;
+
+        Arrays.sort(latencias);
+        double segundos = total / 1e9;
+        resumo.printf(Locale.ROOT, "Arquivos: %d (%d com falha)  Tokens: %d  Erros léxicos: %d%n",
+                arquivos.size(), falhas, tokens, erros);
+        resumo.printf(Locale.ROOT, "Tempo: %.1f ms  Vazão: %.2f MB/s, %.0f tokens/s  Threads: %d%n",
+                total / 1e6, bytes / 1e6 / segundos, tokens / segundos, opcoes.threads);
+        resumo.println("Latência por arquivo (ms): " + Latencias.resumo(latencias));
+        if (cache != null) {
+            resumo.printf(Locale.ROOT, "Cache: %d acertos  %d faltas  %d remoções%n",
+                    cache.getHits(), cache.getMisses(), cache.getEvictions());
+        }
+
+        if (falhas > 0) {
+            return 2;
+        }
+        return erros > 0 ? 1 : 0;
+    }
+
+    private static Resultado analisarArquivo(Path arquivo, Opcoes opcoes, TokenCache cache, LexerMetrics metricas)
+            throws IOException {
+        long inicio = System.nanoTime();
+        Resultado resultado = new Resultado();
+        ByteArrayOutputStream registro = new ByteArrayOutputStream();
+        try {
+            byte[] conteudo = Files.readAllBytes(arquivo);
+            // O construtor de String troca bytes inválidos pelo caractere de substituição, como o SourceBuffer
+            String codigo = new String(conteudo, opcoes.charset);
+            long lido = System.nanoTime();
+            metricas.fase(LexerMetrics.Phase.READ, lido - inicio);
+            TokenBuffer tokens;
+            if (cache != null) {
+                // Sem limites de erros, cada erro vira exatamente um diagnóstico de gravidade ERROR
+                tokens = cache.analisar(codigo, opcoes.engine);
+                resultado.erros = contarErros(tokens.getDiagnostics());
+            } else {
+                Lexer lexer = LexerFactory.create(codigo, opcoes.engine);
+                lexer.setLimiteErros(opcoes.limiteErros);
+                lexer.setPararAposErros(opcoes.pararAposErros);
+                lexer.setMetricas(metricas);
+                tokens = lexer.analisarCompacto();
+                resultado.erros = lexer.getTotalErros();
+            }
+            resultado.nanos = System.nanoTime() - inicio;
+            resultado.bytes = conteudo.length;
+            resultado.tokens = tokens.size();
+            long analisado = System.nanoTime();
+            if (opcoes.binario) {
+                escreverBinario(registro, arquivo, resultado, tokens);
+            } else {
+                escreverJson(registro, arquivo, resultado, tokens);
+            }
+            metricas.fase(LexerMetrics.Phase.OUTPUT, System.nanoTime() - analisado);
+        } catch (IOException e) {
+            resultado.nanos = System.nanoTime() - inicio;
+            resultado.falhou = true;
+            String mensagem = "Falha ao ler o arquivo: " + e;
+            if (opcoes.binario) {
+                escreverFalhaBinaria(registro, arquivo, resultado, mensagem);
+            } else {
+                StringBuilder linha = new StringBuilder();
+                linha.append("{\"arquivo\":");
+                aspas(linha, arquivo.toString());
+                linha.append(",\"falha\":");
+                aspas(linha, mensagem);
+                linha.append("}\n");
+                registro.write(linha.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        resultado.registro = registro.toByteArray();
+        return resultado;
+    }
+
+    private static int contarErros(DiagnosticList diagnosticos) {
+        int erros = 0;
+        for (int d = 0; d < diagnosticos.size(); d++) {
+            if (diagnosticos.getSeverity(d) == Severity.ERROR) {
+                erros++;
+            }
+        }
+        return erros;
+    }
+
+    private static void escreverJson(ByteArrayOutputStream registro, Path arquivo, Resultado resultado,
+                                     TokenBuffer tokens) {
+        StringBuilder linha = new StringBuilder(64 + tokens.size() * 24);
+        linha.append("{\"arquivo\":");
+        aspas(linha, arquivo.toString());
+        linha.append(",\"micros\":").append(resultado.nanos / 1000);
+        linha.append(",\"erros\":").append(resultado.erros);
+        linha.append(",\"tokens\":[");
+        for (int i = 0; i < tokens.size(); i++) {
+            if (i > 0) {
+                linha.append(',');
+            }
+            linha.append("[\"").append(tokens.getType(i).name()).append("\",");
+            aspas(linha, tokens.getLexema(i));
+            linha.append(',').append(tokens.getLinha(i)).append(']');
+        }
+        linha.append("],\"diagnosticos\":[");
+        DiagnosticList diagnosticos = tokens.getDiagnostics();
+        for (int d = 0; d < diagnosticos.size(); d++) {
+            if (d > 0) {
+                linha.append(',');
+            }
+            linha.append("[\"").append(diagnosticos.getCode(d).name()).append("\",")
+                    .append(diagnosticos.getInicio(d)).append(',').append(diagnosticos.getFim(d)).append(',')
+                    .append(diagnosticos.getLinha(d)).append(',').append(diagnosticos.getColuna(d)).append(']');
+        }
+        linha.append("]}\n");
+        registro.writeBytes(linha.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void escreverBinario(ByteArrayOutputStream registro, Path arquivo, Resultado resultado,
+                                        TokenBuffer tokens) throws IOException {
+        DataOutputStream dados = new DataOutputStream(registro);
+        escreverTexto(dados, arquivo.toString());
+        dados.writeLong(resultado.nanos / 1000);
+        dados.writeInt(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            dados.writeByte(tokens.getType(i).ordinal());
+            dados.writeInt(tokens.getLinha(i));
+            escreverTexto(dados, tokens.getLexema(i));
+        }
+        DiagnosticList diagnosticos = tokens.getDiagnostics();
+        dados.writeInt(diagnosticos.size());
+        for (int d = 0; d < diagnosticos.size(); d++) {
+            dados.writeByte(diagnosticos.getCode(d).ordinal());
+            dados.writeInt(diagnosticos.getInicio(d));
+            dados.writeInt(diagnosticos.getFim(d));
+        }
+        dados.flush();
+    }
+
+    private static void escreverFalhaBinaria(ByteArrayOutputStream registro, Path arquivo, Resultado resultado,
+                                             String mensagem) throws IOException {
+        DataOutputStream dados = new DataOutputStream(registro);
+        escreverTexto(dados, arquivo.toString());
+        dados.writeLong(resultado.nanos / 1000);
+        dados.writeInt(-1);
+        escreverTexto(dados, mensagem);
+        dados.flush();
+    }
+
+    // Diferente de writeUTF, não limita o texto a 64 KB
+    private static void escreverTexto(DataOutputStream dados, String texto) throws IOException {
+        byte[] utf8 = texto.getBytes(StandardCharsets.UTF_8);
+        dados.writeInt(utf8.length);
+        dados.write(utf8);
+    }
+
+    private static void aspas(StringBuilder destino, String texto) {
+        destino.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"': destino.append("\\\""); break;
+                case '\\': destino.append("\\\\"); break;
+                case '\n': destino.append("\\n"); break;
+                case '\r': destino.append("\\r"); break;
+                case '\t': destino.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        destino.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        destino.append(c);
+                    }
+            }
+        }
+        destino.append('"');
+    }
+
+    /**
+     * Troca diretórios por todos os arquivos dentro deles e globs pelos arquivos que casam com eles.
+     */
+    private static List<Path> expandir(List<String> caminhos) throws IOException {
+        List<Path> arquivos = new ArrayList<>();
+        for (String caminho : caminhos) {
+            int glob = primeiroCaractereGlob(caminho);
+            if (glob >= 0) {
+                int barra = Math.max(caminho.lastIndexOf('/', glob), caminho.lastIndexOf('\\', glob));
+                Path base = Paths.get(barra < 0 ? "." : caminho.substring(0, barra + 1));
+                String padrao = barra < 0 ? "./" + caminho : caminho;
+                PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + padrao);
+                try (Stream<Path> encontrados = Files.walk(base)) {
+                    encontrados.filter(Files::isRegularFile).filter(matcher::matches).sorted().forEach(arquivos::add);
+                }
+            } else {
+                Path path = Paths.get(caminho);
+                if (Files.isDirectory(path)) {
+                    try (Stream<Path> encontrados = Files.walk(path)) {
+                        encontrados.filter(Files::isRegularFile).sorted().forEach(arquivos::add);
+                    }
+                } else {
+                    arquivos.add(path);
+                }
+            }
+        }
+        if (arquivos.isEmpty()) {
+            throw new IllegalArgumentException("Nenhum arquivo para analisar.");
+        }
+        return arquivos;
+    }
+
+    private static int primeiroCaractereGlob(String caminho) {
+        for (int i = 0; i < caminho.length(); i++) {
+            if ("*?[{".indexOf(caminho.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Resultado da análise de um arquivo, com o registro já formatado.
+     */
+    private static final class Resultado {
+        byte[] registro;
+        long nanos;
+        long bytes;
+        int tokens;
+        int erros;
+        boolean falhou;
+    }
+
+    private static final class Opcoes {
+        final List<String> caminhos = new ArrayList<>();
+        boolean binario;
+        Path saida;
+        int threads = Runtime.getRuntime().availableProcessors();
+        LexerFactory.Engine engine = LexerFactory.Engine.SWITCH;
+        Charset charset = StandardCharsets.UTF_8;
+        int limiteErros = Integer.MAX_VALUE;
+        int pararAposErros = Integer.MAX_VALUE;
+        Path cache;
+        long tamanhoCache = 256L << 20;
+        String metricas;
+
+        static Opcoes ler(String[] args) {
+            Opcoes opcoes = new Opcoes();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--format":
+                        String formato = valor(args, ++i, arg);
+                        if (!formato.equals("jsonl") && !formato.equals("bin")) {
+                            throw new IllegalArgumentException("Formato desconhecido: " + formato);
+                        }
+                        opcoes.binario = formato.equals("bin");
+                        break;
+                    case "--output":
+                        opcoes.saida = Paths.get(valor(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        opcoes.threads = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--max-errors":
+                        opcoes.limiteErros = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--fail-fast":
+                        opcoes.pararAposErros = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--cache":
+                        opcoes.cache = Paths.get(valor(args, ++i, arg));
+                        break;
+                    case "--cache-size":
+                        opcoes.tamanhoCache = (long) positivo(valor(args, ++i, arg), arg) << 20;
+                        break;
+                    case "--metrics":
+                        opcoes.metricas = valor(args, ++i, arg);
+                        break;
+                    case "--engine":
+                        String engine = valor(args, ++i, arg);
+                        try {
+                            opcoes.engine = LexerFactory.Engine.valueOf(engine.toUpperCase(Locale.ROOT));
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Motor desconhecido: " + engine);
+                        }
+                        break;
+                    case "--charset":
+                        String charset = valor(args, ++i, arg);
+                        try {
+                            opcoes.charset = Charset.forName(charset);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Codificação desconhecida: " + charset);
+                        }
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Opção desconhecida: " + arg);
+                        }
+                        opcoes.caminhos.add(arg);
+                }
+            }
+            if (opcoes.caminhos.isEmpty()) {
+                throw new IllegalArgumentException("Informe ao menos um arquivo, diretório ou glob.");
+            }
+            return opcoes;
+        }
+
+        private static int positivo(String valor, String opcao) {
+            try {
+                int numero = Integer.parseInt(valor);
+                if (numero > 0) {
+                    return numero;
+                }
+            } catch (NumberFormatException e) {
+                // Reportado abaixo
+            }
+            throw new IllegalArgumentException("Valor inválido para " + opcao + ": " + valor);
+        }
+
+        private static String valor(String[] args, int i, String opcao) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException("Falta o valor de " + opcao);
+            }
+            return args[i];
+        }
+    }
+}
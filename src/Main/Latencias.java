@@ -0,0 +1,60 @@
+package Main;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Guarda as latências mais recentes, até um limite fixo, para calcular
+ * percentis sem crescer com o número de medições. Segura para várias threads.
+ */
+final class Latencias {
+
+    private final long[] amostras;
+    private long total;
+
+    Latencias(int capacidade) {
+        this.amostras = new long[capacidade];
+    }
+
+    synchronized void registrar(long nanos) {
+        amostras[(int) (total % amostras.length)] = nanos;
+        total++;
+    }
+
+    synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * Cópia ordenada das amostras guardadas.
+     */
+    synchronized long[] ordenadas() {
+        long[] copia = Arrays.copyOf(amostras, (int) Math.min(total, amostras.length));
+        Arrays.sort(copia);
+        return copia;
+    }
+
+    /**
+     * Linha com p50, p90, p99 e máximo em milissegundos.
+     */
+    String resumo() {
+        return resumo(ordenadas());
+    }
+
+    /**
+     * Linha com p50, p90, p99 e máximo em milissegundos de latências já ordenadas.
+     */
+    static String resumo(long[] ordenados) {
+        return String.format(Locale.ROOT, "p50 %.3f  p90 %.3f  p99 %.3f  máx %.3f",
+                percentil(ordenados, 50) / 1e6, percentil(ordenados, 90) / 1e6,
+                percentil(ordenados, 99) / 1e6, percentil(ordenados, 100) / 1e6);
+    }
+
+    static long percentil(long[] ordenados, int p) {
+        if (ordenados.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(p / 100.0 * ordenados.length) - 1;
+        return ordenados[Math.max(0, Math.min(indice, ordenados.length - 1))];
+    }
+}
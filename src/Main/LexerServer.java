@@ -0,0 +1,506 @@
+package Main;
+
+import Analizer.DiagnosticList;
+import Analizer.Lexer;
+import Analizer.LexerFactory;
+import Analizer.LexerStats;
+import Analizer.Severity;
+import Analizer.SourceBuffer;
+import Analizer.TokenBuffer;
+import Analizer.TokenType;
+
+import javax.management.JMException;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor de análise léxica de longa duração, para que editores e agentes
+ * de CI não paguem a partida da JVM e o aquecimento do JIT a cada arquivo.
+ * Escuta só em localhost, por TCP ou por socket Unix.
+ *
+ * <pre>
+ * java -cp Analizador_Lexico-MiniPascal.jar Main.Main --server [opções]
+ *   --port n             porta TCP em localhost (padrão 7070)
+ *   --unix caminho       socket Unix em vez de TCP
+ *   --threads n          threads de análise (padrão: núcleos disponíveis)
+ *   --engine nome        motor de análise: switch, dfa ou generated (padrão switch)
+ *   --max-connections n  conexões atendidas ao mesmo tempo (padrão 64)
+ *   --max-bytes n        bytes de código lidos e ainda não respondidos, somando
+ *                        todas as conexões (padrão 256 MB)
+ * </pre>
+ *
+ * Protocolo, em big-endian: cada pedido é o tamanho do código em bytes (int)
+ * seguido do código em UTF-8; uma conexão pode mandar vários pedidos, um
+ * depois do outro. A resposta chega em blocos enquanto a análise anda: cada
+ * bloco é a quantidade de tokens (int) e, para cada token, o ordinal do
+ * {@link TokenType} (byte), o início e o fim do trecho em caracteres do
+ * código decodificado (int) e a linha (int); tokens ERROR trazem ainda o
+ * ordinal do código do diagnóstico (byte) e a mensagem (int com o tamanho e
+ * os bytes em UTF-8). Depois dos tokens vêm os avisos do bloco, que não são
+ * tokens: a quantidade (int) e, para cada um, o índice no bloco do token a
+ * que se refere (int), o ordinal do código (byte), o início e o fim do
+ * trecho (int) e a mensagem. O fim da resposta é um bloco com -1, seguido da
+ * latência no servidor em microssegundos (long), da chegada do pedido ao
+ * último bloco, e do total de erros (int).
+ *
+ * Os pedidos de todas as conexões entram numa fila única. Cada thread de
+ * análise pega um pedido e, se ele for pequeno e nenhuma outra thread
+ * estiver parada esperando, os pequenos que estiverem logo atrás dele, e os
+ * atende em sequência com o mesmo buffer de saída, que é reaproveitado entre
+ * pedidos. Com alguma thread livre, os pedidos ficam na fila para ela, em vez
+ * de esperar atrás do lote de outra. Os Lexers são criados por pedido, o que
+ * é barato; o que se reaproveita é o código já compilado pelo JIT.
+ *
+ * O JDK usado pelo projeto não tem threads virtuais, então cada conexão
+ * ocupa uma thread de plataforma só para ler pedidos e esperar as respostas.
+ * Por isso as conexões são limitadas: além do limite, a próxima só é aceita
+ * quando outra fechar, e o cliente espera na fila do sistema. A memória
+ * também: um pedido só é lido depois de reservar seus bytes no total em
+ * andamento, devolvido quando a resposta termina; enquanto não couber, a
+ * conexão espera.
+ */
+public final class LexerServer implements Closeable {
+
+    static final int FIM_RESPOSTA = -1;
+
+    private static final int TOKENS_POR_BLOCO = 8192;
+    private static final int PEDIDO_PEQUENO = 16 * 1024;
+    private static final int LOTE_MAXIMO = 32;
+    private static final int TAMANHO_MAXIMO = 256 << 20;
+    private static final int CONEXOES_PADRAO = 64;
+
+    private final ServerSocketChannel servidor;
+    private final Path socketUnix;
+    private final LexerFactory.Engine engine;
+    private final BlockingQueue<Pedido> fila = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor conexoes;
+    private final Semaphore conexoesLivres;
+    private final Semaphore bytesLivres;
+    private final int limiteBytes;
+    private final AtomicInteger analisadoresParados = new AtomicInteger();
+    private final List<Thread> threads = new ArrayList<>();
+    private final Latencias latencias = new Latencias(1 << 16);
+    private final LexerStats metricas = new LexerStats();
+    private volatile boolean fechado;
+
+    /**
+     * Abre o servidor com os limites padrão de conexões e de bytes.
+     *
+     * @param endereco Endereço TCP ou {@link UnixDomainSocketAddress}.
+     */
+    public LexerServer(SocketAddress endereco, LexerFactory.Engine engine) throws IOException {
+        this(endereco, engine, CONEXOES_PADRAO, TAMANHO_MAXIMO);
+    }
+
+    /**
+     * Abre o servidor; os pedidos só são atendidos depois de {@link #iniciar(int)}.
+     *
+     * @param maxConexoes Conexões atendidas ao mesmo tempo.
+     * @param maxBytes    Bytes de código em andamento, somando todas as conexões;
+     *                    também é o maior pedido aceito, até 256 MB.
+     */
+    public LexerServer(SocketAddress endereco, LexerFactory.Engine engine, int maxConexoes, int maxBytes)
+            throws IOException {
+        if (maxConexoes <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Limites do servidor precisam ser positivos");
+        }
+        this.engine = engine;
+        this.conexoesLivres = new Semaphore(maxConexoes);
+        this.limiteBytes = Math.min(maxBytes, TAMANHO_MAXIMO);
+        this.bytesLivres = new Semaphore(limiteBytes, true);
+        this.conexoes = new ThreadPoolExecutor(maxConexoes, maxConexoes, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>());
+        conexoes.allowCoreThreadTimeOut(true);
+        if (endereco instanceof UnixDomainSocketAddress) {
+            socketUnix = ((UnixDomainSocketAddress) endereco).getPath();
+            Files.deleteIfExists(socketUnix);
+            servidor = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            socketUnix = null;
+            servidor = ServerSocketChannel.open();
+        }
+        servidor.bind(endereco);
+    }
+
+    public SocketAddress getEndereco() throws IOException {
+        return servidor.getLocalAddress();
+    }
+
+    /**
+     * Métricas de todas as análises feitas pelo servidor.
+     */
+    public LexerStats getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Latência no servidor dos pedidos mais recentes, da chegada ao último bloco da resposta.
+     */
+    Latencias getLatencias() {
+        return latencias;
+    }
+
+    /**
+     * Começa a aceitar conexões e a atender pedidos com {@code analisadores} threads.
+     */
+    public void iniciar(int analisadores) {
+        for (int i = 0; i < analisadores; i++) {
+            iniciarThread(this::analisar, "lexer-server-" + i);
+        }
+        iniciarThread(this::aceitar, "lexer-server-accept");
+    }
+
+    private void iniciarThread(Runnable tarefa, String nome) {
+        Thread thread = new Thread(tarefa, nome);
+        thread.setDaemon(true);
+        threads.add(thread);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fechado = true;
+        servidor.close();
+        conexoes.shutdownNow();
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        if (socketUnix != null) {
+            Files.deleteIfExists(socketUnix);
+        }
+    }
+
+    private void aceitar() {
+        while (!fechado) {
+            try {
+                conexoesLivres.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                SocketChannel conexao = servidor.accept();
+                conexoes.execute(() -> {
+                    try {
+                        atenderConexao(conexao);
+                    } finally {
+                        conexoesLivres.release();
+                    }
+                });
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException | RejectedExecutionException e) {
+                conexoesLivres.release();
+                if (!fechado) {
+                    System.err.println("Falha ao aceitar conexão: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Lê os pedidos de uma conexão, um de cada vez: o próximo só é lido
+     * depois que a resposta do anterior foi toda escrita, para que as
+     * respostas não se misturem.
+     */
+    private void atenderConexao(SocketChannel conexao) {
+        try (SocketChannel canal = conexao) {
+            ByteBuffer cabecalho = ByteBuffer.allocate(4);
+            while (!fechado) {
+                cabecalho.clear();
+                if (!lerTudo(canal, cabecalho)) {
+                    return; // O cliente fechou a conexão entre pedidos
+                }
+                int tamanho = cabecalho.getInt(0);
+                if (tamanho < 0 || tamanho > limiteBytes) {
+                    System.err.println("Pedido com tamanho inválido: " + tamanho);
+                    return;
+                }
+                bytesLivres.acquire(tamanho);
+                try {
+                    ByteBuffer codigo = ByteBuffer.allocate(tamanho);
+                    if (!lerTudo(canal, codigo)) {
+                        throw new EOFException("Conexão fechada no meio de um pedido");
+                    }
+                    Pedido pedido = new Pedido(canal, codigo.array(), System.nanoTime());
+                    fila.put(pedido);
+                    pedido.respondido.get();
+                } finally {
+                    bytesLivres.release(tamanho);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | IOException e) {
+            if (!fechado) {
+                System.err.println("Conexão encerrada: " + e);
+            }
+        }
+    }
+
+    private void analisar() {
+        ByteBuffer saida = ByteBuffer.allocate(1 << 16);
+        List<Pedido> lote = new ArrayList<>();
+        while (!fechado) {
+            try {
+                Pedido pedido;
+                analisadoresParados.incrementAndGet();
+                try {
+                    pedido = fila.take();
+                } finally {
+                    analisadoresParados.decrementAndGet();
+                }
+                lote.add(pedido);
+                // Junta os pedidos pequenos que já estão na fila, para atendê-los de uma vez,
+                // mas só se não houver outra thread livre para pegá-los
+                int bytes = pedido.codigo.length;
+                while (bytes < PEDIDO_PEQUENO && lote.size() < LOTE_MAXIMO && analisadoresParados.get() == 0) {
+                    Pedido proximo = fila.peek();
+                    if (proximo == null || proximo.codigo.length >= PEDIDO_PEQUENO) {
+                        break;
+                    }
+                    proximo = fila.poll(); // Pode ser outro, se uma thread vizinha pegou o da frente
+                    if (proximo == null) {
+                        break;
+                    }
+                    lote.add(proximo);
+                    bytes += proximo.codigo.length;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (Pedido pedido : lote) {
+                try {
+                    saida = responder(pedido, saida);
+                    pedido.respondido.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    pedido.respondido.completeExceptionally(e);
+                }
+            }
+            lote.clear();
+        }
+    }
+
+    private ByteBuffer responder(Pedido pedido, ByteBuffer saida) throws IOException {
+        SourceBuffer fonte = SourceBuffer.of(new String(pedido.codigo, StandardCharsets.UTF_8));
+        Lexer lexer = LexerFactory.create(fonte, engine);
+        lexer.setMetricas(metricas);
+        boolean continuar;
+        do {
+            TokenBuffer bloco = new TokenBuffer(fonte, lexer.getSymbolTable());
+            continuar = lexer.analisarLote(bloco, TOKENS_POR_BLOCO);
+            saida = escreverBloco(bloco, saida);
+            if (continuar) {
+                enviar(pedido.canal, saida);
+            }
+        } while (continuar);
+
+        long nanos = System.nanoTime() - pedido.chegada;
+        saida = garantir(saida, 16);
+        saida.putInt(FIM_RESPOSTA).putLong(nanos / 1000).putInt(lexer.getTotalErros());
+        enviar(pedido.canal, saida);
+        latencias.registrar(nanos);
+        return saida;
+    }
+
+    private static ByteBuffer escreverBloco(TokenBuffer bloco, ByteBuffer saida) {
+        saida = garantir(saida, 8 + bloco.size() * 13);
+        saida.putInt(bloco.size());
+        DiagnosticList diagnosticos = bloco.getDiagnostics();
+        for (int i = 0; i < bloco.size(); i++) {
+            int d = bloco.getDiagnostico(i);
+            saida.put((byte) bloco.getType(i).ordinal());
+            saida.putInt(d >= 0 ? diagnosticos.getInicio(d) : bloco.getInicio(i));
+            saida.putInt(bloco.getFim(i)).putInt(bloco.getLinha(i));
+            if (d >= 0) {
+                byte[] mensagem = diagnosticos.getMensagem(d).getBytes(StandardCharsets.UTF_8);
+                saida = garantir(saida, 5 + mensagem.length);
+                saida.put((byte) diagnosticos.getCode(d).ordinal()).putInt(mensagem.length).put(mensagem);
+            }
+        }
+        int avisos = 0;
+        for (int d = 0; d < diagnosticos.size(); d++) {
+            if (diagnosticos.getSeverity(d) != Severity.ERROR) {
+                avisos++;
+            }
+        }
+        saida = garantir(saida, 4);
+        saida.putInt(avisos);
+        for (int d = 0; d < diagnosticos.size(); d++) {
+            if (diagnosticos.getSeverity(d) != Severity.ERROR) {
+                byte[] mensagem = diagnosticos.getMensagem(d).getBytes(StandardCharsets.UTF_8);
+                saida = garantir(saida, 17 + mensagem.length);
+                saida.putInt(diagnosticos.getTokenIndex(d)).put((byte) diagnosticos.getCode(d).ordinal())
+                        .putInt(diagnosticos.getInicio(d)).putInt(diagnosticos.getFim(d))
+                        .putInt(mensagem.length).put(mensagem);
+            }
+        }
+        return saida;
+    }
+
+    private static ByteBuffer garantir(ByteBuffer saida, int bytes) {
+        if (saida.remaining() >= bytes) {
+            return saida;
+        }
+        ByteBuffer maior = ByteBuffer.allocate(Math.max(saida.capacity() * 2, saida.position() + bytes));
+        saida.flip();
+        return maior.put(saida);
+    }
+
+    private static void enviar(SocketChannel canal, ByteBuffer saida) throws IOException {
+        saida.flip();
+        while (saida.hasRemaining()) {
+            canal.write(saida);
+        }
+        saida.clear();
+    }
+
+    /**
+     * Lê até encher o buffer; devolve {@code false} se a conexão acabar antes do primeiro byte.
+     */
+    static boolean lerTudo(SocketChannel canal, ByteBuffer destino) throws IOException {
+        while (destino.hasRemaining()) {
+            if (canal.read(destino) < 0) {
+                if (destino.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Conexão fechada no meio de uma mensagem");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Executa o modo servidor até o processo ser encerrado e devolve o código de saída.
+     */
+    public static int run(String[] args) {
+        SocketAddress endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), 7070);
+        int analisadores = Runtime.getRuntime().availableProcessors();
+        LexerFactory.Engine engine = LexerFactory.Engine.SWITCH;
+        int maxConexoes = CONEXOES_PADRAO;
+        int maxBytes = TAMANHO_MAXIMO;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--port":
+                        endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                Integer.parseInt(valor(args, ++i, arg)));
+                        break;
+                    case "--unix":
+                        endereco = UnixDomainSocketAddress.of(valor(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        analisadores = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--engine":
+                        engine = LexerFactory.Engine.valueOf(valor(args, ++i, arg).toUpperCase(Locale.ROOT));
+                        break;
+                    case "--max-connections":
+                        maxConexoes = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--max-bytes":
+                        maxBytes = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opção desconhecida: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: Main.Main --server [--port n | --unix caminho] [--threads n]"
+                    + " [--engine switch|dfa|generated] [--max-connections n] [--max-bytes n]");
+            return 2;
+        }
+
+        LexerServer servidor;
+        try {
+            servidor = new LexerServer(endereco, engine, maxConexoes, maxBytes);
+        } catch (IOException e) {
+            System.err.println("Falha ao abrir o servidor: " + e.getMessage());
+            return 2;
+        }
+        try {
+            servidor.getMetricas().registrarJmx("LexerServer");
+        } catch (JMException e) {
+            System.err.println("Métricas fora do JMX: " + e.getMessage());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                servidor.close();
+            } catch (IOException e) {
+                // Encerrando de qualquer forma
+            }
+            System.err.println("Pedidos: " + servidor.latencias.getTotal() + "  Latência (ms): "
+                    + servidor.latencias.resumo());
+        }));
+        servidor.iniciar(analisadores);
+        try {
+            System.err.println("Servidor em " + servidor.getEndereco() + " com " + analisadores + " threads");
+        } catch (IOException e) {
+            System.err.println("Servidor iniciado com " + analisadores + " threads");
+        }
+
+        try {
+            Thread.currentThread().join(); // Até o processo ser encerrado
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return 0;
+    }
+
+    private static int positivo(String valor, String opcao) {
+        int n = Integer.parseInt(valor);
+        if (n <= 0) {
+            throw new IllegalArgumentException("Valor inválido para " + opcao + ": " + n);
+        }
+        return n;
+    }
+
+    private static String valor(String[] args, int i, String opcao) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Falta o valor de " + opcao);
+        }
+        return args[i];
+    }
+
+    /**
+     * Um pedido lido de uma conexão, à espera de uma thread de análise.
+     */
+    private static final class Pedido {
+        final SocketChannel canal;
+        final byte[] codigo;
+        final long chegada;
+        final CompletableFuture<Void> respondido = new CompletableFuture<>();
+
+        Pedido(SocketChannel canal, byte[] codigo, long chegada) {
+            this.canal = canal;
+            this.codigo = codigo;
+            this.chegada = chegada;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package Main;
+
+import Analizer.LexerFactory;
+import Analizer.TokenType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente de carga do {@link LexerServer}: abre várias conexões ao mesmo
+ * tempo, manda pedidos sem pausa e mede a latência de cada um do envio ao
+ * fim da resposta. No fim escreve a vazão e os percentis de latência no
+ * cliente e no servidor.
+ *
+ * <pre>
+ * java -cp Analizador_Lexico-MiniPascal.jar Main.Main --load [opções] [arquivo...]
+ *   --connect porta|caminho  servidor em uma porta de localhost ou socket Unix;
+ *                            sem a opção, um servidor é aberto neste processo
+ *   --connections n          conexões simultâneas (padrão 16)
+ *   --requests n             pedidos medidos (padrão 20000)
+ *   --warmup n               pedidos antes da medição, para aquecer o JIT (padrão 2000)
+ *   --size bytes             tamanho do programa gerado quando não há arquivos (padrão 2048)
+ * </pre>
+ *
+ * Os arquivos informados são enviados em rodízio; sem arquivos, é enviado um
+ * programa MiniPascal gerado com o tamanho pedido.
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static int run(String[] args) {
+        String destino = null;
+        int conexoes = 16;
+        int pedidos = 20000;
+        int aquecimento = 2000;
+        int tamanho = 2048;
+        List<byte[]> codigos = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--connect":
+                        destino = valor(args, ++i, arg);
+                        break;
+                    case "--connections":
+                        conexoes = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--requests":
+                        pedidos = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    case "--warmup":
+                        aquecimento = Integer.parseInt(valor(args, ++i, arg));
+                        if (aquecimento < 0) {
+                            throw new IllegalArgumentException("Valor inválido para " + arg + ": " + aquecimento);
+                        }
+                        break;
+                    case "--size":
+                        tamanho = positivo(valor(args, ++i, arg), arg);
+                        break;
+                    default:
+                        if (arg.startsWith("--")) {
+                            throw new IllegalArgumentException("Opção desconhecida: " + arg);
+                        }
+                        codigos.add(Files.readAllBytes(Paths.get(arg)));
+                }
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: Main.Main --load [--connect porta|caminho] [--connections n] [--requests n]"
+                    + " [--warmup n] [--size bytes] [arquivo...]");
+            return 2;
+        }
+        if (codigos.isEmpty()) {
+            codigos.add(gerarPrograma(tamanho).getBytes(StandardCharsets.UTF_8));
+        }
+
+        LexerServer servidorLocal = null;
+        SocketAddress endereco;
+        try {
+            if (destino == null) {
+                servidorLocal = new LexerServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                        LexerFactory.Engine.SWITCH);
+                servidorLocal.iniciar(Runtime.getRuntime().availableProcessors());
+                endereco = servidorLocal.getEndereco();
+            } else if (destino.chars().allMatch(Character::isDigit)) {
+                endereco = new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(destino));
+            } else {
+                endereco = UnixDomainSocketAddress.of(destino);
+            }
+            return medir(endereco, conexoes, aquecimento, pedidos, codigos);
+        } catch (IOException e) {
+            System.err.println("Falha na carga: " + e);
+            return 2;
+        } finally {
+            if (servidorLocal != null) {
+                try {
+                    servidorLocal.close();
+                } catch (IOException e) {
+                    // Só o teste usava o servidor
+                }
+            }
+        }
+    }
+
+    private static int medir(SocketAddress endereco, int conexoes, int aquecimento, int pedidos,
+                             List<byte[]> codigos) throws IOException {
+        int total = aquecimento + pedidos;
+        long[] latencias = new long[total];
+        long[] latenciasServidor = new long[total];
+        long[] bytesEnviados = new long[total];
+        AtomicInteger proximo = new AtomicInteger();
+        long[] inicioMedicao = new long[1];
+
+        ExecutorService pool = Executors.newFixedThreadPool(conexoes);
+        List<Future<Long>> resultados = new ArrayList<>();
+        for (int c = 0; c < conexoes; c++) {
+            resultados.add(pool.submit(() -> {
+                long tokens = 0;
+                try (SocketChannel canal = abrir(endereco)) {
+                    DataOutputStream saida = new DataOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+                    DataInputStream entrada = new DataInputStream(
+                            new BufferedInputStream(Channels.newInputStream(canal), 1 << 16));
+                    for (int i = proximo.getAndIncrement(); i < total; i = proximo.getAndIncrement()) {
+                        if (i == aquecimento) {
+                            inicioMedicao[0] = System.nanoTime();
+                        }
+                        byte[] codigo = codigos.get(i % codigos.size());
+                        long inicio = System.nanoTime();
+                        saida.writeInt(codigo.length);
+                        saida.write(codigo);
+                        saida.flush();
+                        tokens += lerResposta(entrada, latenciasServidor, i);
+                        latencias[i] = System.nanoTime() - inicio;
+                        bytesEnviados[i] = codigo.length;
+                    }
+                }
+                return tokens;
+            }));
+        }
+        long tokens = 0;
+        try {
+            for (Future<Long> resultado : resultados) {
+                tokens += resultado.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Falha em uma conexão", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        long fim = System.nanoTime();
+
+        long bytes = 0;
+        for (int i = aquecimento; i < total; i++) {
+            bytes += bytesEnviados[i];
+        }
+        long[] medidas = Arrays.copyOfRange(latencias, aquecimento, total);
+        long[] medidasServidor = Arrays.copyOfRange(latenciasServidor, aquecimento, total);
+        Arrays.sort(medidas);
+        Arrays.sort(medidasServidor);
+        double segundos = (fim - inicioMedicao[0]) / 1e9;
+        System.out.printf(Locale.ROOT, "Pedidos: %d (+%d de aquecimento)  Conexões: %d  Tokens: %d%n",
+                pedidos, aquecimento, conexoes, tokens);
+        System.out.printf(Locale.ROOT, "Vazão: %.0f pedidos/s, %.2f MB/s%n",
+                pedidos / segundos, bytes / 1e6 / segundos);
+        System.out.println("Latência no cliente (ms):  " + Latencias.resumo(medidas));
+        System.out.println("Latência no servidor (ms): " + Latencias.resumo(medidasServidor));
+        return 0;
+    }
+
+    private static SocketChannel abrir(SocketAddress endereco) throws IOException {
+        SocketChannel canal = endereco instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        canal.connect(endereco);
+        return canal;
+    }
+
+    /**
+     * Lê os blocos de uma resposta até o fim, guardando a latência informada
+     * pelo servidor, e devolve a quantidade de tokens.
+     */
+    private static long lerResposta(DataInputStream entrada, long[] latenciasServidor, int pedido)
+            throws IOException {
+        long tokens = 0;
+        int quantidade;
+        while ((quantidade = entrada.readInt()) != LexerServer.FIM_RESPOSTA) {
+            tokens += quantidade;
+            for (int t = 0; t < quantidade; t++) {
+                int tipo = entrada.readByte();
+                entrada.skipNBytes(12);
+                if (tipo == TokenType.ERROR.ordinal()) {
+                    entrada.readByte();
+                    entrada.skipNBytes(entrada.readInt());
+                }
+            }
+            int avisos = entrada.readInt();
+            for (int a = 0; a < avisos; a++) {
+                entrada.skipNBytes(13);
+                entrada.skipNBytes(entrada.readInt());
+            }
+        }
+        latenciasServidor[pedido] = entrada.readLong() * 1000;
+        entrada.readInt();
+        return tokens;
+    }
+
+    /**
+     * Programa MiniPascal válido com cerca de {@code tamanho} caracteres.
+     */
+    static String gerarPrograma(int tamanho) {
+        StringBuilder programa = new StringBuilder("program carga;\nvar a, b: integer;\n    c: real;\nbegin\n");
+        int i = 0;
+        while (programa.length() < tamanho) {
+            programa.append("  a := a + ").append(i++).append(" * (b - 2); { comentario }\n")
+                    .append("  if a <= b then writeln('texto', a) else c := 1.5;\n");
+        }
+        return programa.append("end.\n").toString();
+    }
+
+    private static int positivo(String valor, String opcao) {
+        int numero = Integer.parseInt(valor);
+        if (numero <= 0) {
+            throw new IllegalArgumentException("Valor inválido para " + opcao + ": " + valor);
+        }
+        return numero;
+    }
+
+    private static String valor(String[] args, int i, String opcao) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("Falta o valor de " + opcao);
+        }
+        return args[i];
+    }
+}
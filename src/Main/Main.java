@@ -2,8 +2,29 @@ package Main;
 
 import View.AnalizadorView;
 
+import java.util.Arrays;
+
 public class Main {
+    /**
+     * Sem argumentos abre a interface gráfica; com {@code --server} sobe o
+     * servidor de análise ({@link LexerServer}), com {@code --load} mede a
+     * carga sobre ele ({@link LoadGenerator}); com outros argumentos analisa
+     * os arquivos informados em modo de linha de comando (ver {@link BatchLexer}).
+     */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            String[] resto = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "--server":
+                    System.exit(LexerServer.run(resto));
+                    break;
+                case "--load":
+                    System.exit(LoadGenerator.run(resto));
+                    break;
+                default:
+                    System.exit(BatchLexer.run(args));
+            }
+        }
         launchAnalizadorView();
     }
 
@@ -1,20 +1,22 @@
 package View;
 
-import Analizer.Lexer;
-import Analizer.Token;
+import Analizer.IncrementalLexer;
+import Analizer.TokenBuffer;
+import Analizer.TokenIndex;
 import Analizer.TokenType;
+import Controller.AnalysisWorker;
 import Controller.Controller;
 
 import javax.swing.*;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.DefaultHighlighter;
-import javax.swing.text.Highlighter;
+import javax.swing.text.Element;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.geom.Rectangle2D;
+import java.util.EnumSet;
 import java.util.List;
 
 public class AnalizadorView extends JFrame {
@@ -22,10 +24,17 @@ public class AnalizadorView extends JFrame {
     private JTextArea sourceCodeTextArea;
     private JButton analyzeButton;
     private JTable tokenTable;
+    private TokenTableModel tokenTableModel;
     private JLabel elapsedTimeLabel;
+    private JComboBox<Object> filterComboBox;  // "Todos" ou um TokenType
+    private JLabel filterCountLabel;
+    private JTextField goToLineField;
     private JScrollPane scrollPane1;
     private JScrollPane scrollPane2;
     private LineNumberPanel lineNumberPanel;  // Painel para números de linha
+    private final IncrementalLexer incrementalLexer = new IncrementalLexer();  // Tokens mantidos a cada edição
+    private Timer liveAnalysisTimer;  // Atualiza a tabela quando o usuário para de digitar
+    private AnalysisWorker analysisWorker;  // Análise em segundo plano em andamento, se houver
 
     public AnalizadorView() {
         initComponents();
@@ -62,29 +71,70 @@ public class AnalizadorView extends JFrame {
         add(analyzeButton);
 
         // JTable para exibir tokens
-        tokenTable = new JTable(new DefaultTableModel(
-                new Object[][]{},
-                new String[]{"Lexema", "Token", "Linha"}
-        ));
+        tokenTableModel = new TokenTableModel();
+        tokenTable = new JTable(tokenTableModel);
         scrollPane2 = new JScrollPane(tokenTable);
         scrollPane2.setBounds(460, 60, 400, 300);
         add(scrollPane2);
 
+        // Filtro por tipo de token, com a contagem do tipo escolhido
+        filterComboBox = new JComboBox<>();
+        filterComboBox.addItem("Todos");
+        for (TokenType type : TokenType.values()) {
+            filterComboBox.addItem(type);
+        }
+        filterComboBox.setBounds(460, 370, 180, 30);
+        filterComboBox.addActionListener(e -> filterTokens());
+        add(filterComboBox);
+
+        filterCountLabel = new JLabel();
+        filterCountLabel.setBounds(650, 370, 210, 30);
+        add(filterCountLabel);
+
+        // Ir para o primeiro token (do filtro) numa linha do código
+        JLabel goToLineLabel = new JLabel("Linha:");
+        goToLineLabel.setBounds(460, 410, 50, 30);
+        add(goToLineLabel);
+
+        goToLineField = new JTextField();
+        goToLineField.setBounds(510, 410, 70, 30);
+        goToLineField.addActionListener(e -> goToLine());
+        add(goToLineField);
+
+        JButton goToLineButton = new JButton("Ir");
+        goToLineButton.setBounds(590, 410, 60, 30);
+        goToLineButton.addActionListener(e -> goToLine());
+        add(goToLineButton);
+
         // JLabel para exibir o tempo de execução
         elapsedTimeLabel = new JLabel("Tempo de Execução: 0 ms");
         elapsedTimeLabel.setBounds(20, 410, 200, 30);
         add(elapsedTimeLabel);
 
-        // Listener para atualizar números de linha ao redimensionar a JTextArea
+        // Análise ao vivo: roda um pouco depois da última edição
+        liveAnalysisTimer = new Timer(300, e -> liveAnalysis());
+        liveAnalysisTimer.setRepeats(false);
+
+        // Listener para atualizar números de linha e reanalisar só o trecho editado
         sourceCodeTextArea.getDocument().addDocumentListener(new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
+                try {
+                    incrementalLexer.inserir(e.getOffset(), e.getDocument().getText(e.getOffset(), e.getLength()));
+                } catch (BadLocationException ex) {
+                    ex.printStackTrace();
+                }
+                cancelAnalysis();
                 updateLineNumbers();
+                liveAnalysisTimer.restart();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
+                incrementalLexer.remover(e.getOffset(), e.getLength());
+                cancelAnalysis();
                 updateLineNumbers();
+                liveAnalysisTimer.restart();
             }
 
             @Override
@@ -98,45 +148,99 @@ public class AnalizadorView extends JFrame {
     }
 
     private void analyzeButtonActionPerformed(ActionEvent evt) {
-        String sourceCode = sourceCodeTextArea.getText();
-
-        if (sourceCode.isEmpty()) {
+        if (sourceCodeTextArea.getDocument().getLength() == 0) {
             JOptionPane.showMessageDialog(this, "Por favor, insira o código fonte.", "Erro", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        Controller controller = new Controller(new Lexer(sourceCode), this);
-        controller.analyzeSourceCode(sourceCode);
+        liveAnalysisTimer.stop();
+        cancelAnalysis();
+        Controller controller = new Controller(null, this);
+        analysisWorker = controller.analyzeInBackground(sourceCodeTextArea.getText());
     }
 
-    public void displayTokens(List<Token> tokens, long elapsedTime) {
-        DefaultTableModel model = (DefaultTableModel) tokenTable.getModel();
-        model.setRowCount(0);
+    // Uma análise em andamento fica obsoleta quando o texto muda ou outra começa
+    private void cancelAnalysis() {
+        if (analysisWorker != null) {
+            analysisWorker.cancel(true);
+            analysisWorker = null;
+        }
+    }
 
-        for (Token token : tokens) {
-            model.addRow(new Object[]{token.getLexema(), token.getType(), token.getLinha()});
+    // Atualiza a tabela com os tokens já mantidos pelo lexer incremental
+    private void liveAnalysis() {
+        if (sourceCodeTextArea.getDocument().getLength() > 0) {
+            new Controller(null, this).analyzeIncremental(incrementalLexer);
         }
+    }
 
-        elapsedTimeLabel.setText("Tempo de Execução: " + elapsedTime + " ms");
-        highlightErrors(tokens);
+    // Exibe só o tipo escolhido, sem copiar linhas: a tabela lê pelo índice de tipos
+    private void filterTokens() {
+        Object selected = filterComboBox.getSelectedItem();
+        tokenTableModel.filtrar(selected instanceof TokenType ? EnumSet.of((TokenType) selected) : null);
+        updateFilterCount();
     }
 
-    private void highlightErrors(List<Token> tokens) {
-        Highlighter highlighter = sourceCodeTextArea.getHighlighter();
-        highlighter.removeAllHighlights();
-        Highlighter.HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(Color.RED);
+    private void updateFilterCount() {
+        TokenIndex index = tokenTableModel.getIndice();
+        Object selected = filterComboBox.getSelectedItem();
+        if (index == null) {
+            filterCountLabel.setText("");
+        } else if (selected instanceof TokenType) {
+            filterCountLabel.setText(index.contar((TokenType) selected) + " de " + getTokenCount() + " tokens");
+        } else {
+            filterCountLabel.setText(getTokenCount() + " tokens");
+        }
+    }
 
-        for (Token token : tokens) {
-            if (token.getType() == TokenType.ERROR) {
-                try {
-                    int start = sourceCodeTextArea.getLineStartOffset(token.getLinha() - 1);
-                    int end = sourceCodeTextArea.getLineEndOffset(token.getLinha() - 1);
-                    highlighter.addHighlight(start, end, painter);
-                } catch (BadLocationException e) {
-                    e.printStackTrace();
-                }
-            }
+    private void goToLine() {
+        int line;
+        try {
+            line = Integer.parseInt(goToLineField.getText().trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "Informe o número da linha.", "Erro", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        int row = tokenTableModel.procurarLinha(line);
+        if (row < 0) {
+            JOptionPane.showMessageDialog(this, "Nenhum token a partir da linha " + line + ".", "Aviso",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
         }
+        tokenTable.setRowSelectionInterval(row, row);
+        tokenTable.scrollRectToVisible(tokenTable.getCellRect(row, 0, true));
+    }
+
+    public void displayTokens(TokenBuffer tokens, long elapsedTime) {
+        tokenTableModel.exibir(tokens);
+        finishTokens(elapsedTime);
+    }
+
+    public void clearTokens() {
+        tokenTableModel.limpar();
+        elapsedTimeLabel.setText("Analisando...");
+        updateFilterCount();
+    }
+
+    public void appendTokens(List<TokenBuffer> lotes) {
+        tokenTableModel.acrescentar(lotes);
+        updateFilterCount();
+    }
+
+    public void finishTokens(long elapsedTime) {
+        elapsedTimeLabel.setText("Tempo de Execução: " + elapsedTime + " ms");
+        highlightErrors(tokenTableModel.getTokens());
+        updateFilterCount();
+    }
+
+    public int getTokenCount() {
+        TokenBuffer tokens = tokenTableModel.getTokens();
+        return tokens == null ? 0 : tokens.size();
+    }
+
+    // Destaca o trecho exato de cada diagnóstico, com um único highlight para todos
+    private void highlightErrors(TokenBuffer tokens) {
+        DiagnosticPainter.aplicar(sourceCodeTextArea, tokens == null ? null : tokens.getDiagnostics());
     }
 
     public void displayError(String message) {
@@ -147,24 +251,37 @@ public class AnalizadorView extends JFrame {
         SwingUtilities.invokeLater(() -> new AnalizadorView().setVisible(true));
     }
 
-    // Classe interna para desenhar números de linha na JTextArea
+    // Classe interna para desenhar números de linha na JTextArea.
+    // Usa a estrutura de linhas (Elements) do documento e só desenha as linhas visíveis.
     private static class LineNumberPanel extends JPanel {
-        private JTextArea textArea;
+        private static final int MARGEM = 5;
+
+        private final JTextArea textArea;
+        private int lineCount;
 
         public LineNumberPanel(JTextArea textArea) {
             this.textArea = textArea;
-            FontMetrics fontMetrics = textArea.getFontMetrics(textArea.getFont());
-            int lineHeight = fontMetrics.getHeight();
-            setPreferredSize(new Dimension(calculateWidth(), textArea.getHeight()));
+            this.lineCount = textArea.getDocument().getDefaultRootElement().getElementCount();
+        }
+
+        // Largura para o número de dígitos da última linha, e a mesma altura da JTextArea
+        @Override
+        public Dimension getPreferredSize() {
+            FontMetrics fontMetrics = getFontMetrics(textArea.getFont());
+            int digits = Math.max(3, String.valueOf(lineCount).length());
+            int width = 2 * MARGEM + digits * fontMetrics.charWidth('0');
+            return new Dimension(width, textArea.getPreferredSize().height);
         }
 
-        private static int calculateWidth() {
-            int lines = 0;
-            int maxLines = 999; // Número máximo de linhas para exibir (ajuste conforme necessário)
-            while (lines < maxLines) {
-                lines++;
+        // Só refaz o layout e redesenha quando a quantidade de linhas muda
+        void lineCountChanged() {
+            int count = textArea.getDocument().getDefaultRootElement().getElementCount();
+            if (count == lineCount) {
+                return;
             }
-            return 10 + 7 * String.valueOf(lines).length();
+            lineCount = count;
+            revalidate();
+            repaint();
         }
 
         @Override
@@ -173,39 +290,32 @@ public class AnalizadorView extends JFrame {
             Graphics2D g2d = (Graphics2D) g.create();
             g2d.setFont(textArea.getFont());
             FontMetrics fontMetrics = g2d.getFontMetrics();
-            int lineHeight = fontMetrics.getHeight();
 
             Rectangle clip = g2d.getClipBounds();
-            int startOffset = textArea.viewToModel(new Point(0, clip.y));
-            int endOffset = textArea.viewToModel(new Point(0, clip.y + clip.height));
-
-            String text = textArea.getText();
-            int startLineNumber = lineNumberAtOffset(text, startOffset);
-            int endLineNumber = lineNumberAtOffset(text, endOffset);
-
-            int y = 0;
-            for (int lineNumber = startLineNumber; lineNumber <= endLineNumber; ++lineNumber) {
-                String line = String.valueOf(lineNumber);
-                int x = getWidth() - fontMetrics.stringWidth(line) - 5;
-                y += lineHeight;
-                g2d.drawString(line, x, y);
-            }
-            g2d.dispose();
-        }
-
-        private int lineNumberAtOffset(String text, int offset) {
-            int lines = 1;
-            for (int i = 0; i < offset && i < text.length(); ++i) {
-                if (text.charAt(i) == '\n') {
-                    ++lines;
+            Element root = textArea.getDocument().getDefaultRootElement();
+            int startLine = root.getElementIndex(textArea.viewToModel2D(new Point(0, clip.y)));
+            int endLine = root.getElementIndex(textArea.viewToModel2D(new Point(0, clip.y + clip.height)));
+
+            try {
+                for (int line = startLine; line <= endLine; line++) {
+                    Rectangle2D bounds = textArea.modelToView2D(root.getElement(line).getStartOffset());
+                    if (bounds == null) {
+                        break;
+                    }
+                    String number = String.valueOf(line + 1);
+                    int x = getWidth() - fontMetrics.stringWidth(number) - MARGEM;
+                    int y = (int) bounds.getY() + fontMetrics.getAscent();
+                    g2d.drawString(number, x, y);
                 }
+            } catch (BadLocationException e) {
+                e.printStackTrace();
             }
-            return lines;
+            g2d.dispose();
         }
     }
 
     // Método para atualizar os números de linha
     private void updateLineNumbers() {
-        lineNumberPanel.repaint();
+        lineNumberPanel.lineCountChanged();
     }
 }
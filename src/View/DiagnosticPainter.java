@@ -0,0 +1,113 @@
+package View;
+
+import Analizer.DiagnosticList;
+import Analizer.Severity;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Highlighter;
+import javax.swing.text.JTextComponent;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.util.Arrays;
+
+/**
+ * Pinta os trechos de todos os diagnósticos com um único highlight sobre o
+ * documento inteiro, em vez de um highlight por erro.
+ *
+ * Os trechos são ordenados pelo início uma vez; a cada pintura só os que
+ * cruzam a área visível são desenhados, achados por busca binária sobre o
+ * maior fim acumulado.
+ */
+class DiagnosticPainter implements Highlighter.HighlightPainter {
+
+    private static final Highlighter.HighlightPainter ERRO = new DefaultHighlighter.DefaultHighlightPainter(
+            new Color(255, 120, 120));
+    private static final Highlighter.HighlightPainter AVISO = new DefaultHighlighter.DefaultHighlightPainter(
+            new Color(255, 200, 90));
+
+    private final DiagnosticList diagnosticos;
+    private final int[] ordem;       // Diagnósticos com trecho, ordenados pelo início
+    private final int[] maiorFim;    // maiorFim[i] = maior fim entre ordem[0..i]
+
+    DiagnosticPainter(DiagnosticList diagnosticos) {
+        this.diagnosticos = diagnosticos;
+        long[] chaves = new long[diagnosticos.size()];
+        int total = 0;
+        for (int d = 0; d < diagnosticos.size(); d++) {
+            if (diagnosticos.getSeverity(d) != Severity.INFO) {
+                chaves[total++] = ((long) diagnosticos.getInicio(d) << 32) | d;
+            }
+        }
+        Arrays.sort(chaves, 0, total);
+        ordem = new int[total];
+        maiorFim = new int[total];
+        int fim = 0;
+        for (int i = 0; i < total; i++) {
+            ordem[i] = (int) chaves[i];
+            fim = Math.max(fim, visivel(ordem[i]));
+            maiorFim[i] = fim;
+        }
+    }
+
+    @Override
+    public void paint(Graphics g, int p0, int p1, Shape bounds, JTextComponent c) {
+        Rectangle clip = g.getClipBounds();
+        int inicio = 0;
+        int fim = c.getDocument().getLength();
+        if (clip != null) {
+            inicio = c.viewToModel2D(new Point(0, clip.y));
+            fim = Math.min(fim, c.viewToModel2D(new Point(c.getWidth(), clip.y + clip.height)) + 1);
+        }
+
+        // Primeiro trecho que pode terminar depois do início visível
+        int baixo = 0;
+        int alto = ordem.length;
+        while (baixo < alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (maiorFim[meio] <= inicio) {
+                baixo = meio + 1;
+            } else {
+                alto = meio;
+            }
+        }
+        for (int i = baixo; i < ordem.length; i++) {
+            int d = ordem[i];
+            int a = diagnosticos.getInicio(d);
+            if (a >= fim) {
+                break;
+            }
+            int b = Math.min(visivel(d), c.getDocument().getLength());
+            if (b > inicio && b > a) {
+                Highlighter.HighlightPainter painter = diagnosticos.getSeverity(d) == Severity.ERROR ? ERRO : AVISO;
+                painter.paint(g, a, b, bounds, c);
+            }
+        }
+    }
+
+    /**
+     * Fim do trecho a pintar; trechos vazios viram um caractere para aparecerem.
+     */
+    private int visivel(int d) {
+        return Math.max(diagnosticos.getFim(d), diagnosticos.getInicio(d) + 1);
+    }
+
+    /**
+     * Troca os highlights de diagnósticos do componente por um só, para a lista informada.
+     */
+    static void aplicar(JTextComponent componente, DiagnosticList diagnosticos) {
+        Highlighter highlighter = componente.getHighlighter();
+        highlighter.removeAllHighlights();
+        if (diagnosticos == null || diagnosticos.size() == 0) {
+            return;
+        }
+        try {
+            highlighter.addHighlight(0, componente.getDocument().getLength(), new DiagnosticPainter(diagnosticos));
+        } catch (BadLocationException e) {
+            e.printStackTrace();
+        }
+    }
+}
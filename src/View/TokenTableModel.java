@@ -0,0 +1,149 @@
+package View;
+
+import Analizer.TokenBitmap;
+import Analizer.TokenBuffer;
+import Analizer.TokenIndex;
+import Analizer.TokenType;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Modelo da tabela de tokens que lê direto do {@link TokenBuffer}, sem uma
+ * linha de objetos por token. O lexema só é criado quando a linha aparece na
+ * tela. Deve ser usado apenas na thread de eventos do Swing.
+ *
+ * Com um filtro de tipos, as linhas da tabela são as posições no
+ * {@link TokenBitmap} do filtro, e cada uma é traduzida para o token na hora
+ * de desenhar; nenhuma linha é copiada.
+ */
+class TokenTableModel extends AbstractTableModel {
+
+    private static final String[] COLUNAS = {"Lexema", "Token", "Linha"};
+
+    private TokenBuffer tokens;
+    private TokenIndex indice;
+    private Set<TokenType> tiposFiltro;  // Nulo quando todos os tokens são exibidos
+    private TokenBitmap filtro;
+
+    /**
+     * Remove todas as linhas.
+     */
+    void limpar() {
+        tokens = null;
+        indice = null;
+        filtro = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Exibe um buffer já completo, que não pode mais ser alterado por quem o criou.
+     */
+    void exibir(TokenBuffer tokens) {
+        this.tokens = tokens;
+        indice = TokenIndex.of(tokens);
+        aplicarFiltro();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Acrescenta os lotes ao fim da tabela com um único evento de inserção.
+     */
+    void acrescentar(List<TokenBuffer> lotes) {
+        int primeiro = getRowCount();
+        for (TokenBuffer lote : lotes) {
+            if (tokens == null) {
+                tokens = lote;
+                indice = TokenIndex.of(tokens);
+            } else {
+                tokens.anexar(lote);
+            }
+        }
+        if (indice != null) {
+            indice.atualizar();
+            aplicarFiltro();
+        }
+        int ultimo = getRowCount() - 1;
+        if (ultimo >= primeiro) {
+            fireTableRowsInserted(primeiro, ultimo);
+        }
+    }
+
+    TokenBuffer getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Índice dos tokens exibidos, ou {@code null} sem tokens.
+     */
+    TokenIndex getIndice() {
+        return indice;
+    }
+
+    /**
+     * Exibe só os tokens dos tipos informados; {@code null} exibe todos.
+     */
+    void filtrar(Set<TokenType> tipos) {
+        tiposFiltro = tipos;
+        aplicarFiltro();
+        fireTableDataChanged();
+    }
+
+    private void aplicarFiltro() {
+        filtro = tiposFiltro == null || indice == null ? null : indice.filtrar(tiposFiltro);
+    }
+
+    /**
+     * Índice no buffer do token exibido na linha.
+     */
+    int getToken(int row) {
+        return filtro == null ? row : filtro.get(row);
+    }
+
+    /**
+     * Linha da tabela do primeiro token exibido na linha {@code linha} do
+     * código ou depois dela, ou -1 se não houver.
+     */
+    int procurarLinha(int linha) {
+        int token = indice == null ? -1 : indice.getPrimeiroDaLinha(linha);
+        if (token < 0 || filtro == null) {
+            return token;
+        }
+        int row = filtro.contarAntes(token);
+        return row < filtro.size() ? row : -1;
+    }
+
+    @Override
+    public int getRowCount() {
+        if (tokens == null) {
+            return 0;
+        }
+        return filtro == null ? tokens.size() : filtro.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUNAS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUNAS[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 2 ? Integer.class : Object.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int token = getToken(row);
+        switch (column) {
+            case 0: return tokens.getLexema(token);
+            case 1: return tokens.getType(token);
+            default: return tokens.getLinha(token);
+        }
+    }
+}
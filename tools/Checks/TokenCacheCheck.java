@@ -0,0 +1,199 @@
+package Checks;
+
+import Analizer.DiagnosticList;
+import Analizer.Lexer;
+import Analizer.TokenBuffer;
+import Analizer.TokenCache;
+import Analizer.TokenType;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Teste do {@link TokenCache} com várias threads escrevendo no mesmo
+ * diretório e com entradas corrompidas.
+ *
+ * Na primeira parte, cada thread tem o seu cache, todos no mesmo diretório
+ * e com limite de tamanho mínimo, para que quase toda escrita dispare a
+ * remoção de entradas ao mesmo tempo que outras threads leem, escrevem e
+ * removem. Nenhuma análise pode lançar exceção, e todo resultado, vindo do
+ * cache ou não, tem de ser igual ao do {@link Lexer}.
+ *
+ * Na segunda, cada byte de uma entrada é trocado, um de cada vez: a leitura
+ * seguinte tem de contar como falta e devolver de novo o resultado do Lexer,
+ * mesmo quando a entrada alterada ainda pode ser decodificada.
+ *
+ * <pre>
+ * ant check-cache
+ * java -cp build/classes:build/tools/classes Checks.TokenCacheCheck [--threads n] [--analises n]
+ * </pre>
+ * Termina com código 1 na primeira divergência.
+ */
+public final class TokenCacheCheck {
+
+    private static final String[] TRECHOS = {
+        "x", "contador", "soma_1", ":=", "+", "*", "(", ")", "<=", ";", ";", " ", " ", "\n",
+        "begin", "end", "if", "then", "while", "do", "0", "42", "3.14", "1.2.3", "99999999999999999999",
+        "0.12345678901234567890", "'texto'", "{ comentário }", "@",
+    };
+
+    private TokenCacheCheck() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = 16;
+        int analises = 400;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--analises":
+                    analises = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + args[i]);
+            }
+        }
+        Random aleatorio = new Random(1);
+        List<String> codigos = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            codigos.add(gerar(aleatorio, 1 + aleatorio.nextInt(300)));
+        }
+
+        Path diretorio = Files.createTempDirectory("tokencache");
+        try {
+            String divergencia = escreverJuntos(diretorio.resolve("concorrente"), codigos, threads, analises);
+            if (divergencia == null) {
+                divergencia = corromper(diretorio.resolve("corrompido"), codigos.get(0) + "\n" + codigos.get(1));
+            }
+            if (divergencia != null) {
+                System.err.println("TokenCache divergiu do Lexer: " + divergencia);
+                System.exit(1);
+            }
+        } finally {
+            apagar(diretorio);
+        }
+        System.out.println(threads * analises + " análises em " + threads
+                + " threads e entradas corrompidas conferidas: TokenCache igual ao Lexer");
+    }
+
+    private static String escreverJuntos(Path diretorio, List<String> codigos, int threads, int analises)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> resultados = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long semente = t;
+                resultados.add(executor.submit(() -> {
+                    TokenCache cache = new TokenCache(diretorio, 1);
+                    Random aleatorio = new Random(semente);
+                    for (int i = 0; i < analises; i++) {
+                        String codigo = codigos.get(aleatorio.nextInt(codigos.size()));
+                        String diferenca = comparar(new Lexer(codigo).analisarCompacto(), cache.analisar(codigo));
+                        if (diferenca != null) {
+                            return "thread " + semente + ", análise " + i + ": " + diferenca;
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<String> resultado : resultados) {
+                String divergencia = resultado.get(); // Uma exceção na análise sai daqui
+                if (divergencia != null) {
+                    return divergencia;
+                }
+            }
+            return null;
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private static String corromper(Path diretorio, String codigo) throws IOException {
+        TokenCache cache = new TokenCache(diretorio, Long.MAX_VALUE);
+        TokenBuffer esperado = new Lexer(codigo).analisarCompacto();
+        cache.analisar(codigo);
+        Path entrada;
+        try (DirectoryStream<Path> arquivos = Files.newDirectoryStream(diretorio, "*.tok")) {
+            entrada = arquivos.iterator().next();
+        }
+        byte[] original = Files.readAllBytes(entrada);
+        for (int p = 0; p < original.length; p++) {
+            byte[] alterado = original.clone();
+            alterado[p] ^= 0x10;
+            Files.write(entrada, alterado);
+            long faltas = cache.getMisses();
+            String diferenca = comparar(esperado, cache.analisar(codigo));
+            if (diferenca != null) {
+                return "byte " + p + " trocado: " + diferenca;
+            }
+            if (cache.getMisses() != faltas + 1) {
+                return "byte " + p + " trocado: a entrada foi aceita";
+            }
+        }
+        return null;
+    }
+
+    private static String comparar(TokenBuffer esperado, TokenBuffer obtido) {
+        if (esperado.size() != obtido.size()) {
+            return obtido.size() + " tokens, esperado " + esperado.size();
+        }
+        for (int i = 0; i < esperado.size(); i++) {
+            boolean igual = esperado.getType(i) == obtido.getType(i)
+                    && esperado.getInicio(i) == obtido.getInicio(i)
+                    && esperado.getFim(i) == obtido.getFim(i)
+                    && esperado.getLinha(i) == obtido.getLinha(i);
+            if (igual && esperado.getType(i) == TokenType.NUMBER) {
+                igual = esperado.isReal(i) == obtido.isReal(i)
+                        && (esperado.isReal(i)
+                                ? Double.doubleToRawLongBits(esperado.getReal(i)) == Double.doubleToRawLongBits(obtido.getReal(i))
+                                : esperado.getInteiro(i) == obtido.getInteiro(i));
+            }
+            if (!igual) {
+                return "token " + i + ": " + obtido.get(i) + ", esperado " + esperado.get(i);
+            }
+        }
+        DiagnosticList a = esperado.getDiagnostics();
+        DiagnosticList b = obtido.getDiagnostics();
+        if (a.size() != b.size()) {
+            return b.size() + " diagnósticos, esperado " + a.size();
+        }
+        for (int d = 0; d < a.size(); d++) {
+            if (a.getCode(d) != b.getCode(d) || a.getTokenIndex(d) != b.getTokenIndex(d)
+                    || a.getInicio(d) != b.getInicio(d) || a.getFim(d) != b.getFim(d)
+                    || !a.getMensagem(d).equals(b.getMensagem(d))) {
+                return "diagnóstico " + d + ": " + b.getCode(d) + " " + b.getMensagem(d) + ", esperado "
+                        + a.getCode(d) + " " + a.getMensagem(d);
+            }
+        }
+        return null;
+    }
+
+    private static String gerar(Random aleatorio, int trechos) {
+        StringBuilder codigo = new StringBuilder();
+        for (int i = 0; i < trechos; i++) {
+            codigo.append(TRECHOS[aleatorio.nextInt(TRECHOS.length)]);
+        }
+        return codigo.toString();
+    }
+
+    private static void apagar(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            for (Path arquivo : (Iterable<Path>) arquivos.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(arquivo);
+            }
+        }
+    }
+}
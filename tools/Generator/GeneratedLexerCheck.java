@@ -0,0 +1,231 @@
+package Generator;
+
+import Analizer.Lexer;
+import Analizer.LexerFactory;
+import Analizer.ParallelLexer;
+import Analizer.SourceBuffer;
+import Analizer.Token;
+import Analizer.TokenBuffer;
+import Analizer.TokenType;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Teste diferencial do {@code GeneratedLexer}: analisa o mesmo código com
+ * ele e com o {@link Lexer} escrito à mão e exige tokens, posições, linhas,
+ * colunas, valores numéricos e diagnósticos idênticos. Confere a análise
+ * completa, a leitura sob demanda por um Reader e a análise em partes do
+ * {@link ParallelLexer}. Também confere a leitura de arquivos mapeados e
+ * de canais com pares de surrogates na borda da janela de leitura, onde o
+ * buffer pede um único caractere ao Reader.
+ *
+ * O código vem dos arquivos informados e de programas aleatórios montados
+ * com trechos escolhidos para os casos difíceis: prefixos e extensões de
+ * palavras reservadas, letras e dígitos fora do ASCII, números malformados,
+ * comentários e textos não fechados e caracteres inválidos.
+ *
+ * <pre>
+ * ant check-lexer
+ * java -cp build/classes:build/tools/classes Generator.GeneratedLexerCheck [--casos n] [--semente s] [arquivo...]
+ * </pre>
+ * Termina com código 1 na primeira divergência, mostrando o código que a causou.
+ */
+public final class GeneratedLexerCheck {
+
+    private static final String[] TRECHOS = {
+        "program", "var", "begin", "end", "if", "then", "else", "while", "do", "integer", "real",
+        "progra", "programa", "en", "ends", "End", "IF", "if_", "do1", "reals", "whil", "thenx",
+        "x", "abc", "_x", "a_b", "ação", "λ", "x٣", "Ω1",
+        "0", "7", "42", "1.5", "3.", "1.2.3", "0.000", "٣٤", "99999999999999999999",
+        "0.12345678901234567890", "1e5",
+        "+", "-", "*", "/", "=", "(", ")", ";", ":", ":=", ",", "<", "<=", ">", ">=", "<>", ".", "..",
+        "// linha\n", "/* bloco */", "/* sem fim", "{ chaves }", "{* misto */", "{ sem fim", "/",
+        "'texto'", "\"texto\"", "'sem fim\n", "\"", "''",
+        "@", "#", "$", "!", "[", "]", "}", "\u00a0", "\u2003", "\f",
+        " ", " ", " ", "\t", "\n", "\n", "\r\n",
+    };
+
+    private GeneratedLexerCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int casos = 2000;
+        long semente = 1;
+        List<String> codigos = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--casos":
+                    casos = Integer.parseInt(args[++i]);
+                    break;
+                case "--semente":
+                    semente = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    codigos.add(new String(Files.readAllBytes(Paths.get(args[i])), StandardCharsets.UTF_8));
+            }
+        }
+        Random aleatorio = new Random(semente);
+        for (int c = 0; c < casos; c++) {
+            codigos.add(gerar(aleatorio, 1 + aleatorio.nextInt(c % 10 == 0 ? 2000 : 60)));
+        }
+
+        String divergenciaArquivo = compararArquivos();
+        if (divergenciaArquivo != null) {
+            System.err.println("Leitura de arquivo divergiu da análise do texto: " + divergenciaArquivo);
+            System.exit(1);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        long tokens = 0;
+        try {
+            for (String codigo : codigos) {
+                String divergencia = comparar(codigo, pool);
+                if (divergencia != null) {
+                    System.err.println("GeneratedLexer divergiu do Lexer: " + divergencia);
+                    System.err.println("Código: " + escapar(codigo));
+                    System.exit(1);
+                }
+                tokens += new Lexer(codigo).analisarCompacto().size();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        System.out.println(codigos.size() + " códigos e " + tokens + " tokens conferidos: GeneratedLexer igual ao Lexer");
+    }
+
+    private static String gerar(Random aleatorio, int trechos) {
+        StringBuilder codigo = new StringBuilder();
+        for (int i = 0; i < trechos; i++) {
+            codigo.append(TRECHOS[aleatorio.nextInt(TRECHOS.length)]);
+        }
+        return codigo.toString();
+    }
+
+    /**
+     * Primeira diferença entre os dois motores para o código, ou {@code null}.
+     */
+    private static String comparar(String codigo, ForkJoinPool pool) {
+        String diferenca = comparar("análise completa", new Lexer(codigo).analisarCompacto(),
+                LexerFactory.create(codigo, LexerFactory.Engine.GENERATED).analisarCompacto());
+        if (diferenca != null) {
+            return diferenca;
+        }
+        diferenca = comparar("partes", ParallelLexer.analisar(codigo, pool, 3, LexerFactory.Engine.SWITCH),
+                ParallelLexer.analisar(codigo, pool, 3, LexerFactory.Engine.GENERATED));
+        if (diferenca != null) {
+            return diferenca;
+        }
+        return comparar("Reader", new Lexer(new StringReader(codigo)).analisar(),
+                LexerFactory.create(SourceBuffer.of(new StringReader(codigo)), LexerFactory.Engine.GENERATED).analisar());
+    }
+
+    private static String comparar(String modo, List<Token> esperado, List<Token> obtido) {
+        for (int i = 0; i < Math.max(esperado.size(), obtido.size()); i++) {
+            if (i >= esperado.size() || i >= obtido.size()) {
+                return modo + ": " + obtido.size() + " tokens, esperado " + esperado.size();
+            }
+            Token a = esperado.get(i);
+            Token b = obtido.get(i);
+            if (!a.toString().equals(b.toString()) || a.getInicio() != b.getInicio() || a.getFim() != b.getFim()) {
+                return modo + ", token " + i + ": " + b + " em " + b.getInicio() + ".." + b.getFim() + ", esperado "
+                        + a + " em " + a.getInicio() + ".." + a.getFim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Analisa, lidos de um arquivo, códigos em que um token longo mantém a
+     * marca do buffer e termina em um caractere fora do plano básico logo na
+     * borda do bloco lido, e compara com a análise do texto.
+     */
+    private static String compararArquivos() throws IOException {
+        Path arquivo = Files.createTempFile("surrogates", ".pas");
+        try {
+            for (int tamanho : new int[] {8189, 8190, 8191, 16381, 16382, 16383}) {
+                String letras = "a".repeat(tamanho);
+                for (String codigo : new String[] {"'" + letras + "\uD83D\uDE00'", "x" + letras + "\uD835\uDC00 y"}) {
+                    Files.write(arquivo, codigo.getBytes(StandardCharsets.UTF_8));
+                    List<Token> esperado = new Lexer(codigo).analisar();
+                    String diferenca;
+                    try (Lexer mapeado = Lexer.fromPath(arquivo, StandardCharsets.UTF_8)) {
+                        diferenca = comparar("arquivo mapeado, " + tamanho, esperado, mapeado.analisar());
+                    }
+                    if (diferenca == null) {
+                        try (Lexer gerado = LexerFactory.create(SourceBuffer.map(arquivo, StandardCharsets.UTF_8),
+                                LexerFactory.Engine.GENERATED)) {
+                            diferenca = comparar("arquivo mapeado, gerado, " + tamanho, esperado, gerado.analisar());
+                        }
+                    }
+                    if (diferenca == null) {
+                        try (FileChannel canal = FileChannel.open(arquivo)) {
+                            diferenca = comparar("canal, " + tamanho, esperado,
+                                    Lexer.fromChannel(canal, StandardCharsets.UTF_8).analisar());
+                        }
+                    }
+                    if (diferenca != null) {
+                        return diferenca;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            Files.deleteIfExists(arquivo);
+        }
+    }
+
+    private static String comparar(String modo, TokenBuffer esperado, TokenBuffer obtido) {
+        if (esperado.size() != obtido.size()) {
+            return modo + ": " + obtido.size() + " tokens, esperado " + esperado.size();
+        }
+        for (int i = 0; i < esperado.size(); i++) {
+            boolean igual = esperado.getType(i) == obtido.getType(i)
+                    && esperado.getInicio(i) == obtido.getInicio(i)
+                    && esperado.getFim(i) == obtido.getFim(i)
+                    && esperado.getLinha(i) == obtido.getLinha(i)
+                    && esperado.getColuna(i) == obtido.getColuna(i)
+                    && esperado.getLexema(i).equals(obtido.getLexema(i));
+            if (igual && esperado.getType(i) == TokenType.NUMBER) {
+                igual = esperado.isReal(i) == obtido.isReal(i)
+                        && (esperado.isReal(i)
+                                ? Double.doubleToRawLongBits(esperado.getReal(i)) == Double.doubleToRawLongBits(obtido.getReal(i))
+                                : esperado.getInteiro(i) == obtido.getInteiro(i));
+            }
+            if (!igual) {
+                return modo + ", token " + i + ": " + obtido.get(i) + " em " + obtido.getInicio(i) + ".."
+                        + obtido.getFim(i) + ", esperado " + esperado.get(i) + " em " + esperado.getInicio(i) + ".."
+                        + esperado.getFim(i);
+            }
+        }
+        return null;
+    }
+
+    private static String escapar(String codigo) {
+        StringBuilder texto = new StringBuilder("\"");
+        for (char c : codigo.toCharArray()) {
+            if (c == '\n') {
+                texto.append("\\n");
+            } else if (c == '\r') {
+                texto.append("\\r");
+            } else if (c == '\t') {
+                texto.append("\\t");
+            } else if (c == '"' || c == '\\') {
+                texto.append('\\').append(c);
+            } else if (c < ' ' || c > '~') {
+                texto.append(String.format("\\u%04x", (int) c));
+            } else {
+                texto.append(c);
+            }
+        }
+        return texto.append('"').toString();
+    }
+}
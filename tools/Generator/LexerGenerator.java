@@ -0,0 +1,491 @@
+package Generator;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Gera o {@code Analizer.GeneratedLexer} a partir da especificação de tokens
+ * (spec/MiniPascal.tokens, onde o formato está descrito).
+ *
+ * O código gerado não consulta tabelas de transição nem cria Strings: o
+ * primeiro caractere escolhe o caminho em um único {@code switch}, os
+ * símbolos são reconhecidos pelo mais longo em {@code switch}es aninhados e
+ * as palavras reservadas por uma trie desenrolada em código, escolhida pelo
+ * tamanho do identificador.
+ *
+ * Roda no build, antes da compilação (alvo -generate-lexer do build.xml):
+ * <pre>
+ * java -cp build/tools/classes Generator.LexerGenerator especificacao diretorio-de-saida
+ * </pre>
+ * O arquivo gerado só é reescrito quando o conteúdo muda. Erros na
+ * especificação são informados com o número da linha e terminam com código 1.
+ */
+public final class LexerGenerator {
+
+    private static final String PACOTE = "Analizer";
+    private static final String CLASSE = "GeneratedLexer";
+
+    /**
+     * Nó da trie dos textos fixos (símbolos, inícios de comentário e
+     * delimitadores de texto); {@code acao} reconhece o texto que termina no nó.
+     */
+    private static final class No {
+        final TreeMap<Character, No> filhos = new TreeMap<>();
+        String[] acao;
+    }
+
+    private final Map<String, String> palavras = new TreeMap<>();
+    private final No fixos = new No();
+    private String tipoIdentificador;     // Já com o prefixo "TokenType."
+    private String continuacaoIdentificador = "";
+    private String tipoNumero;
+    private boolean reais;
+    private String origem;
+
+    private LexerGenerator() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Uso: Generator.LexerGenerator especificacao diretorio-de-saida");
+            System.exit(2);
+        }
+        try {
+            LexerGenerator gerador = new LexerGenerator();
+            gerador.ler(Paths.get(args[0]));
+            String codigo = gerador.gerar();
+            Path arquivo = Paths.get(args[1], PACOTE, CLASSE + ".java");
+            if (Files.exists(arquivo) && Files.readString(arquivo, StandardCharsets.UTF_8).equals(codigo)) {
+                return;
+            }
+            Files.createDirectories(arquivo.getParent());
+            Files.writeString(arquivo, codigo, StandardCharsets.UTF_8);
+            System.out.println("Gerado " + arquivo);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Falha ao gerar o lexer: " + e);
+            System.exit(1);
+        }
+    }
+
+    private void ler(Path especificacao) throws IOException {
+        origem = especificacao.getFileName().toString();
+        List<String> linhas = Files.readAllLines(especificacao, StandardCharsets.UTF_8);
+        for (int n = 0; n < linhas.size(); n++) {
+            String linha = linhas.get(n).trim();
+            if (linha.isEmpty() || linha.startsWith("#")) {
+                continue;
+            }
+            try {
+                regra(linha.split("\\s+"));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(origem + ":" + (n + 1) + ": " + e.getMessage());
+            }
+        }
+        if (tipoIdentificador == null) {
+            throw new IllegalArgumentException(origem + ": falta a regra identificador");
+        }
+        if (tipoNumero == null) {
+            throw new IllegalArgumentException(origem + ": falta a regra numero");
+        }
+    }
+
+    private void regra(String[] campos) {
+        String texto = campos.length > 1 ? campos[1] : null;
+        switch (campos[0]) {
+            case "palavra":
+                campos(campos, 3, 3);
+                if (!texto.chars().allMatch(c -> c >= 'a' && c <= 'z')) {
+                    throw new IllegalArgumentException("palavra reservada com caractere que não é letra minúscula: "
+                            + texto);
+                }
+                if (palavras.putIfAbsent(texto, tipo(campos[2])) != null) {
+                    throw new IllegalArgumentException("palavra reservada repetida: " + texto);
+                }
+                break;
+            case "simbolo":
+                campos(campos, 3, 3);
+                fixo(texto, (texto.length() == 1 ? "posicao++;" : "posicao += " + texto.length() + ";"),
+                        "fimLexema = posicao;",
+                        "return TokenType." + tipo(campos[2]) + ";");
+                break;
+            case "comentario-linha":
+                campos(campos, 2, 2);
+                if (texto.length() != 2) {
+                    throw new IllegalArgumentException("o início de comentário de linha deve ter dois caracteres: "
+                            + texto);
+                }
+                fixo(texto, "skipLineComment();", "continue;");
+                break;
+            case "comentario-bloco":
+                campos(campos, 2, 2);
+                if (!texto.equals("{") && !(texto.length() == 2 && texto.charAt(1) == '*')) {
+                    throw new IllegalArgumentException("o início de comentário de bloco deve ser '{' ou um caractere"
+                            + " seguido de '*': " + texto);
+                }
+                fixo(texto, "skipBlockComment(sink);", "continue;");
+                break;
+            case "texto":
+                campos(campos, 2, 2);
+                if (texto.length() != 1) {
+                    throw new IllegalArgumentException("o delimitador de texto deve ter um caractere: " + texto);
+                }
+                fixo(texto, "return extractStringLiteral();");
+                break;
+            case "identificador":
+                campos(campos, 2, 3);
+                tipoIdentificador = "TokenType." + tipo(texto);
+                if (campos.length > 2) {
+                    continuacaoIdentificador = campos[2];
+                    for (char c : continuacaoIdentificador.toCharArray()) {
+                        pontuacao(c);
+                    }
+                }
+                break;
+            case "numero":
+                campos(campos, 2, 3);
+                tipoNumero = tipo(texto);
+                if (campos.length > 2) {
+                    if (!campos[2].equals(".")) {
+                        throw new IllegalArgumentException("o Lexer só converte números com '.' como separador: "
+                                + campos[2]);
+                    }
+                    reais = true;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("regra desconhecida: " + campos[0]);
+        }
+    }
+
+    private static void campos(String[] campos, int minimo, int maximo) {
+        if (campos.length < minimo || campos.length > maximo) {
+            throw new IllegalArgumentException("a regra " + campos[0] + " espera "
+                    + (minimo == maximo ? minimo - 1 : (minimo - 1) + " ou " + (maximo - 1)) + " valores");
+        }
+    }
+
+    private static String tipo(String nome) {
+        if (!nome.matches("[A-Z][A-Z_]*")) {
+            throw new IllegalArgumentException("nome de TokenType inválido: " + nome);
+        }
+        return nome;
+    }
+
+    // Textos fixos são de caracteres ASCII visíveis que não começam identificadores nem números
+    private static char pontuacao(char c) {
+        if (c <= ' ' || c >= 127 || Character.isLetterOrDigit(c)) {
+            throw new IllegalArgumentException("caractere não permitido: '" + c + "'");
+        }
+        return c;
+    }
+
+    private void fixo(String texto, String... acao) {
+        No no = fixos;
+        for (char c : texto.toCharArray()) {
+            no = no.filhos.computeIfAbsent(pontuacao(c), k -> new No());
+        }
+        if (no.acao != null) {
+            throw new IllegalArgumentException("texto repetido: " + texto);
+        }
+        no.acao = acao;
+    }
+
+    private String gerar() {
+        Codigo codigo = new Codigo();
+        codigo.linha("// Gerado por Generator.LexerGenerator a partir de " + origem + "; altere a especificação, não este arquivo.");
+        codigo.linha("package " + PACOTE + ";");
+        codigo.linha("");
+        codigo.linha("/**");
+        codigo.linha(" * Motor de análise gerado a partir da especificação de tokens: o primeiro");
+        codigo.linha(" * caractere escolhe o caminho em um único {@code switch}, os símbolos são");
+        codigo.linha(" * reconhecidos pelo mais longo em {@code switch}es aninhados e as palavras");
+        codigo.linha(" * reservadas por uma trie desenrolada em código, sem tabelas de transição");
+        codigo.linha(" * nem Strings. Comentários e literais de texto usam as rotinas do {@link Lexer}.");
+        codigo.linha(" *");
+        codigo.linha(" * Produz exatamente os mesmos tokens que o {@link Lexer}.");
+        codigo.linha(" */");
+        codigo.abrir("public class " + CLASSE + " extends Lexer {");
+        codigo.linha("");
+        codigo.linha("private static final boolean[] CONTINUA_IDENTIFICADOR = new boolean[128];");
+        codigo.linha("");
+        codigo.abrir("static {");
+        codigo.abrir("for (char c = 0; c < 128; c++) {");
+        codigo.linha("CONTINUA_IDENTIFICADOR[c] = Character.isLetterOrDigit(c);");
+        codigo.fechar("}");
+        for (char c : continuacaoIdentificador.toCharArray()) {
+            codigo.linha("CONTINUA_IDENTIFICADOR[" + literal(c) + "] = true;");
+        }
+        codigo.fechar("}");
+        codigo.linha("");
+        codigo.abrir("public " + CLASSE + "(String codigo) {");
+        codigo.linha("super(codigo);");
+        codigo.fechar("}");
+        codigo.linha("");
+        codigo.abrir("public " + CLASSE + "(SourceBuffer fonte) {");
+        codigo.linha("super(fonte);");
+        codigo.fechar("}");
+        codigo.linha("");
+        gerarScan(codigo);
+        codigo.linha("");
+        gerarIdentificador(codigo);
+        codigo.linha("");
+        gerarNumero(codigo);
+        codigo.linha("");
+        codigo.abrir("private static boolean digito(char c) {");
+        codigo.linha("return c >= '0' && c <= '9' || c >= 128 && Character.isDigit(c);");
+        codigo.fechar("}");
+        codigo.linha("");
+        codigo.abrir("private TokenType caractereInesperado(char c) {");
+        codigo.linha("mensagemErro = \"Caractere inesperado: \" + c + \" na linha \" + linhaAtual;");
+        codigo.linha("codigoErro = DiagnosticCode.UNEXPECTED_CHARACTER;");
+        codigo.linha("fimLexema = posicao + 1;");
+        codigo.linha("return TokenType.ERROR;");
+        codigo.fechar("}");
+        codigo.fechar("}");
+        return codigo.toString();
+    }
+
+    private void gerarScan(Codigo codigo) {
+        List<Character> digitos = new ArrayList<>();
+        List<Character> letras = new ArrayList<>();
+        for (char c = 0; c < 128; c++) {
+            if (Character.isDigit(c)) {
+                digitos.add(c);
+            } else if (Character.isLetter(c)) {
+                letras.add(c);
+            }
+        }
+        codigo.linha("@Override");
+        codigo.abrir("TokenType scan(TokenSink sink) {");
+        codigo.abrir("while (true) {");
+        codigo.linha("int antes = posicao;");
+        codigo.linha("skipWhitespace();");
+        codigo.linha("espacos += posicao - antes;");
+        codigo.abrir("if (passouDoLimite()) {");
+        codigo.linha("return TokenType.WHITESPACE;");
+        codigo.fechar("}");
+        codigo.linha("fonte.mark(posicao);");
+        codigo.linha("inicioLexema = posicao;");
+        codigo.abrir("if (!fonte.has(posicao)) {");
+        codigo.linha("fimLexema = posicao;");
+        codigo.linha("return TokenType.EOF;");
+        codigo.fechar("}");
+        codigo.linha("");
+        codigo.linha("char c = fonte.charAt(posicao);");
+        codigo.abrir("switch (c) {");
+        codigo.casos(digitos);
+        codigo.nivel++;
+        codigo.linha("return numero();");
+        codigo.nivel--;
+        codigo.casos(letras);
+        codigo.nivel++;
+        codigo.linha("return identificador();");
+        codigo.nivel--;
+        for (Map.Entry<Character, No> simbolo : fixos.filhos.entrySet()) {
+            codigo.abrir("case " + literal(simbolo.getKey()) + ":");
+            gerarFixo(codigo, simbolo.getValue(), 1);
+            codigo.nivel--;
+        }
+        codigo.abrir("default:");
+        codigo.abrir("if (c >= 128) {");
+        codigo.abrir("if (Character.isDigit(c)) {");
+        codigo.linha("return numero();");
+        codigo.fechar("}");
+        codigo.abrir("if (Character.isLetter(c)) {");
+        codigo.linha("return identificador();");
+        codigo.fechar("}");
+        codigo.fechar("}");
+        codigo.linha("return caractereInesperado(c);");
+        codigo.nivel--;
+        codigo.fechar("}");
+        codigo.fechar("}");
+        codigo.fechar("}");
+    }
+
+    /**
+     * Reconhece o texto fixo mais longo a partir do nó, que está a
+     * {@code profundidade} caracteres do início. Um nó sem ação volta ao
+     * ancestral mais próximo que tenha uma; no primeiro caractere, é erro.
+     */
+    private void gerarFixo(Codigo codigo, No no, int profundidade) {
+        if (!no.filhos.isEmpty()) {
+            String proximo = "posicao + " + profundidade;
+            codigo.abrir("if (fonte.has(" + proximo + ")) {");
+            codigo.abrir("switch (fonte.charAt(" + proximo + ")) {");
+            for (Map.Entry<Character, No> filho : no.filhos.entrySet()) {
+                codigo.abrir("case " + literal(filho.getKey()) + ":");
+                gerarFixo(codigo, filho.getValue(), profundidade + 1);
+                codigo.nivel--;
+            }
+            codigo.fechar("}");
+            codigo.fechar("}");
+        }
+        if (no.acao != null) {
+            for (String linha : no.acao) {
+                codigo.linha(linha);
+            }
+        } else if (profundidade == 1) {
+            codigo.linha("return caractereInesperado(c);");
+        } else {
+            codigo.linha("break;");
+        }
+    }
+
+    private void gerarIdentificador(Codigo codigo) {
+        codigo.abrir("private TokenType identificador() {");
+        codigo.linha("int inicio = posicao;");
+        codigo.linha("int p = posicao + 1;");
+        codigo.abrir("while (fonte.has(p)) {");
+        codigo.linha("char c = fonte.charAt(p);");
+        codigo.abrir("if (c < 128 ? !CONTINUA_IDENTIFICADOR[c] : !Character.isLetterOrDigit(c)) {");
+        codigo.linha("break;");
+        codigo.fechar("}");
+        codigo.linha("p++;");
+        codigo.fechar("}");
+        codigo.linha("posicao = p;");
+        codigo.linha("fimLexema = p;");
+        TreeMap<Integer, List<String>> porTamanho = new TreeMap<>();
+        for (String palavra : palavras.keySet()) {
+            porTamanho.computeIfAbsent(palavra.length(), k -> new ArrayList<>()).add(palavra);
+        }
+        if (porTamanho.isEmpty()) {
+            codigo.linha("return " + tipoIdentificador + ";");
+            codigo.fechar("}");
+            return;
+        }
+        codigo.abrir("switch (p - inicio) {");
+        for (Map.Entry<Integer, List<String>> grupo : porTamanho.entrySet()) {
+            codigo.abrir("case " + grupo.getKey() + ":");
+            gerarPalavras(codigo, grupo.getValue(), 0);
+            codigo.nivel--;
+        }
+        codigo.abrir("default:");
+        codigo.linha("return " + tipoIdentificador + ";");
+        codigo.nivel--;
+        codigo.fechar("}");
+        codigo.fechar("}");
+    }
+
+    /**
+     * Palavras do mesmo tamanho que coincidem nos primeiros {@code profundidade}
+     * caracteres: um {@code switch} por caractere enquanto há mais de uma, e
+     * uma comparação direta do resto quando sobra uma.
+     */
+    private void gerarPalavras(Codigo codigo, List<String> grupo, int profundidade) {
+        if (grupo.size() == 1) {
+            String palavra = grupo.get(0);
+            String tipo = "TokenType." + palavras.get(palavra);
+            if (profundidade == palavra.length()) {
+                codigo.linha("return " + tipo + ";");
+                return;
+            }
+            StringBuilder condicao = new StringBuilder();
+            for (int i = profundidade; i < palavra.length(); i++) {
+                if (i > profundidade) {
+                    condicao.append("\n        && ");
+                }
+                condicao.append("fonte.charAt(inicio + ").append(i).append(") == ").append(literal(palavra.charAt(i)));
+            }
+            codigo.linha("return " + condicao + "\n        ? " + tipo + " : " + tipoIdentificador + ";");
+            return;
+        }
+        TreeMap<Character, List<String>> porLetra = new TreeMap<>();
+        for (String palavra : grupo) {
+            porLetra.computeIfAbsent(palavra.charAt(profundidade), k -> new ArrayList<>()).add(palavra);
+        }
+        codigo.abrir("switch (fonte.charAt(" + (profundidade == 0 ? "inicio" : "inicio + " + profundidade) + ")) {");
+        for (Map.Entry<Character, List<String>> ramo : porLetra.entrySet()) {
+            codigo.abrir("case " + literal(ramo.getKey()) + ":");
+            gerarPalavras(codigo, ramo.getValue(), profundidade + 1);
+            codigo.nivel--;
+        }
+        codigo.abrir("default:");
+        codigo.linha("return " + tipoIdentificador + ";");
+        codigo.nivel--;
+        codigo.fechar("}");
+    }
+
+    private void gerarNumero(Codigo codigo) {
+        codigo.abrir("private TokenType numero() {");
+        codigo.linha("int p = posicao + 1;");
+        codigo.abrir("while (fonte.has(p)) {");
+        codigo.linha("char c = fonte.charAt(p);");
+        codigo.abrir("if (digito(c)) {");
+        codigo.linha("p++;");
+        if (reais) {
+            codigo.fechar("} else if (c == '.' && fonte.has(p + 1) && digito(fonte.charAt(p + 1))) {");
+            codigo.nivel++;
+            codigo.linha("p += 2;");
+        }
+        codigo.fechar("} else {");
+        codigo.nivel++;
+        codigo.linha("break;");
+        codigo.fechar("}");
+        codigo.fechar("}");
+        codigo.linha("posicao = p;");
+        codigo.linha("fimLexema = p;");
+        codigo.linha("return TokenType." + tipoNumero + ";");
+        codigo.fechar("}");
+    }
+
+    private static String literal(char c) {
+        if (c == '\'' || c == '\\') {
+            return "'\\" + c + "'";
+        }
+        return "'" + c + "'";
+    }
+
+    /**
+     * Texto do arquivo gerado, com a indentação de quatro espaços por nível.
+     */
+    private static final class Codigo {
+        private final StringBuilder texto = new StringBuilder();
+        int nivel;
+
+        void linha(String linha) {
+            for (String parte : linha.split("\n", -1)) {
+                if (!parte.isEmpty()) {
+                    texto.append("    ".repeat(nivel));
+                }
+                texto.append(parte).append('\n');
+            }
+        }
+
+        void abrir(String linha) {
+            linha(linha);
+            nivel++;
+        }
+
+        void fechar(String linha) {
+            nivel--;
+            linha(linha);
+        }
+
+        // Rótulos "case" de vários caracteres, até oito por linha
+        void casos(List<Character> caracteres) {
+            StringBuilder rotulos = new StringBuilder();
+            for (int i = 0; i < caracteres.size(); i++) {
+                if (i > 0) {
+                    rotulos.append(i % 8 == 0 ? "\n" : " ");
+                }
+                rotulos.append("case ").append(literal(caracteres.get(i))).append(':');
+            }
+            linha(rotulos.toString());
+        }
+
+        @Override
+        public String toString() {
+            return texto.toString();
+        }
+    }
+}